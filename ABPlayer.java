@@ -1,23 +1,33 @@
-import java.util.List;
-
 public class ABPlayer extends Player {
 
     private static final int MAX_DEPTH = 5; // 探索の深さ調整可能
 
+    private MoveList.Stack moveStack = new MoveList.Stack(); // 深さごとの合法手バッファ
+    private TranspositionTable transpositionTable = new TranspositionTable(); // 探索済みの局面 (null なら使わない)
+
     public ABPlayer(String name) {
         super(name);
     }
 
     @Override
     public int[] chooseMove(Game game) {
+        int[] bookMove = probeBooks(game);
+        if (bookMove != null) {
+            return bookMove;
+        }
         // Gameから現在の状態をGameStateに変換（状態コピー用）
         GameState rootState = new GameState(game);
+        if (transpositionTable != null) {
+            transpositionTable.newSearch();
+        }
 
         int bestScore = Integer.MIN_VALUE;
         int[] bestMove = null;
 
-        List<int[]> legalMoves = rootState.getAllLegalMoves(this.playerType);
-        for (int[] move : legalMoves) {
+        MoveList legalMoves = moveStack.get(0);
+        rootState.getAllLegalMoves(this.playerType, legalMoves);
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
             GameState nextState = rootState.clone();
             nextState.makeMove(move);
 
@@ -25,7 +35,7 @@ public class ABPlayer extends Player {
 
             if (score > bestScore) {
                 bestScore = score;
-                bestMove = move;
+                bestMove = Move.toArray(move, this.getCapturedPieces());
             }
         }
         return bestMove;
@@ -38,35 +48,79 @@ public class ABPlayer extends Player {
 
         PlayerType currentPlayer = maximizingPlayer ? this.playerType : this.playerType.opponent();
 
-        List<int[]> legalMoves = state.getAllLegalMoves(currentPlayer);
+        // 置換表に十分な深さの結果があればそれを使う
+        // 左右反転した局面は同じエントリを使う (Symmetry の正規形のキーで引き、手は向きを直して出し入れする)
+        long key = 0L;
+        boolean mirrored = false;
+        int ttMove = Move.NONE;
+        if (transpositionTable != null) {
+            key = Zobrist.compute(state.getBoard(), null, null, currentPlayer);
+            long mirroredKey = Zobrist.mirror(key, state.getBoard());
+            mirrored = Symmetry.isMirrored(key, mirroredKey);
+            key = Symmetry.canonicalKey(key, mirroredKey);
+            long entry = transpositionTable.probe(key);
+            if (entry != 0) {
+                if (TranspositionTable.depth(entry) >= depth && TranspositionTable.isUsable(entry, alpha, beta)) {
+                    return TranspositionTable.score(entry);
+                }
+                ttMove = Symmetry.orient(TranspositionTable.move(entry), mirrored);
+            }
+        }
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+
+        MoveList legalMoves = moveStack.get(MAX_DEPTH - depth);
+        state.getAllLegalMoves(currentPlayer, legalMoves);
         if (legalMoves.isEmpty()) {
             // 手がないなら負け
             return maximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
         }
+        if (ttMove != Move.NONE) {
+            legalMoves.moveToFront(ttMove); // 前に良かった手から試す
+        }
 
+        int bestValue;
+        int bestMove = Move.NONE;
         if (maximizingPlayer) {
             int maxEval = Integer.MIN_VALUE;
-            for (int[] move : legalMoves) {
+            for (int i = 0; i < legalMoves.size(); i++) {
                 GameState nextState = state.clone();
-                nextState.makeMove(move);
+                nextState.makeMove(legalMoves.get(i));
                 int eval = minimax(nextState, depth - 1, alpha, beta, false);
+                if (eval > maxEval || bestMove == Move.NONE) bestMove = legalMoves.get(i);
                 maxEval = Math.max(maxEval, eval);
                 alpha = Math.max(alpha, eval);
                 if (beta <= alpha) break; // β枝刈り
             }
-            return maxEval;
+            bestValue = maxEval;
         } else {
             int minEval = Integer.MAX_VALUE;
-            for (int[] move : legalMoves) {
+            for (int i = 0; i < legalMoves.size(); i++) {
                 GameState nextState = state.clone();
-                nextState.makeMove(move);
+                nextState.makeMove(legalMoves.get(i));
                 int eval = minimax(nextState, depth - 1, alpha, beta, true);
+                if (eval < minEval || bestMove == Move.NONE) bestMove = legalMoves.get(i);
                 minEval = Math.min(minEval, eval);
                 beta = Math.min(beta, eval);
                 if (beta <= alpha) break; // α枝刈り
             }
-            return minEval;
+            bestValue = minEval;
+        }
+
+        if (transpositionTable != null) {
+            transpositionTable.store(key, depth, TranspositionTable.boundOf(bestValue, alphaOrig, betaOrig), bestValue,
+                    Symmetry.orient(bestMove, mirrored));
         }
+        return bestValue;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // 置換表を差し替える (同じ手番を受け持つ ABPlayer 同士なら共有してよい。null で無効)
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
     }
 
     // 評価関数の例（シンプルに駒の価値合計）
@@ -1,4 +1,7 @@
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_gj に変更
     // 定数: gj2.javaから導入
@@ -54,6 +57,30 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
     // rand 変数を宣言・初期化 - gj2.javaから導入
     private static final Random rand = new Random();
 
+    // 探索の深さ (ply) ごとの合法手バッファ
+    private MoveList.Stack moveStack = new MoveList.Stack();
+
+    // 探索済みの局面 (null なら使わない)
+    private TranspositionTable transpositionTable = new TranspositionTable();
+
+    // 末端の局面の評価値 (null なら使わない)
+    private EvalCache evalCache = new EvalCache();
+
+    // Lazy SMP: 探索するスレッド数。2 以上なら補助スレッドが同じ局面を少しずつ違う深さ・手順で読み、
+    // 結果は置換表だけを通して共有する (最終的な手は呼び出したスレッドの探索結果を使う)
+    private int threads = 1;
+    private AI_gj[] helpers = new AI_gj[0];
+    private ForkJoinPool helperPool;
+    private int depthOffset; // 補助スレッドとして読むときに、最初の深さに足す値
+    private long nodes;      // 直前の探索で訪れた局面の数
+    private long[] nodesPerSecond = new long[0]; // 直前の chooseMove のスレッドごとの nps (0 番が呼び出したスレッド)
+    private long evalCacheHits;   // 直前の chooseMove で評価値キャッシュに見つかった回数 (全スレッドの合計)
+    private long evalCacheMisses; // 同じく見つからずに evaluate を呼んだ回数
+
+    // 1手あたりの思考時間 (ミリ秒) と反復深化の深さの上限
+    private long timeLimitMillis = 1000;
+    private int maxDepth = Integer.MAX_VALUE;
+
     public AI_gj(String name) { // コンストラクタ名も AI_gj に変更
         super(name);
     }
@@ -62,11 +89,19 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
     @Override
     public int[] chooseMove(Game game) {
         this.setPlayerType(game.getCurrentPlayer().getPlayerType());
+        int[] bookMove = probeBooks(game);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        if (transpositionTable != null) {
+            transpositionTable.newSearch();
+        }
         Board currentBoard = game.getBoard().clone();
         List<Piece> myCapturedPieces = new ArrayList<>(this.getCapturedPieces());
 
-        // internalAllPossibleMovesは、AI_gjの内部で使う6要素の形式で保持する
-        List<int[]> internalAllPossibleMoves = generateAllLegalMoves(currentBoard, myCapturedPieces, this.playerType);
+        // internalAllPossibleMovesは、詰めた int (Move) の形式で保持する
+        MoveList internalAllPossibleMoves = moveStack.get(0);
+        generateAllLegalMoves(currentBoard, myCapturedPieces, this.playerType, internalAllPossibleMoves);
 
         // 初手判定ロジック (gj2.javaから導入)
         boolean isFirstTurn = myCapturedPieces.isEmpty() &&
@@ -74,13 +109,8 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
 
         if (isFirstTurn && !internalAllPossibleMoves.isEmpty()) {
             System.out.println(this.getName() + ": 初手なのでランダムな手を選択します。");
-            int[] randomMove = internalAllPossibleMoves.get(rand.nextInt(internalAllPossibleMoves.size()));
-            int moveType = randomMove[0];
-            if (moveType == 0) { // 移動
-                return new int[]{randomMove[1], randomMove[2], randomMove[3], randomMove[4]};
-            } else { // 打つ手
-                return new int[]{-1, randomMove[5], randomMove[3], randomMove[4]};
-            }
+            int randomMove = internalAllPossibleMoves.get(rand.nextInt(internalAllPossibleMoves.size()));
+            return Move.toArray(randomMove, myCapturedPieces);
         }
 
         if (internalAllPossibleMoves.isEmpty()) {
@@ -90,10 +120,7 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
 
         sortMoves(internalAllPossibleMoves, currentBoard, this.playerType);
 
-        int bestScore = LOSE_SCORE - 1;
-        int[] bestInternalMove = null;
-
-        long timeLimit = System.nanoTime() + 1_000_000_000L; // 1秒
+        long timeLimit = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000L : Long.MAX_VALUE; // 既定は 1 秒
         int baseDepth = 1; // AI_gjの動的深度調整を再導入
 
 	if (isPlayerInCheckInternal(currentBoard, this.playerType)) {
@@ -104,35 +131,60 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
             baseDepth = Math.max(baseDepth, 3);
         }
 
-        int evalScore = evaluate(currentBoard, myCapturedPieces,
-            (this.playerType == PlayerType.PLAYER1 ? game.getPlayerB().getCapturedPieces()
-                                                   : game.getPlayerA().getCapturedPieces()),
-            this.playerType);
+        List<Piece> opponentCapturedPieces = (this.playerType == PlayerType.PLAYER1)
+                ? game.getPlayerB().getCapturedPieces() : game.getPlayerA().getCapturedPieces();
+        int evalScore = evaluate(currentBoard, myCapturedPieces, opponentCapturedPieces, this.playerType);
         if (evalScore < -1000) {
             baseDepth = Math.max(baseDepth, 4);
         }
 
-        int depth = baseDepth;
+        // 補助スレッドを動かしてから、このスレッドでも同じ局面を読む
+        long startTime = System.nanoTime();
+        long hitsBefore = evalCache != null ? evalCache.getHits() : 0;
+        long missesBefore = evalCache != null ? evalCache.getMisses() : 0;
+        List<Future<?>> helperTasks = startHelpers(currentBoard, myCapturedPieces, opponentCapturedPieces,
+                internalAllPossibleMoves, baseDepth, timeLimit);
+        int bestInternalMove = searchRoot(currentBoard, myCapturedPieces, opponentCapturedPieces,
+                internalAllPossibleMoves, baseDepth, timeLimit);
+        waitForHelpers(helperTasks);
+        evalCacheHits = evalCache != null ? evalCache.getHits() - hitsBefore : 0;
+        evalCacheMisses = evalCache != null ? evalCache.getMisses() - missesBefore : 0;
+        recordNodesPerSecond(System.nanoTime() - startTime);
+
+        if (bestInternalMove == Move.NONE && !internalAllPossibleMoves.isEmpty()) {
+            System.err.println(this.getName() + " が最適な手を見つけられませんでした。最初の合法手を返します。");
+            bestInternalMove = internalAllPossibleMoves.get(0);
+        }
+
+        if (bestInternalMove != Move.NONE) {
+            // chooseMove の返り値の形式 (int[4]) に変換する
+            return Move.toArray(bestInternalMove, myCapturedPieces);
+        }
+        return null;
+    }
+
+    // 反復深化で root の手を読み、最後に読み切れた深さの最善手を返す (なければ Move.NONE)
+    private int searchRoot(Board currentBoard, List<Piece> myCapturedPieces, List<Piece> opponentCapturedPieces,
+                           MoveList internalAllPossibleMoves, int baseDepth, long timeLimit) {
+        nodes = 0;
+        int bestInternalMove = Move.NONE;
+        int depth = baseDepth + depthOffset;
 
 	
         // 動的深度調整 (AI_gjのロジック)
-        while (System.nanoTime() < timeLimit) {
+        while (System.nanoTime() < timeLimit && depth <= maxDepth) {
             int currentBestValue = Integer.MIN_VALUE;
-            int[] currentBest = null;
+            int currentBest = Move.NONE;
             int alpha = LOSE_SCORE - 1; // 深度ごとにalpha, betaをリセット
             int beta = WIN_SCORE + 1;
 
-            for (int[] move : internalAllPossibleMoves) {
+            for (int i = 0; i < internalAllPossibleMoves.size(); i++) {
+                int move = internalAllPossibleMoves.get(i);
                 if (System.nanoTime() >= timeLimit) break; // 時間切れチェック
 
                 Board nextBoard = currentBoard.clone();
                 List<Piece> nextMyCaptured = new ArrayList<>(myCapturedPieces);
-                List<Piece> nextOpponentCaptured;
-                if (this.playerType == PlayerType.PLAYER1) {
-                    nextOpponentCaptured = new ArrayList<>(game.getPlayerB().getCapturedPieces());
-                } else {
-                    nextOpponentCaptured = new ArrayList<>(game.getPlayerA().getCapturedPieces());
-                }
+                List<Piece> nextOpponentCaptured = new ArrayList<>(opponentCapturedPieces);
 
                 Piece capturedPiece = applyMove(nextBoard, nextMyCaptured, nextOpponentCaptured, this.playerType, move);
                 if (capturedPiece != null) {
@@ -142,7 +194,7 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
                 }
 
                 PlayerType nextPlayerType = (this.playerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
-                int value = minimax(nextBoard, nextOpponentCaptured, nextMyCaptured, nextPlayerType, depth - 1, alpha, beta, timeLimit);
+                int value = minimax(nextBoard, nextOpponentCaptured, nextMyCaptured, nextPlayerType, depth - 1, alpha, beta, timeLimit, 1);
 
                 if (value > currentBestValue) {
                     currentBestValue = value;
@@ -151,48 +203,171 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
                 alpha = Math.max(alpha, value);
             }
 
-            if (System.nanoTime() < timeLimit && currentBest != null) {
+            if (System.nanoTime() < timeLimit && currentBest != Move.NONE) {
                 bestInternalMove = currentBest;
-                bestScore = currentBestValue; // ここでスコアも更新
             }
             depth++;
         }
+        return bestInternalMove;
+    }
 
-        if (bestInternalMove == null && !internalAllPossibleMoves.isEmpty()) {
-            System.err.println(this.getName() + " が最適な手を見つけられませんでした。最初の合法手を返します。");
-            bestInternalMove = internalAllPossibleMoves.get(0);
+    // 補助スレッドで searchRoot を動かす。補助スレッドは置換表を共有し、
+    // 奇数番目は 1 手深くから読み始め、root の手の順序もスレッドごとにずらす
+    private List<Future<?>> startHelpers(Board currentBoard, List<Piece> myCapturedPieces, List<Piece> opponentCapturedPieces,
+                                         MoveList rootMoves, int baseDepth, long timeLimit) {
+        List<Future<?>> tasks = new ArrayList<>();
+        if (threads <= 1) {
+            return tasks;
+        }
+        if (helperPool == null || helperPool.getParallelism() != threads - 1) {
+            if (helperPool != null) {
+                helperPool.shutdown();
+            }
+            helperPool = new ForkJoinPool(threads - 1);
+            helpers = new AI_gj[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new AI_gj(getName() + "#" + (i + 1));
+                helpers[i].depthOffset = (i + 1) % 2;
+            }
         }
+        for (int i = 0; i < helpers.length; i++) {
+            AI_gj helper = helpers[i];
+            helper.setPlayerType(this.playerType);
+            helper.transpositionTable = this.transpositionTable;
+            helper.evalCache = this.evalCache;
+            helper.maxDepth = this.maxDepth;
+
+            // 盤面と手駒はスレッドごとに複製する (駒そのものは探索中に書き換えられないので共有してよい)
+            Board board = currentBoard.clone();
+            List<Piece> myCaptured = new ArrayList<>(myCapturedPieces);
+            List<Piece> opponentCaptured = new ArrayList<>(opponentCapturedPieces);
+            MoveList moves = helper.moveStack.get(0);
+            moves.clear();
+            int shift = (i + 1) % rootMoves.size();
+            for (int j = 0; j < rootMoves.size(); j++) {
+                moves.add(rootMoves.get((j + shift) % rootMoves.size()));
+            }
+            tasks.add(helperPool.submit(() -> helper.searchRoot(board, myCaptured, opponentCaptured, moves, baseDepth, timeLimit)));
+        }
+        return tasks;
+    }
 
-        if (bestInternalMove != null) {
-            int moveType = bestInternalMove[0];
-            if (moveType == 0) { // 駒の移動
-                return new int[]{bestInternalMove[1], bestInternalMove[2], bestInternalMove[3], bestInternalMove[4]};
-            } else { // 手駒の打ち込み (moveType == 1)
-                return new int[]{-1, bestInternalMove[5], bestInternalMove[3], bestInternalMove[4]};
+    private void waitForHelpers(List<Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("補助スレッドの探索に失敗しました", e.getCause());
             }
         }
-        return null;
     }
 
-    // gj2.javaのminimaxを導入。timeLimit引数を追加。
-    private int minimax(Board board, List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType currentPlayerType, int depth, int alpha, int beta, long timeLimit) {
+    // スレッドごとの nps を記録し、複数スレッドで読んだときは表示する
+    private void recordNodesPerSecond(long elapsedNanos) {
+        long elapsed = Math.max(1, elapsedNanos);
+        nodesPerSecond = new long[threads <= 1 ? 1 : threads];
+        nodesPerSecond[0] = nodes * 1_000_000_000L / elapsed;
+        long total = nodes;
+        for (int i = 1; i < nodesPerSecond.length; i++) {
+            nodesPerSecond[i] = helpers[i - 1].nodes * 1_000_000_000L / elapsed;
+            total += helpers[i - 1].nodes;
+        }
+        if (threads > 1) {
+            System.out.println(this.getName() + ": " + threads + " スレッドで " + total + " 局面 (nps: " + Arrays.toString(nodesPerSecond) + ")"
+                    + (evalCache != null ? " 評価値キャッシュ: " + evalCacheHits + " hit / " + evalCacheMisses + " miss" : ""));
+        }
+    }
+
+    // 探索に使うスレッド数 (1 なら従来通り 1 スレッドで読む)
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // 直前の chooseMove のスレッドごとの nps (0 番が呼び出したスレッド)
+    public long[] getNodesPerSecond() {
+        return nodesPerSecond.clone();
+    }
+
+    // 直前の chooseMove で評価値キャッシュに見つかった回数と、見つからずに evaluate を呼んだ回数
+    public long getEvalCacheHits() {
+        return evalCacheHits;
+    }
+
+    public long getEvalCacheMisses() {
+        return evalCacheMisses;
+    }
+
+    // 1手あたりの思考時間 (ミリ秒、0 以下なら時間では打ち切らない)
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    // 反復深化の深さの上限 (固定の深さで読ませたいときに使う。時間で打ち切らないときは必ず指定すること)
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    // gj2.javaのminimaxを導入。timeLimit引数と、合法手バッファを選ぶための ply 引数を追加。
+    private int minimax(Board board, List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType currentPlayerType, int depth, int alpha, int beta, long timeLimit, int ply) {
         if (System.nanoTime() >= timeLimit) return 0; // 時間切れ
+        nodes++;
+
+        // 置換表に十分な深さの結果があればそれを使い、なければ前回の最善手を先に試す
+        // 左右反転した局面は同じエントリを使う (Symmetry の正規形のキーで引き、手は向きを直して出し入れする)
+        // 正規形にする前に成ったままの手駒の分も混ぜ、探索と evaluate が見る状態をすべてキーに含める
+        long key = 0L;
+        boolean mirrored = false;
+        int ttMove = Move.NONE;
+        if (transpositionTable != null || evalCache != null) {
+            key = (currentPlayerType == PlayerType.PLAYER1)
+                    ? Zobrist.compute(board, currentPlayerCapturedPieces, opponentCapturedPieces, currentPlayerType)
+                    : Zobrist.compute(board, opponentCapturedPieces, currentPlayerCapturedPieces, currentPlayerType);
+            key ^= promotedInHandKey(currentPlayerCapturedPieces, opponentCapturedPieces);
+            long mirroredKey = Zobrist.mirror(key, board); // 盤上の駒の分だけを入れ替えるので、混ぜた値はそのまま残る
+            mirrored = Symmetry.isMirrored(key, mirroredKey);
+            key = Symmetry.canonicalKey(key, mirroredKey);
+        }
+        if (transpositionTable != null) {
+            long entry = transpositionTable.probe(key);
+            if (entry != 0) {
+                if (TranspositionTable.depth(entry) >= depth && TranspositionTable.isUsable(entry, alpha, beta)) {
+                    return TranspositionTable.score(entry);
+                }
+                ttMove = Symmetry.orient(TranspositionTable.move(entry), mirrored);
+            }
+        }
+        int alphaOrig = alpha;
+        int betaOrig = beta;
 
         if (depth == 0 || isTerminal(board, currentPlayerCapturedPieces, opponentCapturedPieces, currentPlayerType)) {
-            return evaluate(board, currentPlayerCapturedPieces, opponentCapturedPieces, currentPlayerType);
+            return evaluateCached(key, board, currentPlayerCapturedPieces, opponentCapturedPieces, currentPlayerType);
         }
 
-        List<int[]> allPossibleMoves = generateAllLegalMoves(board, currentPlayerCapturedPieces, currentPlayerType);
+        MoveList allPossibleMoves = moveStack.get(ply);
+        generateAllLegalMoves(board, currentPlayerCapturedPieces, currentPlayerType, allPossibleMoves);
 
         if (allPossibleMoves.isEmpty()) {
             return (currentPlayerType == this.playerType) ? LOSE_SCORE : WIN_SCORE;
         }
 
         sortMoves(allPossibleMoves, board, currentPlayerType);
+        if (ttMove != Move.NONE) {
+            allPossibleMoves.moveToFront(ttMove);
+        }
 
+        int bestValue;
+        int bestMove = Move.NONE;
         if (currentPlayerType == this.playerType) { // 最大化プレイヤー (AI自身)
             int maxEval = LOSE_SCORE - 1;
-            for (int[] move : allPossibleMoves) {
+            for (int i = 0; i < allPossibleMoves.size(); i++) {
+                int move = allPossibleMoves.get(i);
                 if (System.nanoTime() >= timeLimit) return maxEval; // 時間切れ
 
                 Board nextBoard = board.clone();
@@ -206,17 +381,21 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
                     nextMaxPlayerCaptured.add(captured);
                 }
 
-                int eval = minimax(nextBoard, nextMinPlayerCaptured, nextMaxPlayerCaptured, (currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1, depth - 1, alpha, beta, timeLimit);
-                maxEval = Math.max(maxEval, eval);
+                int eval = minimax(nextBoard, nextMinPlayerCaptured, nextMaxPlayerCaptured, (currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1, depth - 1, alpha, beta, timeLimit, ply + 1);
+                if (eval > maxEval) {
+                    maxEval = eval;
+                    bestMove = move;
+                }
                 alpha = Math.max(alpha, eval);
                 if (beta <= alpha) {
                     break;
                 }
             }
-            return maxEval;
+            bestValue = maxEval;
         } else { // 最小化プレイヤー (相手)
             int minEval = WIN_SCORE + 1;
-            for (int[] move : allPossibleMoves) {
+            for (int i = 0; i < allPossibleMoves.size(); i++) {
+                int move = allPossibleMoves.get(i);
                 if (System.nanoTime() >= timeLimit) return minEval; // 時間切れ
 
                 Board nextBoard = board.clone();
@@ -230,29 +409,55 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
                     nextMinPlayerCaptured.add(captured);
                 }
 
-                int eval = minimax(nextBoard, nextMaxPlayerCaptured, nextMinPlayerCaptured, (currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1, depth - 1, alpha, beta, timeLimit);
-                minEval = Math.min(minEval, eval);
+                int eval = minimax(nextBoard, nextMaxPlayerCaptured, nextMinPlayerCaptured, (currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1, depth - 1, alpha, beta, timeLimit, ply + 1);
+                if (eval < minEval) {
+                    minEval = eval;
+                    bestMove = move;
+                }
                 beta = Math.min(beta, eval);
                 if (beta <= alpha) {
                     break;
                 }
             }
-            return minEval;
+            bestValue = minEval;
         }
+
+        // 時間切れで途中までしか読めなかった値は保存しない
+        if (transpositionTable != null && System.nanoTime() < timeLimit) {
+            transpositionTable.store(key, depth, TranspositionTable.boundOf(bestValue, alphaOrig, betaOrig), bestValue,
+                    Symmetry.orient(bestMove, mirrored));
+        }
+        return bestValue;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // 置換表を差し替える (同じ手番を受け持つ AI_gj 同士なら共有してよい。null で無効)
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public EvalCache getEvalCache() {
+        return evalCache;
+    }
+
+    // 評価値キャッシュを差し替える (null なら使わない)。キーに評価する側を含むので、先手と後手の AI_gj で共有してもよい
+    public void setEvalCache(EvalCache evalCache) {
+        this.evalCache = evalCache;
     }
 
     // gj2.javaのapplyMoveを導入
-    private Piece applyMove(Board board, List<Piece> myCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType currentPlayerType, int[] move) {
-        int moveType = move[0];
-        int fromR = move[1];
-        int fromC = move[2];
-        int toR = move[3];
-        int toC = move[4];
-        int capturedIdx = move[5];
+    private Piece applyMove(Board board, List<Piece> myCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType currentPlayerType, int move) {
+        int toR = Position.rowOf(Move.to(move));
+        int toC = Position.colOf(Move.to(move));
 
         Piece capturedPiece = null;
 
-        if (moveType == 0) { // 移動
+        if (!Move.isDrop(move)) { // 移動
+            int fromR = Position.rowOf(Move.from(move));
+            int fromC = Position.colOf(Move.from(move));
             Piece pieceToMove = board.getPiece(fromR, fromC);
             capturedPiece = board.getPiece(toR, toC);
 
@@ -260,88 +465,83 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
             board.placePiece(pieceToMove, toR, toC);
 
             // 昇格処理
-            if (pieceToMove instanceof Hiyoko) {
-                Hiyoko hiyoko = (Hiyoko) pieceToMove;
-                if (!hiyoko.isPromoted() &&
-                    ((hiyoko.getOwner() == PlayerType.PLAYER1 && toR == 0) ||
-                     (hiyoko.getOwner() == PlayerType.PLAYER2 && toR == Board.ROWS - 1))) {
-                    hiyoko.promote();
-                }
+            if (promotesInSearch(pieceToMove, toR)) {
+                pieceToMove.promote();
             }
             return capturedPiece;
-        } else if (moveType == 1) { // 打ち込み
-            // myCapturedPiecesから実際に駒を削除する (複製されたリストに対して操作)
-            Piece pieceToDrop = myCapturedPieces.remove(capturedIdx);
+        } else { // 打ち込み
+            // myCapturedPiecesから同じ種類の駒を実際に削除する (複製されたリストに対して操作)
+            Piece pieceToDrop = myCapturedPieces.remove(Move.handIndex(myCapturedPieces, Move.kind(move)));
             board.placePiece(pieceToDrop, toR, toC);
             return null;
         }
-        return null;
+    }
+
+    // 探索内での昇格の条件 (gj2.java と同じく、先手は行0・後手は最終行で成る)
+    private boolean promotesInSearch(Piece piece, int toR) {
+        return piece instanceof Hiyoko && !piece.isPromoted() &&
+               ((piece.getOwner() == PlayerType.PLAYER1 && toR == 0) ||
+                (piece.getOwner() == PlayerType.PLAYER2 && toR == Board.ROWS - 1));
     }
 
     // gj2.javaのgenerateAllLegalMovesを導入
-    private List<int[]> generateAllLegalMoves(Board board, List<Piece> capturedPieces, PlayerType playerType) {
-        List<int[]> legalMoves = new ArrayList<>();
+    // 盤面をクローンせず、その場で動かして王手にならないかを確かめてから元に戻す
+    private void generateAllLegalMoves(Board board, List<Piece> capturedPieces, PlayerType playerType, MoveList legalMoves) {
+        legalMoves.clear();
 
         // 盤上の駒の移動を生成
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
                 if (piece != null && piece.getOwner() == playerType) {
-                    List<int[]> movesForPiece = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : movesForPiece) {
-                        Board tempBoard = board.clone();
-                        Piece pieceToMove = tempBoard.getPiece(r, c);
-                        Piece capturedInSim = tempBoard.getPiece(move[0], move[1]); // シミュレーションで捕獲される駒
-
-                        tempBoard.removePiece(r, c);
-                        tempBoard.placePiece(pieceToMove, move[0], move[1]);
-
-                        // 成り判定（シミュレーションボード上での一時的な処理）
-                        boolean promotedInSim = false;
-                        if (pieceToMove instanceof Hiyoko) {
-                            Hiyoko hiyoko = (Hiyoko) pieceToMove;
-                            if (!hiyoko.isPromoted() &&
-                                ((hiyoko.getOwner() == PlayerType.PLAYER1 && move[0] == 0) ||
-                                 (hiyoko.getOwner() == PlayerType.PLAYER2 && move[0] == Board.ROWS - 1))) {
-                                hiyoko.promote();
-                                promotedInSim = true;
-                            }
+                    int targets = piece.getMoveMask(r, c, board);
+                    while (targets != 0) {
+                        int to = Integer.numberOfTrailingZeros(targets);
+                        targets &= targets - 1;
+                        int toR = Position.rowOf(to);
+                        int toC = Position.colOf(to);
+                        Piece capturedInSim = board.getPiece(toR, toC); // シミュレーションで捕獲される駒
+
+                        board.removePiece(r, c);
+                        board.placePiece(piece, toR, toC);
+                        // 成りは自分のライオンへの利きに影響しないので、ここでは駒を成らせない
+                        boolean inCheck = isPlayerInCheckInternal(board, playerType);
+                        // 盤面を元の状態に戻す (重要)
+                        board.placePiece(piece, r, c);
+                        board.placePiece(capturedInSim, toR, toC);
+
+                        if (!inCheck) {
+                            legalMoves.add(Move.move(Position.square(r, c), to, piece.getKind(),
+                                    capturedInSim == null ? -1 : capturedInSim.getKind(),
+                                    capturedInSim != null && capturedInSim.isPromoted(),
+                                    promotesInSearch(piece, toR)));
                         }
-
-                        if (!isPlayerInCheckInternal(tempBoard, playerType)) {
-                            legalMoves.add(new int[]{0, r, c, move[0], move[1], -1});
-                        }
-
-                        // tempBoardを元の状態に戻す (重要)
-                        tempBoard.removePiece(move[0], move[1]);
-                        tempBoard.placePiece(pieceToMove, r, c);
-                        if(capturedInSim != null) {
-                            tempBoard.placePiece(capturedInSim, move[0], move[1]);
-                        }
-                        // Hiyokoのdemote()呼び出しを削除
                     }
                 }
             }
         }
 
-        // 手駒の打ち込みを生成
+        // 手駒の打ち込みを生成 (同じ種類の駒は1回だけ)
+        int seenKinds = 0;
         for (int i = 0; i < capturedPieces.size(); i++) {
             Piece pieceToDrop = capturedPieces.get(i);
+            int kind = pieceToDrop.getKind();
+            if ((seenKinds & (1 << kind)) != 0) continue;
+            seenKinds |= 1 << kind;
             for (int r = 0; r < Board.ROWS; r++) {
                 for (int c = 0; c < Board.COLS; c++) {
                     if (board.isEmpty(r, c)) {
-                        Board tempBoard = board.clone();
-                        tempBoard.placePiece(pieceToDrop, r, c);
+                        board.placePiece(pieceToDrop, r, c);
+                        boolean inCheck = isPlayerInCheckInternal(board, playerType);
+                        board.removePiece(r, c);
 
-                        if (!isPlayerInCheckInternal(tempBoard, playerType)) {
-                            legalMoves.add(new int[]{1, -1, -1, r, c, i});
+                        if (!inCheck) {
+                            legalMoves.add(Move.drop(kind, Position.square(r, c)));
                         }
-                        tempBoard.removePiece(r, c);
                     }
                 }
             }
         }
-        return legalMoves;
     }
 
     // gj2.javaのisPlayerInCheckInternalを導入
@@ -352,21 +552,7 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
         }
 
         PlayerType opponentType = (playerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
-
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == opponentType) {
-                    List<int[]> possibleAttacks = piece.getPossibleMoves(r, c, board);
-                    for (int[] attackMove : possibleAttacks) {
-                        if (attackMove[0] == lionPos[0] && attackMove[1] == lionPos[1]) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttackedBy(lionPos[0], lionPos[1], opponentType);
     }
 
     // gj2.javaのisTerminalを導入
@@ -411,8 +597,36 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
         }
     }
 
+    // 評価値キャッシュを通して evaluate を呼ぶ。key は minimax で置換表にも使う正規形のキー (evaluate は左右反転しても同じ値になる)
+    private int evaluateCached(long key, Board board, List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType evaluatePlayerType) {
+        if (evalCache == null) {
+            return evaluate(board, currentPlayerCapturedPieces, opponentCapturedPieces, evaluatePlayerType);
+        }
+        long cacheKey = EvalCache.key(key, evaluatePlayerType);
+        long entry = evalCache.probe(cacheKey);
+        if (entry != 0) {
+            return EvalCache.score(entry);
+        }
+        int score = evaluate(board, currentPlayerCapturedPieces, opponentCapturedPieces, evaluatePlayerType);
+        evalCache.store(cacheKey, score);
+        return score;
+    }
+
+    // 探索中は取った駒を成ったまま手駒に入れ、evaluate はそれをニワトリの価値で数える。
+    // Zobrist の手駒のキーは成りを区別しないので、成ったままの手駒の枚数を置換表と評価値キャッシュのキーに混ぜる
+    private static long promotedInHandKey(List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces) {
+        int n = 0;
+        for (Piece piece : currentPlayerCapturedPieces) {
+            if (piece.isPromoted()) n++;
+        }
+        for (Piece piece : opponentCapturedPieces) {
+            if (piece.isPromoted()) n += 4;
+        }
+        return n * 0x9E3779B97F4A7C15L;
+    }
+
     // gj2.javaのevaluateを導入 (AI_gjのevaluateBoardを置き換え)
-    private int evaluate(Board board, List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType evaluatePlayerType) {
+    int evaluate(Board board, List<Piece> currentPlayerCapturedPieces, List<Piece> opponentCapturedPieces, PlayerType evaluatePlayerType) {
         int[] myLionPos = findLion(board, evaluatePlayerType);
         int[] opponentLionPos = findLion(board, (evaluatePlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1);
 
@@ -481,11 +695,11 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
                 if (piece != null) {
-                    List<int[]> moves = piece.getPossibleMoves(r, c, board);
+                    int moves = Integer.bitCount(piece.getMoveMask(r, c, board));
                     if (piece.getOwner() == evaluatePlayerType) {
-                        myMobility += moves.size();
+                        myMobility += moves;
                     } else {
-                        opponentMobility += moves.size();
+                        opponentMobility += moves;
                     }
                 }
             }
@@ -569,20 +783,7 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
 
     // gj2.javaのisSquareAttackedByを導入
     private boolean isSquareAttackedBy(Board board, int targetR, int targetC, PlayerType attackingPlayerType) {
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == attackingPlayerType) {
-                    List<int[]> possibleMoves = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : possibleMoves) {
-                        if (move[0] == targetR && move[1] == targetC) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttackedBy(targetR, targetC, attackingPlayerType);
     }
 
     // gj2.javaのgetPieceValueを導入 (Hiyokoのpromoted状態を考慮)
@@ -603,24 +804,35 @@ public class AI_gj extends Player { // クラス名を AI_gj_Improved から AI_
         return 0;
     }
 
+    // 駒の種類から価値を求める (getPieceValue と同じ値)
+    private int getKindValue(int kind, boolean promoted) {
+        switch (kind) {
+            case Position.HIYOKO:
+                return promoted ? NIWATORI_VALUE : HIYOKO_VALUE;
+            case Position.KIRIN:
+                return KIRIN_VALUE;
+            case Position.ZOU:
+                return ZOU_VALUE;
+            case Position.LION:
+                return LION_VALUE;
+            default:
+                return 0;
+        }
+    }
+
     // gj2.javaのsortMovesを導入
-    private void sortMoves(List<int[]> moves, Board board, PlayerType playerType) {
-        Collections.sort(moves, (move1, move2) -> {
+    // 取る駒の価値が高い手を先にする (取る駒の情報は Move に入っているので盤面は見ない)
+    private void sortMoves(MoveList moves, Board board, PlayerType playerType) {
+        moves.sort((move1, move2) -> {
             int score1 = 0;
             int score2 = 0;
 
-            if (move1[0] == 0) { // 駒の移動
-                Piece target1 = board.getPiece(move1[3], move1[4]);
-                if (target1 != null && target1.getOwner() != playerType) {
-                    score1 += getPieceValue(target1);
-                }
+            if (Move.isCapture(move1)) { // 相手の駒を取る移動
+                score1 += getKindValue(Move.capturedKind(move1), Move.isCapturedPromoted(move1));
             }
 
-            if (move2[0] == 0) { // 駒の移動
-                Piece target2 = board.getPiece(move2[3], move2[4]);
-                if (target2 != null && target2.getOwner() != playerType) {
-                    score2 += getPieceValue(target2);
-                }
+            if (Move.isCapture(move2)) {
+                score2 += getKindValue(Move.capturedKind(move2), Move.isCapturedPromoted(move2));
             }
 
             return Integer.compare(score2, score1);
@@ -14,8 +14,6 @@ public class AlphaBeta extends Player {
     
     // 評価パラメータ（優先順位明確化バージョン）
     private static final int TRY_BONUS = 15000;
-    private static final int CAPTURE_BONUS = 3000;
-    private static final int SAFE_CAPTURE_MULTIPLIER = 2;
     private static final int MOBILITY_RESTRICTION_BONUS = 120;
     private static final int COMPLETE_BLOCK_BONUS = 1500;
     private static final int SAFETY_BONUS = 50;
@@ -38,10 +36,34 @@ public class AlphaBeta extends Player {
     private static final int LION_OVEREXTENSION_PENALTY = 150; // 追加
     
     private static final int MAX_DEPTH = 4;
+
+    // 静止探索の深さの上限 (駒を取るたびに盤上の駒が減るので、ふつうはこれより先に読み終わる)
+    private static final int MAX_QUIESCENCE_DEPTH = 8;
+    // 静止探索で見つけたトライ・詰みの評価値 (ライオンを取ったときの駒の価値の差と同じ大きさ)
+    private static final int WIN_SCORE = LION_VALUE;
     
     private final LinkedList<int[]> tabuList = new LinkedList<>();
     private static final int TABU_LIST_SIZE = 3;
 
+    // 同じ局面でも最大化側と最小化側で評価値の向きが逆になるので、最小化側のキーに混ぜる値
+    private static final long MINIMIZING_KEY = 0x5DEECE66DL;
+
+    // check で確かめる局面 (先手番) と、そこで chooseMove が返すべき手
+    private static final String[] CHECK_POSITIONS = {
+        "1L1/K2/l2/2h 1 -", // 探索の中で見つけたライオン取りを負けと数えない
+        "1L1/2K/2l/h2 1 -", // 同じ局面の左右反転
+    };
+    private static final int[][] CHECK_MOVES = {
+        {1, 0, 2, 0},
+        {1, 2, 2, 2},
+    };
+
+    // 探索済みの局面 (null なら使わない)
+    private TranspositionTable transpositionTable = new TranspositionTable();
+
+    // 静止探索の深さごとの手のバッファ
+    private final MoveList.Stack quiescenceMoves = new MoveList.Stack();
+
     public AlphaBeta(String name) {
         super(name);
     }
@@ -49,6 +71,13 @@ public class AlphaBeta extends Player {
     @Override
     public int[] chooseMove(Game game) {
 	game.setSilentMode(true);
+        int[] bookMove = probeBooks(game);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        if (transpositionTable != null) {
+            transpositionTable.newSearch();
+        }
         int[] tryMove = findTryMove(game);
         if (tryMove != null) {
             addToTabuList(tryMove);
@@ -136,6 +165,7 @@ public class AlphaBeta extends Player {
             applyMove(newGame, move);
             
             int moveValue = evaluateMove(newGame, move);
+            newGame.switchPlayer(); // performMove / performDrop は手番を変えないので、相手の手番にしてから読む
             moveValue += alphaBeta(newGame, dynamicDepth-1, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
             
             if (moveValue > bestValue) {
@@ -158,15 +188,6 @@ public class AlphaBeta extends Player {
             score += TRY_BONUS;
         }
 
-        if (isCaptureMove(game, move)) {
-            Piece target = board.getPiece(move[2], move[3]);
-            score += getPieceValue(target) * SAFE_CAPTURE_MULTIPLIER;
-            
-            if (!isUnderAttack(board, move[2], move[3], player)) {
-                score += CAPTURE_BONUS;
-            }
-        }
-
         score += evaluateOpponentRestriction(game, move, player);
 
         if (move[0] != -1 && board.getPiece(move[0], move[1]) instanceof Lion) {
@@ -185,10 +206,9 @@ public class AlphaBeta extends Player {
         return score;
     }
 
+    // game は move を指した後の局面
     private int evaluateOpponentRestriction(Game game, int[] move, PlayerType player) {
-        Game simulatedGame = game.clone();
-        applyMove(simulatedGame, move);
-        Board newBoard = simulatedGame.getBoard();
+        Board newBoard = game.getBoard();
         PlayerType opponent = getOpponentPlayer(player);
         
         int totalMobility = 0;
@@ -420,21 +440,6 @@ public class AlphaBeta extends Player {
         return null;
     }
 
-    private boolean isUnderAttack(Board board, int row, int col, PlayerType owner) {
-        PlayerType opponent = getOpponentPlayer(owner);
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == opponent) {
-                    for (int[] move : piece.getPossibleMoves(r, c, board)) {
-                        if (move[0] == row && move[1] == col) return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
     private boolean isTryMove(Board board, int[] move, PlayerType player) {
         if (move[0] == -1) return false;
         
@@ -445,12 +450,6 @@ public class AlphaBeta extends Player {
         return move[2] == tryRow;
     }
 
-    private boolean isCaptureMove(Game game, int[] move) {
-        Board board = game.getBoard();
-        Piece target = board.getPiece(move[2], move[3]);
-        return target != null && target.getOwner() != getPlayerType();
-    }
-
     private int getPieceValue(Piece piece) {
         if (piece instanceof Lion) return LION_VALUE;
         if (piece instanceof Zou) return ELEPHANT_VALUE;
@@ -461,10 +460,11 @@ public class AlphaBeta extends Player {
         return 0;
     }
 
+    // game の手番のプレイヤーの手 (盤上の駒を動かす手と手駒を打つ手)
     private List<int[]> getAllPossibleMoves(Game game) {
         List<int[]> moves = new ArrayList<>();
         Board board = game.getBoard();
-        PlayerType current = getPlayerType();
+        PlayerType current = game.getCurrentPlayer().getPlayerType();
         
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
@@ -477,7 +477,7 @@ public class AlphaBeta extends Player {
             }
         }
         
-        List<Piece> captured = getCapturedPieces();
+        List<Piece> captured = game.getCurrentPlayer().getCapturedPieces();
         for (int i = 0; i < captured.size(); i++) {
             Piece piece = captured.get(i);
             for (int r = 0; r < Board.ROWS; r++) {
@@ -496,7 +496,7 @@ public class AlphaBeta extends Player {
         if (move == null) return;
         
         if (move[0] == -1) {
-            game.performDrop(getCapturedPieces().get(move[1]), move[2], move[3]);
+            game.performDrop(game.getCurrentPlayer().getCapturedPieces().get(move[1]), move[2], move[3]);
         } else {
             game.performMove(move[0], move[1], move[2], move[3]);
         }
@@ -533,35 +533,246 @@ public class AlphaBeta extends Player {
     }
 
     private int alphaBeta(Game game, int depth, int alpha, int beta, boolean isMaximizingPlayer) {
-        if (depth == 0 || game.isGameOver() != null) {
-            return evaluateBoard(game.getBoard(), isMaximizingPlayer);
+        if (depth == 0) {
+            return quiescence(game, 0, alpha, beta, isMaximizingPlayer);
+        }
+        PlayerType winner = game.isGameOver();
+        if (winner != null) {
+            return winner == getPlayerType() ? WIN_SCORE : -WIN_SCORE; // quiescence と同じく常に自分から見た勝ち負け
+        }
+
+        // 置換表に十分な深さの結果があればそれを使い、なければ前回の最善手を先に試す
+        // 左右反転した局面は同じエントリを使う (Symmetry の正規形のキーで引き、手は向きを直して出し入れする)
+        long key = 0L;
+        boolean mirrored = false;
+        int ttMove = Move.NONE;
+        if (transpositionTable != null) {
+            long mirroredKey = Zobrist.mirror(game.getHashKey(), game.getBoard());
+            mirrored = Symmetry.isMirrored(game.getHashKey(), mirroredKey);
+            key = Symmetry.canonicalKey(game.getHashKey(), mirroredKey) ^ (isMaximizingPlayer ? 0L : MINIMIZING_KEY);
+            long entry = transpositionTable.probe(key);
+            if (entry != 0) {
+                if (TranspositionTable.depth(entry) >= depth && TranspositionTable.isUsable(entry, alpha, beta)) {
+                    return TranspositionTable.score(entry);
+                }
+                ttMove = Symmetry.orient(TranspositionTable.move(entry), mirrored);
+            }
         }
+        int alphaOrig = alpha;
+        int betaOrig = beta;
 
         List<int[]> moves = getAllPossibleMoves(game);
-        
+        if (ttMove != Move.NONE) {
+            int[] first = Move.toArray(ttMove, game.getCurrentPlayer().getCapturedPieces());
+            for (int i = 0; i < moves.size(); i++) {
+                if (Arrays.equals(moves.get(i), first)) {
+                    moves.add(0, moves.remove(i));
+                    break;
+                }
+            }
+        }
+
+        int bestValue;
+        int[] bestMove = null;
         if (isMaximizingPlayer) {
             int maxEval = Integer.MIN_VALUE;
             for (int[] move : moves) {
                 Game newGame = game.clone();
                 applyMove(newGame, move);
+                newGame.switchPlayer();
                 int eval = alphaBeta(newGame, depth-1, alpha, beta, false);
-                maxEval = Math.max(maxEval, eval);
+                if (eval > maxEval) {
+                    maxEval = eval;
+                    bestMove = move;
+                }
                 alpha = Math.max(alpha, eval);
                 if (beta <= alpha) break;
             }
-            return maxEval;
+            bestValue = maxEval;
         } else {
             int minEval = Integer.MAX_VALUE;
             for (int[] move : moves) {
                 Game newGame = game.clone();
                 applyMove(newGame, move);
+                newGame.switchPlayer();
                 int eval = alphaBeta(newGame, depth-1, alpha, beta, true);
-                minEval = Math.min(minEval, eval);
+                if (eval < minEval) {
+                    minEval = eval;
+                    bestMove = move;
+                }
                 beta = Math.min(beta, eval);
                 if (beta <= alpha) break;
             }
-            return minEval;
+            bestValue = minEval;
+        }
+
+        if (transpositionTable != null && bestMove != null) {
+            int packed = Symmetry.orient(Move.fromArray(bestMove, game.getBoard(), game.getCurrentPlayer().getCapturedPieces()), mirrored);
+            transpositionTable.store(key, depth, TranspositionTable.boundOf(bestValue, alphaOrig, betaOrig), bestValue, packed);
+        }
+        return bestValue;
+    }
+
+    /**
+     * 探索の末端から、駒を取る手・王手から逃げるライオンの手・トライの手だけを読み続ける静止探索。
+     * 駒の取り合いの途中で評価して損得を見誤らないようにする。
+     * 王手されていなければ、今の局面の評価値 (stand pat) より悪くなる手は指さなくてよいものとして打ち切る。
+     * 手番は isMaximizingPlayer なら自分、そうでなければ相手 (game の手番と同じ) で、手は doMove / undoMove で進めて戻す。
+     * 評価値は両者の手を比べられるよう、常に自分から見た evaluateBoard を使う。
+     */
+    private int quiescence(Game game, int qDepth, int alpha, int beta, boolean isMaximizingPlayer) {
+        Board board = game.getBoard();
+        PlayerType side = isMaximizingPlayer ? getPlayerType() : getOpponentPlayer(getPlayerType());
+        PlayerType opponent = getOpponentPlayer(side);
+        int[] lionPos = findLionPosition(board, side);
+        int[] opponentLionPos = findLionPosition(board, opponent);
+        if (lionPos == null || opponentLionPos == null) {
+            return evaluateBoard(board, true); // ライオンを取られている (駒の価値の差に表れる)
+        }
+        if (opponentLionPos[0] == getTryRow(opponent) && !game.isKingInCheck(opponent)) {
+            return isMaximizingPlayer ? -WIN_SCORE : WIN_SCORE; // 相手のトライが決まっている
+        }
+
+        boolean inCheck = game.isKingInCheck(side);
+        int best;
+        if (inCheck) {
+            best = isMaximizingPlayer ? -WIN_SCORE : WIN_SCORE; // 逃げる手がなければ詰み
+        } else {
+            int standPat = evaluateBoard(board, true);
+            if (qDepth >= MAX_QUIESCENCE_DEPTH) {
+                return standPat;
+            }
+            if (isMaximizingPlayer) {
+                if (standPat >= beta) return standPat;
+                alpha = Math.max(alpha, standPat);
+            } else {
+                if (standPat <= alpha) return standPat;
+                beta = Math.min(beta, standPat);
+            }
+            best = standPat;
+        }
+
+        MoveList moves = quiescenceMoves.get(qDepth);
+        generateQuiescenceMoves(board, side, inCheck, moves);
+        int tryRow = getTryRow(side);
+        moves.sort((a, b) -> Integer.compare(quiescenceOrder(b, tryRow), quiescenceOrder(a, tryRow)));
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long undoToken = game.doMove(move);
+            int eval;
+            if (Move.capturedKind(move) == Position.LION) {
+                eval = evaluateBoard(board, true);
+            } else if (game.isKingInCheck(side)) {
+                game.undoMove(undoToken); // ライオンを取られる手は指せない
+                continue;
+            } else if (Move.kind(move) == Position.LION && Position.rowOf(Move.to(move)) == tryRow) {
+                eval = isMaximizingPlayer ? WIN_SCORE : -WIN_SCORE; // 取られないトライ
+            } else {
+                eval = quiescence(game, qDepth + 1, alpha, beta, !isMaximizingPlayer);
+            }
+            game.undoMove(undoToken);
+
+            if (isMaximizingPlayer) {
+                best = Math.max(best, eval);
+                alpha = Math.max(alpha, eval);
+            } else {
+                best = Math.min(best, eval);
+                beta = Math.min(beta, eval);
+            }
+            if (beta <= alpha) break;
+        }
+        return best;
+    }
+
+    // 静止探索で読む手 (駒を取る手、トライの手、王手されていればライオンが動く手) を集める。合法かどうかは指してから調べる
+    private void generateQuiescenceMoves(Board board, PlayerType side, boolean inCheck, MoveList moves) {
+        moves.clear();
+        int tryRow = getTryRow(side);
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece == null || piece.getOwner() != side) continue;
+                boolean isLion = piece instanceof Lion;
+                int targets = piece.getAttackMask(r, c);
+                while (targets != 0) {
+                    int to = Integer.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    int toRow = Position.rowOf(to);
+                    Piece target = board.getPiece(toRow, Position.colOf(to));
+                    if (target != null && target.getOwner() == side) continue;
+                    if (target == null && !(isLion && (inCheck || toRow == tryRow))) continue;
+
+                    boolean promotion = piece instanceof Hiyoko && !piece.isPromoted() && toRow == tryRow;
+                    moves.add(Move.move(Position.square(r, c), to, piece.getKind(),
+                            target == null ? -1 : target.getKind(), target != null && target.isPromoted(), promotion));
+                }
+            }
+        }
+    }
+
+    // 静止探索で手を読む順序 (大きいほど先)。トライ、取る駒の価値が高い順 (MVV)、同じなら動かす駒の価値が低い順 (LVA)
+    private int quiescenceOrder(int move, int tryRow) {
+        if (Move.kind(move) == Position.LION && Position.rowOf(Move.to(move)) == tryRow) {
+            return Integer.MAX_VALUE;
+        }
+        if (!Move.isCapture(move)) {
+            return 0;
+        }
+        int victim = getKindValue(Move.capturedKind(move), Move.isCapturedPromoted(move));
+        int attacker = getKindValue(Move.kind(move), false);
+        return victim * 1000 - attacker / 100;
+    }
+
+    private int getKindValue(int kind, boolean promoted) {
+        switch (kind) {
+            case Position.LION:
+                return LION_VALUE;
+            case Position.ZOU:
+                return ELEPHANT_VALUE;
+            case Position.KIRIN:
+                return GIRAFFE_VALUE;
+            case Position.HIYOKO:
+                return promoted ? HEN_VALUE : CHICK_VALUE;
+            default:
+                return 0;
+        }
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // 置換表を差し替える (同じ手番を受け持つ AlphaBeta 同士なら共有してよい。null で無効)
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    /**
+     * 決まった正解のある局面で chooseMove が正しい手を返すかを確かめます (java AlphaBeta -check)。
+     * 評価値の向きなど探索の中身を変えたら、結果が変わっていないことを確かめること。
+     */
+    public static boolean check() {
+        boolean ok = true;
+        for (int i = 0; i < CHECK_POSITIONS.length; i++) {
+            AlphaBeta player = new AlphaBeta("AlphaBeta");
+            Game game = new Game(player, new RandomPlayer("PlayerB"));
+            game.setSilentMode(true);
+            game.setPosition(Position.parse(CHECK_POSITIONS[i]));
+            int[] move = player.chooseMove(game);
+            boolean match = Arrays.equals(move, CHECK_MOVES[i]);
+            ok &= match;
+            System.out.println((match ? "OK " : "NG ") + CHECK_POSITIONS[i] + ": " + Arrays.toString(move)
+                    + (match ? "" : " (正解 " + Arrays.toString(CHECK_MOVES[i]) + ")"));
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("-check")) {
+            System.exit(check() ? 0 : 1);
         }
+        throw new IllegalArgumentException("使い方: java AlphaBeta -check");
     }
 
     private int evaluateBoard(Board board, boolean isMaximizingPlayer) {
@@ -0,0 +1,45 @@
+/**
+ * 駒の利きの事前計算テーブル。
+ * (駒の種類, 持ち主, 成り, マス) ごとに、利いているマスを 12bit のマスクで持つ。
+ * 逆引き (そのマスに利かせられる元のマス) も持っているので、
+ * 「マス X に S の駒が利いているか」は駒のマスクとの AND だけで判定できる。
+ */
+public final class AttackTable {
+    private static final int[] ATTACKS = new int[Position.KIND_COUNT * 2 * 2 * Position.SQUARES];
+    private static final int[] ATTACKERS = new int[ATTACKS.length];
+
+    static {
+        for (int kind = 0; kind < Position.KIND_COUNT; kind++) {
+            for (int owner = 0; owner < 2; owner++) {
+                for (int promoted = 0; promoted < 2; promoted++) {
+                    int type = (kind == Position.HIYOKO && promoted == 1) ? Position.NIWATORI : kind;
+                    for (int sq = 0; sq < Position.SQUARES; sq++) {
+                        int mask = Position.attackSet(type, owner, 1 << sq);
+                        ATTACKS[index(kind, owner, promoted, sq)] = mask;
+                        for (int to = 0; to < Position.SQUARES; to++) {
+                            if ((mask & (1 << to)) != 0) {
+                                ATTACKERS[index(kind, owner, promoted, to)] |= 1 << sq;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private AttackTable() {}
+
+    private static int index(int kind, int owner, int promoted, int sq) {
+        return ((kind * 2 + owner) * 2 + promoted) * Position.SQUARES + sq;
+    }
+
+    // sq にいる駒が利いているマス
+    public static int attacks(int kind, int owner, boolean isPromoted, int sq) {
+        return ATTACKS[index(kind, owner, isPromoted ? 1 : 0, sq)];
+    }
+
+    // そこに駒があれば sq に利くマス
+    public static int attackers(int kind, int owner, boolean isPromoted, int sq) {
+        return ATTACKERS[index(kind, owner, isPromoted ? 1 : 0, sq)];
+    }
+}
@@ -67,6 +67,61 @@ public class Board implements Cloneable {
         }
     }
 
+    // (row, col) に attacker の駒が利いているか。
+    // getPossibleMoves と同じく、attacker 自身の駒がいるマスは対象外 (false) とする。
+    // どの駒も1マスしか動けないので、周囲8マスの駒の利きマスクとの AND だけで判定できる
+    public boolean isSquareAttackedBy(int row, int col, PlayerType attacker) {
+        Piece target = getPiece(row, col);
+        if (target != null && target.getOwner() == attacker) {
+            return false;
+        }
+        int sq = Position.square(row, col);
+        int bit = 1 << sq;
+        int neighbors = AttackTable.attacks(Position.LION, 0, false, sq);
+        while (neighbors != 0) {
+            int from = Integer.numberOfTrailingZeros(neighbors);
+            neighbors &= neighbors - 1;
+            int r = Position.rowOf(from);
+            int c = Position.colOf(from);
+            Piece piece = boardArray[r][c];
+            if (piece != null && piece.getOwner() == attacker && (piece.getAttackMask(r, c) & bit) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ビットボード (Position) への変換。手駒は含まない
+    public Position toPosition(PlayerType sideToMove) {
+        return Position.of(this, null, null, sideToMove);
+    }
+
+    // ビットボードから表示用の盤面を作る
+    public static Board fromPosition(Position position) {
+        Board board = new Board();
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            int owner = position.ownerAt(sq);
+            if (owner < 0) continue;
+            Piece piece = createPiece(position.kindAt(sq), Position.ownerType(owner));
+            if (position.isPromoted(sq)) {
+                piece.promote();
+            }
+            board.placePiece(piece, Position.rowOf(sq), Position.colOf(sq));
+        }
+        return board;
+    }
+
+    // 駒の種類から Piece を作る
+    public static Piece createPiece(int kind, PlayerType owner) {
+        switch (kind) {
+            case Position.LION: return new Lion(owner);
+            case Position.KIRIN: return new Kirin(owner);
+            case Position.ZOU: return new Zou(owner);
+            case Position.HIYOKO: return new Hiyoko(owner);
+            default: throw new IllegalArgumentException("unknown kind: " + kind);
+        }
+    }
+
     private String reverseString(String s) {
         if (s == null) {
             return null;
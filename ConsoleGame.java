@@ -0,0 +1,160 @@
+import java.util.Scanner;
+
+/**
+ * Game を標準入出力で遊ぶためのフロントエンド。
+ * 盤面と手駒の表示、人間の手の入力、勝敗の表示を受け持ち、ルールの処理は Game に任せる。
+ */
+public class ConsoleGame {
+    private final Game game;
+    private final Scanner scanner;
+
+    public ConsoleGame(Game game, Scanner scanner) {
+        this.game = game;
+        this.scanner = scanner;
+        game.setMessageListener(System.out::println);
+        System.out.println("PlayerA: " + game.getPlayerA());
+        System.out.println("PlayerB: " + game.getPlayerB());
+    }
+
+    public void startGame() {
+        // 勝者を示すフィールドを追加
+        PlayerType winner = null;
+
+        while (true) { // ループ条件を直接isGameOver()に依存させない
+            game.getBoard().printBoard(); // 盤面表示
+            printCapturedPieces(); // 手駒の表示
+
+            Player currentPlayer = game.getCurrentPlayer();
+            System.out.println("--- " + currentPlayer.getName() + "の番です ---");
+
+            game.setTurnNumber(game.getTurnNumber() + 1); // ターン数をインクリメント
+
+            if (currentPlayer instanceof HumanPlayer) {
+                handleHumanTurn();
+            } else {
+                game.playCpuTurn();
+            }
+
+            // ゲーム終了判定を行い、勝者がいればループを抜ける
+            // isGameOver() は勝利タイプを返すように変更
+            winner = game.isGameOver();
+            if (winner != null) {
+                break; // 勝者が決定したらループを抜ける
+            }
+
+            // ★追加：千日手チェックをここに追加
+            // 手番を切り替える前に、現在の局面が千日手になっていないかを確認する
+            if (game.checkSennichite()) {
+                System.out.println("千日手により引き分け！");
+                winner = null; // 引き分けを示す
+                break;
+            }
+
+            game.switchPlayer(); // 勝者がいない場合のみプレイヤーを切り替える
+        }
+
+        // ゲームが終了したら勝者メッセージを表示
+        if (winner == PlayerType.PLAYER1) {
+            System.out.println("PlayerAの勝利！");
+        } else if (winner == PlayerType.PLAYER2) {
+            System.out.println("PlayerBの勝利！");
+        } else { // winner が null の場合（引き分け）
+            System.out.println("--- ゲームは引き分けです ---");
+        }
+        System.out.println("--- ゲーム終了 ---");
+    }
+
+    private void printCapturedPieces() {
+        printCapturedPieces("PlayerA", game.getPlayerA()); // PlayerAはPlayerType.PLAYER1
+        printCapturedPieces("PlayerB", game.getPlayerB()); // PlayerBはPlayerType.PLAYER2
+    }
+
+    private void printCapturedPieces(String label, Player player) {
+        System.out.print(label + "の手駒: ");
+        if (player.getCapturedPieces().isEmpty()) {
+            System.out.println("なし");
+        } else {
+            player.getCapturedPieces().forEach(p -> System.out.print(p.getSymbol() + " "));
+            System.out.println();
+        }
+    }
+
+    private void handleHumanTurn() {
+        Player currentPlayer = game.getCurrentPlayer();
+        boolean moveMade = false;
+        while (!moveMade) {
+            System.out.println("手を選んでください（移動: m, 打つ: d, 手駒一覧: c）: ");
+            String choice = scanner.next();
+
+            if (choice.equalsIgnoreCase("m")) {
+                try {
+                    System.out.print("動かす駒の行 (0-3) と列 (0-2) を入力してください (例: 1 1): ");
+                    int fromRow = scanner.nextInt();
+                    int fromCol = scanner.nextInt();
+
+                    System.out.print("移動先の行 (0-3) と列 (0-2) を入力してください (例: 0 1): ");
+                    int toRow = scanner.nextInt();
+                    int toCol = scanner.nextInt();
+
+                    // 実際の手番でのperformMoveは、isKingInCheckによる合法性チェックを含まない
+                    // そのため、ここではisValidMoveAndNotIntoCheckを呼び出して事前にチェックする
+                    if (game.isValidMoveAndNotIntoCheck(currentPlayer.getPlayerType(), fromRow, fromCol, toRow, toCol)) {
+                         moveMade = game.performMove(fromRow, fromCol, toRow, toCol);
+                    } else {
+                        System.out.println("その手は無効です。自分のライオンが王手になります。");
+                    }
+
+                    if (!moveMade) {
+                        System.out.println("その手は無効です。別の手を試してください。");
+                    }
+                } catch (java.util.InputMismatchException e) {
+                    System.out.println("入力が不正です。数値を入力してください。");
+                    scanner.next(); // 不正な入力を読み飛ばす
+                }
+            } else if (choice.equalsIgnoreCase("d")) {
+                if (currentPlayer.getCapturedPieces().isEmpty()) {
+                    System.out.println("手駒がありません。");
+                    continue;
+                }
+
+                System.out.println("どの手駒を打ちますか？");
+                for (int i = 0; i < currentPlayer.getCapturedPieces().size(); i++) {
+                    System.out.print(i + ": " + currentPlayer.getCapturedPieces().get(i).getSymbol() + " ");
+                }
+                System.out.println();
+
+                try {
+                    int pieceIndex = scanner.nextInt();
+                    if (pieceIndex < 0 || pieceIndex >= currentPlayer.getCapturedPieces().size()) {
+                        System.out.println("無効な選択です。");
+                        continue;
+                    }
+                    Piece pieceToDrop = currentPlayer.getCapturedPieces().get(pieceIndex);
+
+                    System.out.print("打つ行 (0-3) と列 (0-2) を入力してください (例: 1 1): ");
+                    int dropRow = scanner.nextInt();
+                    int dropCol = scanner.nextInt();
+
+                    // 実際の手番でのperformDropは、isKingInCheckによる合法性チェックを含まない
+                    // そのため、ここではisValidDropAndNotIntoCheckを呼び出して事前にチェックする
+                    if (game.isValidDropAndNotIntoCheck(currentPlayer.getPlayerType(), pieceToDrop, dropRow, dropCol)) {
+                        moveMade = game.performDrop(pieceToDrop, dropRow, dropCol);
+                    } else {
+                        System.out.println("そこには打てません。自分のライオンが王手になります。");
+                    }
+
+                    if (!moveMade) {
+                        System.out.println("そこには打てません。別の手を試してください。");
+                    }
+                } catch (java.util.InputMismatchException e) {
+                    System.out.println("入力が不正です。数値を入力してください。");
+                    scanner.next(); // 不正な入力を読み飛ばす
+                }
+            } else if (choice.equalsIgnoreCase("c")) {
+                printCapturedPieces();
+            } else {
+                System.out.println("無効な選択です。 'm' か 'd' を入力してください。");
+            }
+        }
+    }
+}
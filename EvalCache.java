@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * 評価関数の値を局面ごとに覚えておくキャッシュ。反復深化で同じ末端の局面を何度も評価し直さないために使う。
+ * 局面の Zobrist キーと評価する側 (手番) ごとに評価値を 1 エントリ 16 バイトで持ち、同じ位置に来た局面で常に置き換える。
+ * 大きさは MB 単位で指定し、探索中に大きくなることはない。
+ *
+ * TranspositionTable と同じく、キーは data と XOR して保存するので、複数のスレッドが同時に書き込んで
+ * key と data の組が崩れたエントリは probe で読み捨てられる (ロックは使わない)。
+ * 評価値はその評価関数の値のまま入れるので、評価関数の違うプレイヤー同士では共有しないこと。
+ */
+public class EvalCache {
+    public static final int DEFAULT_MEGABYTES = 4;
+
+    private static final int ENTRY_BYTES = 16;
+
+    // data の上位に立てる印 (評価値 0 のエントリを空きと区別する)
+    private static final long PRESENT = 1L << 32;
+
+    // 後手 (PLAYER2) が評価する側のときにキーに XOR する値
+    private static final long PLAYER2_SALT = 0x6A09E667F3BCC909L;
+
+    // エントリごとに [key ^ data, data]
+    private final long[] table;
+    private final int mask;
+
+    // 統計 (複数スレッドから使う場合はおおよその値)
+    private long hits;
+    private long misses;
+
+    public EvalCache() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    public EvalCache(int megabytes) {
+        if (megabytes <= 0) {
+            throw new IllegalArgumentException("評価値キャッシュの大きさは 1MB 以上にしてください: " + megabytes);
+        }
+        long entries = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+        long capacity = Long.highestOneBit(Math.max(1, Math.min(entries, 1 << 28)));
+        table = new long[(int) capacity * 2];
+        mask = (int) capacity - 1;
+    }
+
+    // 局面のキーと評価する側からキャッシュのキーを作る
+    public static long key(long positionKey, PlayerType side) {
+        return side == PlayerType.PLAYER2 ? positionKey ^ PLAYER2_SALT : positionKey;
+    }
+
+    /**
+     * key の局面の評価値を探します。
+     * @return 見つかったエントリ (score で取り出す)。なければ 0
+     */
+    public long probe(long key) {
+        int i = index(key);
+        long data = table[i + 1];
+        if ((table[i] ^ data) == key && data != 0) {
+            hits++;
+            return data;
+        }
+        misses++;
+        return 0L;
+    }
+
+    public void store(long key, int score) {
+        long data = (score & 0xFFFFFFFFL) | PRESENT;
+        int i = index(key);
+        table[i] = key ^ data;
+        table[i + 1] = data;
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        hits = 0;
+        misses = 0;
+    }
+
+    // エントリの数
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    // 引いた回数のうち見つかった割合 (まだ引いていなければ 0)
+    public double getHitRate() {
+        long probes = hits + misses;
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+}
@@ -1,20 +1,40 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Random;
-import java.util.HashMap; // 追加
-import java.util.Map;     // 追加
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * どうぶつしょうぎのルールと対局の状態。
+ * 対局の処理は標準入出力を使わない (人間との対局の入出力は ConsoleGame が受け持ち、表示するのは runSimulations の集計だけ)。
+ * 捕獲・成り・勝敗などのメッセージは setMessageListener で渡した先にだけ送られ、渡さなければ何も出力しない。
+ */
 public class Game implements Cloneable {
     private Board board;
-    private Scanner scanner;
     private boolean silentMode = false; // サイレントモードフラグ
+    private Consumer<String> messageListener; // メッセージの送り先 (null なら出さない)
     private Player currentPlayer;
     private PlayerType forcedWinner = null;
     private int turnNumber; // ターン数カウンター
-    private Map<String, Integer> positionHistory; // ★追加：局面の履歴
+    private LongCounter positionHistory; // ★追加：局面の履歴 (ハッシュキーごとの出現回数)
+    private long hashKey; // 現在の局面の Zobrist ハッシュ (盤面・両者の手駒・手番)
     private static final int SENTE_NICHI_TE = 4; // ★追加：千日手判定の回数
 
+    // doMove が返す取り消し用トークンのビット配置
+    private static final long UNDO_SQUARE_MASK = 0xF;
+    private static final int UNDO_TO_SHIFT = 4;
+    private static final int UNDO_HAND_INDEX_SHIFT = 8;   // 打った手駒のインデックス (4bit)
+    private static final long UNDO_DROP = 1L << 12;        // 手駒を打つ手
+    private static final long UNDO_CAPTURE = 1L << 13;     // 駒を取った
+    private static final long UNDO_CAPTURED_PROMOTED = 1L << 14; // 取った駒が成っていた
+    private static final long UNDO_PROMOTION = 1L << 15;   // この手でひよこが成った
+    private static final long UNDO_PLAYER_B = 1L << 16;    // 手を指したのが PlayerB
+    private static final int UNDO_TRIAL_SHIFT = 20;        // 直前のトライ状態 (プレイヤー2bit, 行3bit, 列3bit)
+
     private Player PlayerA; // 変更:強制プレイヤー型
     private Player PlayerB; // 変更:同様
     
@@ -27,19 +47,16 @@ public class Game implements Cloneable {
     
     public Game(Player A, Player B, Player firstPlayer) {
         board = new Board();
-        scanner = new Scanner(System.in);
 	    setPlayers(A, B); // 変更:セットメソットでPlayerA, Bを自動設定
 
-        System.out.println("PlayerA: " + PlayerA);
-        System.out.println("PlayerB: " + PlayerB);
-
         PlayerA.setPlayerType(PlayerType.PLAYER1);
         PlayerB.setPlayerType(PlayerType.PLAYER2);
 
         this.currentPlayer = firstPlayer; 
         initializeGame(); //
         this.turnNumber = 0; 
-        this.positionHistory = new HashMap<>(); 
+        this.positionHistory = new LongCounter(); 
+        this.hashKey = Zobrist.compute(toPosition());
     }
     public Game(Player A, Player B) {
         // デフォルトでPlayerAを先手とする
@@ -62,153 +79,8 @@ public class Game implements Cloneable {
         board.placePiece(new Hiyoko(PlayerType.PLAYER2), 2, 1);
     }
 
-    public void startGame() {
-        // 勝者を示すフィールドを追加
-        PlayerType winner = null;
-
-        while (true) { // ループ条件を直接isGameOver()に依存させない
-            board.printBoard(); // 盤面表示
-            printCapturedPieces(); // 手駒の表示
-
-            System.out.println("--- " + currentPlayer.getName() + "の番です ---");
-
-            this.turnNumber++; // ターン数をインクリメント
-
-            if (currentPlayer instanceof HumanPlayer) {
-                handleHumanTurn();
-            } else {
-                handleCpuTurn();
-            }
-
-            // ゲーム終了判定を行い、勝者がいればループを抜ける
-            // isGameOver() は勝利タイプを返すように変更
-            winner = isGameOver();
-            if (winner != null) {
-                break; // 勝者が決定したらループを抜ける
-            }
-            
-            // ★追加：千日手チェックをここに追加
-            // 手番を切り替える前に、現在の局面が千日手になっていないかを確認する
-            if (checkSennichite()) {
-                printIfNotSilent("千日手により引き分け！"); // サイレントモードの場合は表示されない
-                winner = null; // 引き分けを示す
-                break; 
-            }
-
-            switchPlayer(); // 勝者がいない場合のみプレイヤーを切り替える
-        }
-        
-        // ゲームが終了したら勝者メッセージを表示
-        if (winner == PlayerType.PLAYER1) {
-            System.out.println("PlayerAの勝利！");
-        } else if (winner == PlayerType.PLAYER2) {
-            System.out.println("PlayerBの勝利！");
-        } else { // winner が null の場合（引き分け）
-            System.out.println("--- ゲームは引き分けです ---");
-        }
-        System.out.println("--- ゲーム終了 ---");
-        scanner.close();
-    }
-
-    private void printCapturedPieces() {
-        System.out.print("PlayerAの手駒: ");
-        // PlayerAはPlayerType.PLAYER1
-        if (PlayerA.getCapturedPieces().isEmpty()) { // PlayerAのcapturedPiecesを表示
-            System.out.println("なし");
-        } else {
-            PlayerA.getCapturedPieces().forEach(p -> System.out.print(p.getSymbol() + " "));
-            System.out.println();
-        }
-
-        System.out.print("PlayerBの手駒: ");
-        // PlayerBはPlayerType.PLAYER2
-        if (PlayerB.getCapturedPieces().isEmpty()) { // PlayerBのcapturedPiecesを表示
-            System.out.println("なし");
-        } else {
-            PlayerB.getCapturedPieces().forEach(p -> System.out.print(p.getSymbol() + " "));
-            System.out.println();
-        }
-    }
-
-    private void handleHumanTurn() {
-        boolean moveMade = false;
-        while (!moveMade) {
-            System.out.println("手を選んでください（移動: m, 打つ: d, 手駒一覧: c）: ");
-            String choice = scanner.next();
-
-            if (choice.equalsIgnoreCase("m")) {
-                try {
-                    System.out.print("動かす駒の行 (0-3) と列 (0-2) を入力してください (例: 1 1): ");
-                    int fromRow = scanner.nextInt();
-                    int fromCol = scanner.nextInt();
-
-                    System.out.print("移動先の行 (0-3) と列 (0-2) を入力してください (例: 0 1): ");
-                    int toRow = scanner.nextInt();
-                    int toCol = scanner.nextInt();
-
-                    // 実際の手番でのperformMoveは、isKingInCheckによる合法性チェックを含まない
-                    // そのため、ここではisValidMoveAndNotIntoCheckを呼び出して事前にチェックする
-                    if (isValidMoveAndNotIntoCheck(currentPlayer.getPlayerType(), fromRow, fromCol, toRow, toCol)) {
-                         moveMade = performMove(fromRow, fromCol, toRow, toCol);
-                    } else {
-                        System.out.println("その手は無効です。自分のライオンが王手になります。");
-                    }
-
-                    if (!moveMade) {
-                        System.out.println("その手は無効です。別の手を試してください。");
-                    }
-                } catch (java.util.InputMismatchException e) {
-                    System.out.println("入力が不正です。数値を入力してください。");
-                    scanner.next(); // 不正な入力を読み飛ばす
-                }
-            } else if (choice.equalsIgnoreCase("d")) {
-                if (currentPlayer.getCapturedPieces().isEmpty()) {
-                    System.out.println("手駒がありません。");
-                    continue;
-                }
-                
-                System.out.println("どの手駒を打ちますか？");
-                for (int i = 0; i < currentPlayer.getCapturedPieces().size(); i++) {
-                    System.out.print(i + ": " + currentPlayer.getCapturedPieces().get(i).getSymbol() + " ");
-                }
-                System.out.println();
-
-                try {
-                    int pieceIndex = scanner.nextInt();
-                    if (pieceIndex < 0 || pieceIndex >= currentPlayer.getCapturedPieces().size()) {
-                        System.out.println("無効な選択です。");
-                        continue;
-                    }
-                    Piece pieceToDrop = currentPlayer.getCapturedPieces().get(pieceIndex);
-
-                    System.out.print("打つ行 (0-3) と列 (0-2) を入力してください (例: 1 1): ");
-                    int dropRow = scanner.nextInt();
-                    int dropCol = scanner.nextInt();
-
-                    // 実際の手番でのperformDropは、isKingInCheckによる合法性チェックを含まない
-                    // そのため、ここではisValidDropAndNotIntoCheckを呼び出して事前にチェックする
-                    if (isValidDropAndNotIntoCheck(currentPlayer.getPlayerType(), pieceToDrop, dropRow, dropCol)) {
-                        moveMade = performDrop(pieceToDrop, dropRow, dropCol);
-                    } else {
-                        System.out.println("そこには打てません。自分のライオンが王手になります。");
-                    }
-
-                    if (!moveMade) {
-                        System.out.println("そこには打てません。別の手を試してください。");
-                    }
-                } catch (java.util.InputMismatchException e) {
-                    System.out.println("入力が不正です。数値を入力してください。");
-                    scanner.next(); // 不正な入力を読み飛ばす
-                }
-            } else if (choice.equalsIgnoreCase("c")) {
-                printCapturedPieces();
-            } else {
-                System.out.println("無効な選択です。 'm' か 'd' を入力してください。");
-            }
-        }
-    }
-
-    private void handleCpuTurn() {
+    // CPU の手番を 1 手進める (手を選べなかったときは相手の勝ちにする)
+    public void playCpuTurn() {
         // AIに手を選ばせる（移動と打つ手を含む）
         // 現在のプレイヤー（currentPlayer）のchooseMoveメソッドを呼び出す
         printIfNotSilent("AI is thinking...");
@@ -222,11 +94,15 @@ public class Game implements Cloneable {
             setSilentMode(false); 
             if (move[0] == -1) { // 手駒を打つ手c
                 Piece pieceToDrop = currentPlayer.getCapturedPieces().get(move[1]);
-                System.out.println(currentPlayer.getName() + "は「" + pieceToDrop.getSymbol() + "」を " + move[2] + "," + move[3] + " に打ちます！");
+                if (isVerbose()) {
+                    printIfNotSilent(currentPlayer.getName() + "は「" + pieceToDrop.getSymbol() + "」を " + move[2] + "," + move[3] + " に打ちます！");
+                }
                 performDrop(pieceToDrop, move[2], move[3]);
             } else { // 駒の移動
                 // chooseMove内で合法性チェック済みのため、ここではそのまま実行
-                System.out.println(currentPlayer.getName() + "は" + move[0] + "," + move[1] + " から " + move[2] + "," + move[3] + " へ動かします！");
+                if (isVerbose()) {
+                    printIfNotSilent(currentPlayer.getName() + "は" + move[0] + "," + move[1] + " から " + move[2] + "," + move[3] + " へ動かします！");
+                }
                 performMove(move[0], move[1], move[2], move[3]);
             }
         } else {
@@ -269,10 +145,16 @@ public class Game implements Cloneable {
         Piece capturedPiece = board.getPiece(toRow, toCol);
         if (capturedPiece != null) {
             // 相手の駒であれば手駒にする
+            hashKey ^= pieceKey(capturedPiece, toRow, toCol);
+            int before = countCapturedPieces(currentPlayer, capturedPiece.getKind());
             currentPlayer.addCapturedPiece(capturedPiece);
-            printIfNotSilent(currentPlayer.getName() + "は相手の「" + capturedPiece.getSymbol() + "」を捕獲しました！");
+            updateHandKey(currentPlayer, capturedPiece.getKind(), before);
+            if (isVerbose()) {
+                printIfNotSilent(currentPlayer.getName() + "は相手の「" + capturedPiece.getSymbol() + "」を捕獲しました！");
+            }
         }
 
+        hashKey ^= pieceKey(pieceToMove, fromRow, fromCol);
         board.removePiece(fromRow, fromCol);
         board.placePiece(pieceToMove, toRow, toCol);
 
@@ -282,12 +164,17 @@ public class Game implements Cloneable {
             // PlayerAの場合はrow=3、Player2(人間)の場合はrow=0
             if (currentPlayer.getPlayerType() == PlayerType.PLAYER1 && toRow == 3) {
                 pieceToMove.promote();
-                printIfNotSilent(currentPlayer.getName() + "の「ひよこ」が「にわとり」に成りました！");
+                if (isVerbose()) {
+                    printIfNotSilent(currentPlayer.getName() + "の「ひよこ」が「にわとり」に成りました！");
+                }
             } else if (currentPlayer.getPlayerType() == PlayerType.PLAYER2 && toRow == 0) {
                 pieceToMove.promote();
-                printIfNotSilent(currentPlayer.getName() + "の「ひよこ」が「にわとり」に成りました！");
+                if (isVerbose()) {
+                    printIfNotSilent(currentPlayer.getName() + "の「ひよこ」が「にわとり」に成りました！");
+                }
             }
         }
+        hashKey ^= pieceKey(pieceToMove, toRow, toCol);
         return true;
     }
 
@@ -300,18 +187,23 @@ public class Game implements Cloneable {
             return false;
         }
 
+        int before = countCapturedPieces(currentPlayer, pieceToDrop.getKind());
         currentPlayer.removeCapturedPiece(pieceToDrop);
+        updateHandKey(currentPlayer, pieceToDrop.getKind(), before);
         board.placePiece(pieceToDrop, dropRow, dropCol);
-        printIfNotSilent(currentPlayer.getName() + "は手駒の「" + pieceToDrop.getSymbol() + "」を" + dropRow + "," + dropCol + "に打ちました！");
+        hashKey ^= pieceKey(pieceToDrop, dropRow, dropCol);
+        if (isVerbose()) {
+            printIfNotSilent(currentPlayer.getName() + "は手駒の「" + pieceToDrop.getSymbol() + "」を" + dropRow + "," + dropCol + "に打ちました！");
+        }
         return true;
     }
 
     // プレイヤーの切り替え
     public void switchPlayer() { // private から public に変更
         if (currentPlayer == PlayerA) {
-            currentPlayer = PlayerB;
+            setCurrentPlayer(PlayerB);
         } else {
-            currentPlayer = PlayerA;
+            setCurrentPlayer(PlayerA);
         }
     }
 
@@ -341,20 +233,7 @@ public class Game implements Cloneable {
 
         // 相手の駒が自分のライオンを攻撃しているかチェック
         PlayerType opponentPlayerType = (playerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == opponentPlayerType) {
-                    List<int[]> possibleMoves = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : possibleMoves) {
-                        if (move[0] == kingRow && move[1] == kingCol) {
-                            return true; // 相手の駒がライオンを攻撃している
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttackedBy(kingRow, kingCol, opponentPlayerType);
     }
 
     // 王手詰み判定（このメソッドはAIのロジックで利用される）
@@ -389,7 +268,10 @@ public class Game implements Cloneable {
             currentPlayerReference = PlayerB;
         }
 
-        for (Piece pieceToDrop : currentPlayerReference.getCapturedPieces()) {
+        // isValidDropAndNotIntoCheck は手駒リストを一時的に書き換えるため、インデックスで回す
+        List<Piece> captured = currentPlayerReference.getCapturedPieces();
+        for (int i = 0; i < captured.size(); i++) {
+            Piece pieceToDrop = captured.get(i);
             for (int r = 0; r < Board.ROWS; r++) {
                 for (int c = 0; c < Board.COLS; c++) {
                     // 空いているマスであり、かつその手が王手にならないかチェック
@@ -403,38 +285,269 @@ public class Game implements Cloneable {
         return true; // 王手から逃れる手がない
     }
 
+    // 盤面をその場で動かして試し、元に戻す (Game.clone() は使わない)
     public boolean isValidMoveAndNotIntoCheck(PlayerType playerType, int fromRow, int fromCol, int toRow, int toCol) {
-        Game simulatedGame = this.clone();
-        simulatedGame.setSilentMode(true);
-        // ここではまだperformMoveが王手チェックを含まないため、先に試行し、その結果でチェック
-        // simulateGameのcurrentPlayerを正しく設定
-        simulatedGame.setCurrentPlayer((playerType == PlayerType.PLAYER1) ? simulatedGame.PlayerA : simulatedGame.PlayerB);
-        boolean moveSuccessful = simulatedGame.performMove(fromRow, fromCol, toRow, toCol);
-        
-        return moveSuccessful && !simulatedGame.isKingInCheck(playerType);
+        Piece pieceToMove = board.getPiece(fromRow, fromCol);
+        if (pieceToMove == null || pieceToMove.getOwner() != playerType) {
+            return false; // 駒がない、または自分の駒ではない
+        }
+        if (!canReach(pieceToMove, fromRow, fromCol, toRow, toCol)) {
+            return false; // 不正な移動先
+        }
+
+        Player previousPlayer = currentPlayer;
+        setCurrentPlayer(getPlayer(playerType));
+        long undoToken = doMove(fromRow, fromCol, toRow, toCol);
+        boolean inCheck = isKingInCheck(playerType);
+        undoMove(undoToken);
+        setCurrentPlayer(previousPlayer);
+        return !inCheck;
     }
 
     public boolean isValidDropAndNotIntoCheck(PlayerType playerType, Piece pieceToDrop, int dropRow, int dropCol) {
-        Game simulatedGame = this.clone();
-        simulatedGame.setSilentMode(true);
+        if (!board.isValidCoordinate(dropRow, dropCol) || !board.isEmpty(dropRow, dropCol)) {
+            return false;
+        }
 
-        // クローンされたゲームのcurrentPlayerを正しく設定
-        simulatedGame.setCurrentPlayer((playerType == PlayerType.PLAYER1) ? simulatedGame.PlayerA : simulatedGame.PlayerB);
-        
-        Piece clonedPieceToDrop = null;
-        // オリジナルのpieceToDropと同じクラスとオーナーを持つ駒をcapturedPiecesから探す
-        // simulatedGame.currentPlayer の手駒リストから探す
-        for(Piece cp : simulatedGame.currentPlayer.getCapturedPieces()){
-            if(cp.getClass() == pieceToDrop.getClass() && cp.getOwner() == pieceToDrop.getOwner()){
-                clonedPieceToDrop = cp;
+        // pieceToDrop と同じクラスとオーナーを持つ駒を手駒から探す
+        List<Piece> captured = getPlayer(playerType).getCapturedPieces();
+        int handIndex = -1;
+        for (int i = 0; i < captured.size(); i++) {
+            Piece cp = captured.get(i);
+            if (cp.getClass() == pieceToDrop.getClass() && cp.getOwner() == pieceToDrop.getOwner()) {
+                handIndex = i;
                 break;
             }
         }
-        if(clonedPieceToDrop == null) return false; // クローンされた駒が見つからない場合はエラーだが、通常は発生しないはず
+        if (handIndex == -1) return false;
+
+        Player previousPlayer = currentPlayer;
+        setCurrentPlayer(getPlayer(playerType));
+        long undoToken = doDrop(handIndex, dropRow, dropCol);
+        boolean inCheck = isKingInCheck(playerType);
+        undoMove(undoToken);
+        setCurrentPlayer(previousPlayer);
+        return !inCheck;
+    }
+
+    /**
+     * playerType の合法手 (指した後に自分のライオンへ王手がかかっていない手) を moves に詰めます。
+     * 盤面はその場で動かして試し、元に戻します。手駒は同じ種類の駒を 1 回だけ列挙します。
+     * @param playerType 手を列挙するプレイヤー
+     * @param moves 結果を入れるバッファ (最初に clear されます)
+     */
+    public void generateLegalMoves(PlayerType playerType, MoveList moves) {
+        moves.clear();
+        Player player = getPlayer(playerType);
+        Player previousPlayer = currentPlayer;
+        setCurrentPlayer(player);
+
+        // 1. 盤上の駒の移動
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece == null || piece.getOwner() != playerType) continue;
+                int from = Position.square(r, c);
+                int targets = piece.getAttackMask(r, c);
+                while (targets != 0) {
+                    int to = Integer.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    int toRow = Position.rowOf(to);
+                    int toCol = Position.colOf(to);
+                    Piece target = board.getPiece(toRow, toCol);
+                    if (target != null && target.getOwner() == playerType) continue;
+
+                    boolean promotion = piece instanceof Hiyoko && !piece.isPromoted()
+                            && toRow == (playerType == PlayerType.PLAYER1 ? Board.ROWS - 1 : 0);
+                    int move = Move.move(from, to, piece.getKind(),
+                            target == null ? -1 : target.getKind(), target != null && target.isPromoted(), promotion);
+                    long undoToken = doMove(r, c, toRow, toCol);
+                    boolean inCheck = isKingInCheck(playerType);
+                    undoMove(undoToken);
+                    if (!inCheck) {
+                        moves.add(move);
+                    }
+                }
+            }
+        }
 
-        boolean dropSuccessful = simulatedGame.performDrop(clonedPieceToDrop, dropRow, dropCol);
-        
-        return dropSuccessful && !simulatedGame.isKingInCheck(playerType);
+        // 2. 手駒を打つ手
+        List<Piece> captured = player.getCapturedPieces();
+        int seenKinds = 0;
+        for (int i = 0; i < captured.size(); i++) {
+            int kind = captured.get(i).getKind();
+            if ((seenKinds & (1 << kind)) != 0) continue;
+            seenKinds |= 1 << kind;
+            for (int r = 0; r < Board.ROWS; r++) {
+                for (int c = 0; c < Board.COLS; c++) {
+                    if (!board.isEmpty(r, c)) continue;
+                    long undoToken = doDrop(i, r, c);
+                    boolean inCheck = isKingInCheck(playerType);
+                    undoMove(undoToken);
+                    if (!inCheck) {
+                        moves.add(Move.drop(kind, Position.square(r, c)));
+                    }
+                }
+            }
+        }
+
+        setCurrentPlayer(previousPlayer);
+    }
+
+    // pieceToMove が (toRow, toCol) に動けるか
+    private boolean canReach(Piece pieceToMove, int fromRow, int fromCol, int toRow, int toCol) {
+        for (int[] move : pieceToMove.getPossibleMoves(fromRow, fromCol, board)) {
+            if (move[0] == toRow && move[1] == toCol) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // PlayerType に対応するプレイヤー
+    private Player getPlayer(PlayerType playerType) {
+        return (playerType == PlayerType.PLAYER1) ? PlayerA : PlayerB;
+    }
+
+    /**
+     * 現在の手番のプレイヤーの手を盤面に反映し、手番を相手に渡します。
+     * 合法性のチェックやメッセージ表示は行いません。undoMove に返り値を渡すと元の局面に戻ります。
+     * @param move {fromRow, fromCol, toRow, toCol} または 打ち駒なら {-1, 手駒リストのインデックス, toRow, toCol}
+     * @return undoMove に渡す取り消し用トークン
+     */
+    public long doMove(int[] move) {
+        if (move[0] == -1) {
+            return doDrop(move[1], move[2], move[3]);
+        }
+        return doMove(move[0], move[1], move[2], move[3]);
+    }
+
+    // 詰めた指し手 (Move) 版の doMove。打つ手は手駒の中で最初に見つかった同じ種類の駒を打つ
+    public long doMove(int move) {
+        int to = Move.to(move);
+        if (Move.isDrop(move)) {
+            int handIndex = Move.handIndex(currentPlayer.getCapturedPieces(), Move.kind(move));
+            return doDrop(handIndex, Position.rowOf(to), Position.colOf(to));
+        }
+        int from = Move.from(move);
+        return doMove(Position.rowOf(from), Position.colOf(from), Position.rowOf(to), Position.colOf(to));
+    }
+
+    // 駒の移動版の doMove
+    public long doMove(int fromRow, int fromCol, int toRow, int toCol) {
+        long token = saveUndoState()
+                | Position.square(fromRow, fromCol)
+                | ((long) Position.square(toRow, toCol) << UNDO_TO_SHIFT);
+        Piece pieceToMove = board.getPiece(fromRow, fromCol);
+
+        Piece capturedPiece = board.getPiece(toRow, toCol);
+        if (capturedPiece != null) {
+            token |= UNDO_CAPTURE;
+            if (capturedPiece.isPromoted()) token |= UNDO_CAPTURED_PROMOTED;
+            hashKey ^= pieceKey(capturedPiece, toRow, toCol);
+            int before = countCapturedPieces(currentPlayer, capturedPiece.getKind());
+            currentPlayer.addCapturedPiece(capturedPiece);
+            updateHandKey(currentPlayer, capturedPiece.getKind(), before);
+        }
+
+        hashKey ^= pieceKey(pieceToMove, fromRow, fromCol);
+        board.removePiece(fromRow, fromCol);
+        board.placePiece(pieceToMove, toRow, toCol);
+
+        // ひよこの成り判定 (performMove と同じ条件)
+        if (pieceToMove instanceof Hiyoko && !pieceToMove.isPromoted()) {
+            if ((pieceToMove.getOwner() == PlayerType.PLAYER1 && toRow == Board.ROWS - 1)
+                    || (pieceToMove.getOwner() == PlayerType.PLAYER2 && toRow == 0)) {
+                pieceToMove.promote();
+                token |= UNDO_PROMOTION;
+            }
+        }
+        hashKey ^= pieceKey(pieceToMove, toRow, toCol);
+
+        updateTrialState(pieceToMove, toRow, toCol);
+        switchPlayer();
+        return token;
+    }
+
+    // 手駒を打つ版の doMove
+    public long doDrop(int handIndex, int toRow, int toCol) {
+        long token = saveUndoState()
+                | UNDO_DROP
+                | ((long) handIndex << UNDO_HAND_INDEX_SHIFT)
+                | ((long) Position.square(toRow, toCol) << UNDO_TO_SHIFT);
+        List<Piece> captured = currentPlayer.getCapturedPieces();
+        Piece pieceToDrop = captured.get(handIndex);
+
+        int before = countCapturedPieces(currentPlayer, pieceToDrop.getKind());
+        captured.remove(handIndex);
+        updateHandKey(currentPlayer, pieceToDrop.getKind(), before);
+        board.placePiece(pieceToDrop, toRow, toCol);
+        hashKey ^= pieceKey(pieceToDrop, toRow, toCol);
+
+        switchPlayer();
+        return token;
+    }
+
+    // doMove / doDrop で進めた局面を元に戻す (取った駒・成り・手駒・トライ状態・手番を復元)
+    public void undoMove(long undoToken) {
+        Player mover = ((undoToken & UNDO_PLAYER_B) != 0) ? PlayerB : PlayerA;
+        setCurrentPlayer(mover);
+
+        int toSq = (int) ((undoToken >>> UNDO_TO_SHIFT) & UNDO_SQUARE_MASK);
+        int toRow = Position.rowOf(toSq);
+        int toCol = Position.colOf(toSq);
+        Piece piece = board.getPiece(toRow, toCol);
+        hashKey ^= pieceKey(piece, toRow, toCol);
+        board.removePiece(toRow, toCol);
+
+        if ((undoToken & UNDO_DROP) != 0) {
+            // 打った駒を手駒の元の位置に戻す
+            int handIndex = (int) ((undoToken >>> UNDO_HAND_INDEX_SHIFT) & UNDO_SQUARE_MASK);
+            int before = countCapturedPieces(mover, piece.getKind());
+            mover.getCapturedPieces().add(handIndex, piece);
+            updateHandKey(mover, piece.getKind(), before);
+        } else {
+            int fromSq = (int) (undoToken & UNDO_SQUARE_MASK);
+            if ((undoToken & UNDO_PROMOTION) != 0) {
+                piece.unPromote();
+            }
+            board.placePiece(piece, Position.rowOf(fromSq), Position.colOf(fromSq));
+            hashKey ^= pieceKey(piece, Position.rowOf(fromSq), Position.colOf(fromSq));
+
+            if ((undoToken & UNDO_CAPTURE) != 0) {
+                // 取った駒は手駒リストの末尾に追加されている
+                List<Piece> captured = mover.getCapturedPieces();
+                Piece capturedPiece = captured.get(captured.size() - 1);
+                int before = countCapturedPieces(mover, capturedPiece.getKind());
+                captured.remove(captured.size() - 1);
+                updateHandKey(mover, capturedPiece.getKind(), before);
+                capturedPiece.setOwner(getOpponent(mover).getPlayerType());
+                if ((undoToken & UNDO_CAPTURED_PROMOTED) != 0) {
+                    capturedPiece.promote();
+                }
+                board.placePiece(capturedPiece, toRow, toCol);
+                hashKey ^= pieceKey(capturedPiece, toRow, toCol);
+            }
+        }
+
+        restoreTrialState(undoToken);
+    }
+
+    // 手番とトライ状態をトークンに保存する
+    private long saveUndoState() {
+        long token = (currentPlayer == PlayerB) ? UNDO_PLAYER_B : 0L;
+        int trialCode = (trialPlayer == null) ? 0 : (trialPlayer == PlayerType.PLAYER1 ? 1 : 2);
+        token |= (long) trialCode << UNDO_TRIAL_SHIFT;
+        token |= (long) (trialRow + 1) << (UNDO_TRIAL_SHIFT + 2);
+        token |= (long) (trialCol + 1) << (UNDO_TRIAL_SHIFT + 5);
+        return token;
+    }
+
+    private void restoreTrialState(long undoToken) {
+        int trialCode = (int) ((undoToken >>> UNDO_TRIAL_SHIFT) & 0x3);
+        trialPlayer = (trialCode == 0) ? null : (trialCode == 1 ? PlayerType.PLAYER1 : PlayerType.PLAYER2);
+        trialRow = (int) ((undoToken >>> (UNDO_TRIAL_SHIFT + 2)) & 0x7) - 1;
+        trialCol = (int) ((undoToken >>> (UNDO_TRIAL_SHIFT + 5)) & 0x7) - 1;
     }
 
     public void makeMove(int fromRow, int fromCol, int toRow, int toCol) {
@@ -445,14 +558,15 @@ public class Game implements Cloneable {
         if (capturedPiece != null) {
             // 捕獲された駒を相手の手駒に追加
             // currentPlayer の情報ではなく、pieceToMove の owner に基づいて判断
-            if (pieceToMove.getOwner() == PlayerType.PLAYER1) {
-                PlayerA.addCapturedPiece(capturedPiece);
-            } else {
-                PlayerB.addCapturedPiece(capturedPiece);
-            }
+            Player capturer = (pieceToMove.getOwner() == PlayerType.PLAYER1) ? PlayerA : PlayerB;
+            hashKey ^= pieceKey(capturedPiece, toRow, toCol);
+            int before = countCapturedPieces(capturer, capturedPiece.getKind());
+            capturer.addCapturedPiece(capturedPiece);
+            updateHandKey(capturer, capturedPiece.getKind(), before);
         }
 
         // 駒を移動
+        hashKey ^= pieceKey(pieceToMove, fromRow, fromCol);
         board.removePiece(fromRow, fromCol);
         board.placePiece(pieceToMove, toRow, toCol);
 
@@ -465,8 +579,13 @@ public class Game implements Cloneable {
                 ((Hiyoko) pieceToMove).promote();
             }
         }
+        hashKey ^= pieceKey(pieceToMove, toRow, toCol);
         
         // ライオンがトライしたかどうかのチェック (AIシミュレーション中は直接勝利判定には影響しないが、状態は更新)
+        updateTrialState(pieceToMove, toRow, toCol);
+    }
+
+    private void updateTrialState(Piece pieceToMove, int toRow, int toCol) {
         if (pieceToMove instanceof Lion) {
             if (pieceToMove.getOwner() == PlayerType.PLAYER1 && toRow == 0) { // Player1のライオンが敵陣の最奥に到達
                 trialPlayer = PlayerType.PLAYER1;
@@ -488,13 +607,13 @@ public class Game implements Cloneable {
     public void makeDrop(Piece pieceToDrop, int toRow, int toCol) {
         // 手駒リストから駒を削除
         // pieceToDrop の owner に基づいて、どちらのプレイヤーの手駒かを判断
-        if (pieceToDrop.getOwner() == PlayerType.PLAYER1) {
-            PlayerA.removeCapturedPiece(pieceToDrop);
-        } else {
-            PlayerB.removeCapturedPiece(pieceToDrop);
-        }
+        Player owner = (pieceToDrop.getOwner() == PlayerType.PLAYER1) ? PlayerA : PlayerB;
+        int before = countCapturedPieces(owner, pieceToDrop.getKind());
+        owner.removeCapturedPiece(pieceToDrop);
+        updateHandKey(owner, pieceToDrop.getKind(), before);
         // 盤面に駒を配置
         board.placePiece(pieceToDrop, toRow, toCol);
+        hashKey ^= pieceKey(pieceToDrop, toRow, toCol);
     }
 
 
@@ -572,62 +691,97 @@ public class Game implements Cloneable {
         return board;
     }
 
+    /**
+     * 盤面・両者の手駒・手番を position の局面に置き換えます (perft などで任意の局面から始めるため)。
+     * トライの状態と局面の履歴はリセットされます。
+     */
+    public void setPosition(Position position) {
+        board = Board.fromPosition(position);
+        for (Player player : new Player[]{PlayerA, PlayerB}) {
+            int owner = Position.ownerIndex(player.getPlayerType());
+            player.getCapturedPieces().clear();
+            for (int kind = 0; kind < Position.KIND_COUNT; kind++) {
+                for (int n = 0; n < position.getHandCount(owner, kind); n++) {
+                    player.addCapturedPiece(Board.createPiece(kind, player.getPlayerType()));
+                }
+            }
+        }
+        currentPlayer = getPlayer(Position.ownerType(position.getSideToMove()));
+        forcedWinner = null;
+        trialPlayer = null;
+        trialRow = -1;
+        trialCol = -1;
+        positionHistory = new LongCounter();
+        hashKey = Zobrist.compute(toPosition());
+    }
+
+    // 現在の局面 (盤面・両者の手駒・手番) をビットボードに変換する
+    public Position toPosition() {
+        return Position.of(board, PlayerA.getCapturedPieces(), PlayerB.getCapturedPieces(), currentPlayer.getPlayerType());
+    }
+
     // サイレントモード設定メソッド
     public void setSilentMode(boolean silentMode) {
         this.silentMode = silentMode;
     }
 
+    public int getTurnNumber() {
+        return turnNumber;
+    }
+
+    public void setTurnNumber(int turnNumber) {
+        this.turnNumber = turnNumber;
+    }
+
+    // メッセージの送り先を設定する (ConsoleGame は System.out に出す。null なら何も出さない)
+    public void setMessageListener(Consumer<String> messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    // メッセージを送る先があり、サイレントモードでもないか (メッセージの文字列を作る前に確かめる)
+    private boolean isVerbose() {
+        return messageListener != null && !silentMode;
+    }
+
     // サイレントモード時のメッセージ表示
     private void printIfNotSilent(String message) {
-        if (!silentMode) {
-            System.out.println(message);
+        if (isVerbose()) {
+            messageListener.accept(message);
         }
     }
 
-    // ★追加：局面を文字列化するヘルパーメソッド
-    private String getCurrentBoardState() {
-        StringBuilder sb = new StringBuilder();
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece == null) {
-                    sb.append("NN"); // No Piece
-                } else {
-                    sb.append(piece.getSymbol()); // 例: 'L1', 'H2'など
-                    sb.append(piece.getOwner() == PlayerType.PLAYER1 ? "1" : "2");
-                    sb.append(piece.isPromoted() ? "P" : "U"); // Promoted or Unpromoted
-                }
-            }
-        }
-        // 手駒の情報も局面の一部として含める (順序を固定することで一意性を保証)
-        List<Piece> p1Captured = new ArrayList<>(PlayerA.getCapturedPieces());
-        List<Piece> p2Captured = new ArrayList<>(PlayerB.getCapturedPieces());
-        p1Captured.sort((p1, p2) -> p1.getSymbol().compareTo(p2.getSymbol()));
-        p2Captured.sort((p1, p2) -> p1.getSymbol().compareTo(p2.getSymbol()));
+    // ★追加：千日手チェックメソッド
+    public boolean checkSennichite() {
+        // 局面の Zobrist ハッシュをキーに出現回数を数える
+        return positionHistory.increment(hashKey) >= SENTE_NICHI_TE;
+    }
 
-        sb.append("A手駒:");
-        p1Captured.forEach(p -> sb.append(p.getSymbol()).append(p.getOwner() == PlayerType.PLAYER1 ? "1" : "2").append(p.isPromoted() ? "P" : "U"));
-        sb.append("B手駒:");
-        p2Captured.forEach(p -> sb.append(p.getSymbol()).append(p.getOwner() == PlayerType.PLAYER1 ? "1" : "2").append(p.isPromoted() ? "P" : "U"));
-        
-        // 現在のプレイヤーも局面の一部に含める (手番も考慮するため)
-        sb.append("Turn:");
-        sb.append(currentPlayer.getPlayerType() == PlayerType.PLAYER1 ? "1" : "2");
+    // 現在の局面のハッシュキー (探索やキャッシュで局面を識別するのに使う)
+    public long getHashKey() {
+        return hashKey;
+    }
 
-        return sb.toString();
+    // 盤上の駒のハッシュ値
+    private static long pieceKey(Piece piece, int row, int col) {
+        return Zobrist.piece(Position.ownerIndex(piece.getOwner()), piece.getKind(), piece.isPromoted(), Position.square(row, col));
     }
 
-    // ★追加：千日手チェックメソッド
-    public boolean checkSennichite() {
-        String currentState = getCurrentBoardState();
-        positionHistory.put(currentState, positionHistory.getOrDefault(currentState, 0) + 1);
-        
-        // // 千日手判定のログ (デバッグ用)
-        // if (!silentMode) {
-        //     System.out.println("局面ハッシュ: " + currentState.hashCode() + " -> 出現回数: " + positionHistory.get(currentState));
-        // }
+    // 手駒のうち指定した種類の枚数
+    private static int countCapturedPieces(Player player, int kind) {
+        int count = 0;
+        for (Piece p : player.getCapturedPieces()) {
+            if (p.getKind() == kind) count++;
+        }
+        return count;
+    }
 
-        return positionHistory.get(currentState) >= SENTE_NICHI_TE;
+    // 手駒の枚数が before から変わった分だけハッシュを更新する
+    private void updateHandKey(Player player, int kind, int before) {
+        int after = countCapturedPieces(player, kind);
+        int owner = Position.ownerIndex(player.getPlayerType());
+        for (int n = Math.min(before, after); n < Math.max(before, after); n++) {
+            hashKey ^= Zobrist.hand(owner, kind, n);
+        }
     }
 
 
@@ -637,7 +791,7 @@ public class Game implements Cloneable {
         try {
             Game clonedGame = (Game) super.clone();
             clonedGame.board = this.board.clone(); // Boardのディープコピー
-            clonedGame.scanner = new Scanner(System.in); // 新しいScannerを作成
+            clonedGame.messageListener = null; // 探索で使う複製はメッセージを出さない
             // 変更:クローン作成も型参照メソット（後述）を使用し自動化
 	    clonedGame.PlayerA = this.castPlayer(PlayerA).clone(); 
             clonedGame.PlayerB = this.castPlayer(PlayerB).clone();
@@ -655,7 +809,7 @@ public class Game implements Cloneable {
             clonedGame.trialRow = this.trialRow;
             clonedGame.trialCol = this.trialCol;
             clonedGame.turnNumber = this.turnNumber; // ターン数もコピー
-            clonedGame.positionHistory = new HashMap<>(this.positionHistory); // ★追加：局面履歴もコピー
+            clonedGame.positionHistory = this.positionHistory.clone(); // ★追加：局面履歴もコピー
 
             return clonedGame;
         } catch (CloneNotSupportedException e) {
@@ -666,6 +820,11 @@ public class Game implements Cloneable {
     // クローンされたゲームのcurrentPlayerを設定するヘルパーメソッド
     // isValidMoveAndNotIntoCheck や isValidDropAndNotIntoCheck で必要
     public void setCurrentPlayer(Player player) {
+        // 手番が変わる場合はハッシュの手番部分も切り替える
+        if (this.currentPlayer != null && player != null
+                && this.currentPlayer.getPlayerType() != player.getPlayerType()) {
+            hashKey ^= Zobrist.SIDE;
+        }
         this.currentPlayer = player;
     }
 
@@ -687,54 +846,97 @@ public class Game implements Cloneable {
     //  ---------------------ここから新メソッドを追加(西岡)------------------------
     // 更新:引数の追加
     public static void runSimulations(int numGames, Player A, Player B) {
-        int player1Wins = 0;
-        int player2Wins = 0;
-        int draws = 0; // 引き分けをカウント
+        SimulationStats stats = new SimulationStats();
 
         System.out.println("--- シミュレーション開始 (全 " + numGames + " ゲーム) ---");
 
         for (int i = 0; i < numGames; i++) {
             System.out.println("ゲーム " + (i + 1) + " / " + numGames);
             Game game = new Game(A, B); // 変更:コンストラクタに応じて変更
-            game.setSilentMode(true); // シミュレーション中はサイレントモードを有効にする
-            
-            PlayerType winner = null;
-            // 盤面の状態が同じ手数が連続した場合、引き分けと判定するためのカウンタ
-            // ここでは簡易的に、ゲームが進行しない場合の無限ループを避けるための一時的な対策として、
-            // 一定のターン数を超えたら引き分けと見なす
-            int turnCount = 0;
-            final int MAX_TURNS = 100; // 最大ターン数。これを超えたら引き分けと見なす
-
-            while (winner == null && turnCount < MAX_TURNS) {
-                game.turnNumber = turnCount + 1; // シミュレーション中のturnNumberも更新
-                game.handleCpuTurn();
-                winner = game.isGameOver();
-                if (winner == null) { // 勝者がまだ決まっていない場合のみプレイヤーを切り替える
-                    // ★追加：シミュレーション中も千日手チェック
-                    if (game.checkSennichite()) {
-                        winner = null; // 引き分け
-                        break;
-                    }
-                    game.switchPlayer();
-                }
-                turnCount++;
-            }
+            game.playSimulation(stats);
+        }
 
-            if (winner == PlayerType.PLAYER1) {
-                player1Wins++;
-            } else if (winner == PlayerType.PLAYER2) {
-                player2Wins++;
-            } else {
-                draws++; // 最大ターン数超過または千日手による引き分け
+        stats.print();
+        System.out.println("--- シミュレーション終了 ---");
+    }
+
+    /**
+     * numGames 局を workers 個のスレッドで並列に対局させます。
+     * 1 局ごとに factoryA / factoryB でプレイヤーを作り直すので、プレイヤーの状態 (手駒・置換表など) は対局の間で共有されません。
+     * 結果はロックを使わずに集計し、最後に表示して返します。
+     */
+    public static SimulationStats runSimulations(int numGames, Supplier<? extends Player> factoryA,
+                                                 Supplier<? extends Player> factoryB, int workers) {
+        SimulationStats stats = new SimulationStats();
+        AtomicInteger finished = new AtomicInteger();
+        workers = Math.max(1, Math.min(workers, numGames));
+
+        System.out.println("--- シミュレーション開始 (全 " + numGames + " ゲーム, " + workers + " スレッド) ---");
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>(numGames);
+            for (int i = 0; i < numGames; i++) {
+                tasks.add(pool.submit(() -> {
+                    Game game = new Game(factoryA.get(), factoryB.get());
+                    game.playSimulation(stats);
+                    System.out.println("ゲーム " + finished.incrementAndGet() + " / " + numGames + " 終了");
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("シミュレーションの対局に失敗しました", e.getCause());
+        } finally {
+            pool.shutdown();
         }
-        
+        long elapsed = Math.max(1, System.nanoTime() - start);
 
-        System.out.println("--- シミュレーション結果 ---");
-        System.out.println("PlayerAの勝利数: " + player1Wins);
-        System.out.println("PlayerBの勝利数: " + player2Wins);
-        System.out.println("引き分け数: " + draws);
+        stats.print();
+        System.out.println(String.format("経過時間: %.1f 秒 (%.2f 局/秒)", elapsed / 1e9, stats.getGames() * 1e9 / elapsed));
         System.out.println("--- シミュレーション終了 ---");
+        return stats;
+    }
+
+    // 利用できるコア数と同じスレッド数で runSimulations を行う
+    public static SimulationStats runSimulations(int numGames, Supplier<? extends Player> factoryA,
+                                                 Supplier<? extends Player> factoryB) {
+        return runSimulations(numGames, factoryA, factoryB, Runtime.getRuntime().availableProcessors());
+    }
+
+    // CPU 同士で 1 局指し、結果と手番ごとの思考時間を stats に記録する
+    private void playSimulation(SimulationStats stats) {
+        setSilentMode(true); // シミュレーション中はサイレントモードを有効にする
+
+        PlayerType winner = null;
+        // 盤面の状態が同じ手数が連続した場合、引き分けと判定するためのカウンタ
+        // ここでは簡易的に、ゲームが進行しない場合の無限ループを避けるための一時的な対策として、
+        // 一定のターン数を超えたら引き分けと見なす
+        int turnCount = 0;
+        final int MAX_TURNS = 100; // 最大ターン数。これを超えたら引き分けと見なす
+
+        while (winner == null && turnCount < MAX_TURNS) {
+            turnNumber = turnCount + 1; // シミュレーション中のturnNumberも更新
+            PlayerType mover = currentPlayer.getPlayerType();
+            long thinkStart = System.nanoTime();
+            playCpuTurn();
+            stats.recordThinkTime(mover, System.nanoTime() - thinkStart);
+            winner = isGameOver();
+            turnCount++;
+            if (winner == null) { // 勝者がまだ決まっていない場合のみプレイヤーを切り替える
+                // ★追加：シミュレーション中も千日手チェック
+                if (checkSennichite()) {
+                    break; // 引き分け
+                }
+                switchPlayer();
+            }
+        }
+
+        // 最大ターン数超過または千日手による引き分けは winner == null
+        stats.recordGame(winner, turnCount);
     }
     //  ---------------------ここまで新メソッドを追加(西岡)------------------------
 
@@ -26,58 +26,57 @@ public class GameState implements Cloneable {
     }
 
     /**
-     * 指定プレイヤーの全合法手を返す
-     * 返り値は {fromRow, fromCol, toRow, toCol} または 打ち駒なら {-1, -1, toRow, toCol} とする想定
+     * 指定プレイヤーの全合法手を moves に詰める (盤上の駒の移動のみ)
+     * 手は Move の形式で、取る駒と成りの情報も含む
      */
-    public List<int[]> getAllLegalMoves(PlayerType player) {
-        List<int[]> moves = new ArrayList<>();
+    public void getAllLegalMoves(PlayerType player, MoveList moves) {
+        moves.clear();
 
         // 盤上の駒の移動可能手を列挙
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
                 if (piece != null && piece.getOwner() == player) {
-                    List<int[]> pieceMoves = piece.getPossibleMoves(r, c, board);
-                    for (int[] dest : pieceMoves) {
-                        moves.add(new int[]{r, c, dest[0], dest[1]});
+                    int targets = piece.getAttackMask(r, c);
+                    while (targets != 0) {
+                        int to = Integer.numberOfTrailingZeros(targets);
+                        targets &= targets - 1;
+                        Piece target = board.getPiece(Position.rowOf(to), Position.colOf(to));
+                        if (target != null && target.getOwner() == player) continue;
+                        moves.add(Move.move(Position.square(r, c), to, piece.getKind(),
+                                target == null ? -1 : target.getKind(), target != null && target.isPromoted(), false));
                     }
                 }
             }
         }
 
         // 打ち駒の合法手もここで追加する必要あり（capturedPiecesの扱い）
-
-        return moves;
     }
 
     /**
      * 指定の手を盤面に反映する
-     * moveは {fromRow, fromCol, toRow, toCol} または 打ち駒は {-1, -1, toRow, toCol} と想定
+     * moveは Move の形式 (打ち駒は未対応)
      */
-    public void makeMove(int[] move) {
-        int fromRow = move[0];
-        int fromCol = move[1];
-        int toRow = move[2];
-        int toCol = move[3];
-
-        if (fromRow == -1 && fromCol == -1) {
+    public void makeMove(int move) {
+        if (Move.isDrop(move)) {
             // 打ち駒の処理（省略）
             // capturedPiecesから該当駒を除去し、boardに配置
             return;
         }
 
-        Piece movingPiece = board.getPiece(fromRow, fromCol);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece movingPiece = board.getPiece(Position.rowOf(from), Position.colOf(from));
         if (movingPiece == null) return;
 
         // 移動先の駒があれば取得（取る）
-        Piece captured = board.getPiece(toRow, toCol);
-        if (captured != null) {
+        if (Move.isCapture(move)) {
             // 持ち駒に加えるなどの処理（省略）
         }
 
         // 駒を移動
-        board.removePiece(fromRow, fromCol);
-        board.placePiece(movingPiece, toRow, toCol);
+        board.removePiece(Position.rowOf(from), Position.colOf(from));
+        board.placePiece(movingPiece, Position.rowOf(to), Position.colOf(to));
 
         // 成りの判定・処理（省略）
 
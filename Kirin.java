@@ -1,37 +1,13 @@
-import java.util.ArrayList;
-import java.util.List;
-
 public class Kirin extends Piece {
 
     public Kirin(PlayerType owner) {
         super(owner);
     }
 
+    // 前後左右に1マス動ける (利きは AttackTable で事前計算)
     @Override
-    public List<int[]> getPossibleMoves(int currentRow, int currentCol, Board board) {
-        List<int[]> moves = new ArrayList<>();
-        // 前後左右方向の移動 (デルタ座標)
-        int[][] deltas = {
-            {-1, 0}, // 上
-            {1, 0},  // 下
-            {0, -1}, // 左
-            {0, 1}   // 右
-        };
-
-        for (int[] delta : deltas) {
-            int newRow = currentRow + delta[0];
-            int newCol = currentCol + delta[1];
-
-            // 盤の範囲内かチェック
-            if (board.isValidCoordinate(newRow, newCol)) {
-                Piece targetPiece = board.getPiece(newRow, newCol);
-                // 移動先に駒がない、または相手の駒であれば移動可能
-                if (targetPiece == null || targetPiece.getOwner() != this.getOwner()) {
-                    moves.add(new int[]{newRow, newCol});
-                }
-            }
-        }
-        return moves;
+    public int getKind() {
+        return Position.KIRIN;
     }
 
     @Override
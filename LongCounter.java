@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * long のキーごとに出現回数を数えるカウンタ。
+ * HashMap<Long, Integer> の代わりに、オープンアドレス法のプリミティブ配列で持つ。
+ * 回数 0 のスロットを空きとみなすので、キー 0 もそのまま扱える。
+ */
+public class LongCounter implements Cloneable {
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongCounter() {
+        this(64);
+    }
+
+    public LongCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    // key の回数を 1 増やし、増やした後の回数を返す
+    public int increment(long key) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        while (counts[i] != 0) {
+            if (keys[i] == key) {
+                return ++counts[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] = 1;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return 1;
+    }
+
+    // key の回数 (登録されていなければ 0)
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        while (counts[i] != 0) {
+            if (keys[i] == key) {
+                return counts[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldCounts[j] != 0) {
+                int i = index(oldKeys[j], mask);
+                while (counts[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    @Override
+    public LongCounter clone() {
+        try {
+            LongCounter cloned = (LongCounter) super.clone();
+            cloned.keys = keys.clone();
+            cloned.counts = counts.clone();
+            return cloned;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
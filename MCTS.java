@@ -0,0 +1,351 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UCT によるモンテカルロ木探索 (MCTS) のプレイヤー。
+ * 木の選択・展開・プレイアウト・逆伝播を時間かプレイアウトの回数の予算まで繰り返し、最も多く訪れたルートの手を指す。
+ *
+ * 木のノードはオブジェクトにせず、ノード番号を添字にした配列で持つ (展開した子は番号の連続した範囲に並べる)。
+ * 複数のスレッドが 1 つの木を共有して探索し (tree parallelism)、選んだ経路には virtual loss を足して
+ * 他のスレッドが同じ経路に集まらないようにする。ロックは使わず、訪問回数と勝ち点は Atomic 配列で数える。
+ *
+ * 木の中は Position の上で指して進め、葉からは Playout で合法手から一様にランダムに選んで決着か
+ * Playout.DEFAULT_MAX_PLIES 手まで指す。千日手は判定しない。
+ */
+public class MCTS extends Player {
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 1000;
+    public static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    private static final double EXPLORATION = 1.4;   // UCT の探索項の係数 (√2 の近く)
+    private static final int VIRTUAL_LOSS = 3;        // 探索中の経路に仮に足しておく負けの回数
+    private static final int EXPAND_VISITS = 1;       // この回数だけプレイアウトした葉を展開する (ルートはすぐに展開する)
+    private static final int MAX_TREE_PLIES = 256;    // 木をたどる手数の上限 (経路の配列の大きさ)
+
+    // 展開の状態 (firstChild の値)。0 以上なら最初の子のノード番号
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final int FULL = -3; // 木がいっぱいで展開できなかった葉 (この探索ではもう展開を試さない)
+
+    // 決着の状態 (outcome の値)。勝者がいればその持ち主 + 2
+    private static final byte UNKNOWN = 0;
+    private static final byte UNDECIDED = 1;
+
+    // 探索の予算 (0 以下なら、その項目では打ち切らない)
+    private long timeLimitMillis = DEFAULT_TIME_LIMIT_MILLIS;
+    private long playoutLimit = 0;
+    private int maxNodes = DEFAULT_MAX_NODES;
+    private int threads = 1;
+    private boolean verbose = true;
+    private ForkJoinPool pool;
+
+    // 木 (ノード番号 0 がルート)
+    private int[] moves;                    // 親から指した手 (Move)
+    private int[] childCount;               // 子の数 (firstChild を書く前に書く)
+    private AtomicIntegerArray firstChild;  // 最初の子のノード番号、または UNEXPANDED / EXPANDING / FULL
+    private AtomicIntegerArray visits;      // 訪問回数 (探索中の virtual loss を含む)
+    private AtomicIntegerArray points;      // そのノードへ指した側の勝ち点 (勝ち 2, 引き分け 1)
+    private byte[] outcome;                 // ノードの局面の決着 (UNKNOWN なら未判定)
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    // 探索中の状態
+    private Position rootPosition;
+    private long deadline;                  // 打ち切る時刻 (System.nanoTime)
+    private final AtomicLong playouts = new AtomicLong();
+    private long elapsedNanos;
+
+    public MCTS(String name) {
+        super(name);
+    }
+
+    @Override
+    public int[] chooseMove(Game game) {
+        this.setPlayerType(game.getCurrentPlayer().getPlayerType());
+        int[] bookMove = probeBooks(game);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        if (timeLimitMillis <= 0 && playoutLimit <= 0) {
+            throw new IllegalStateException("時間かプレイアウトの回数のどちらかの予算を指定してください");
+        }
+
+        rootPosition = game.toPosition();
+        MoveList rootMoves = new MoveList();
+        rootPosition.generateLegalMoves(rootPosition.getSideToMove(), rootMoves);
+        if (rootMoves.isEmpty()) {
+            return null;
+        }
+        if (rootMoves.size() == 1) {
+            return Move.toArray(rootMoves.get(0), this.getCapturedPieces());
+        }
+
+        resetTree();
+        playouts.set(0);
+        long start = System.nanoTime();
+        deadline = start + timeLimitMillis * 1_000_000L;
+        if (threads > 1) {
+            List<Callable<Void>> tasks = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> {
+                    new Worker().run();
+                    return null;
+                });
+            }
+            for (Future<Void> task : getPool().invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("探索のスレッドが失敗しました", e.getCause());
+                }
+            }
+        } else {
+            new Worker().run();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        if (verbose) {
+            System.out.println(this.getName() + ": " + threads + " スレッドで " + getPlayoutCount() + " 回のプレイアウト ("
+                    + getPlayoutsPerSecond() + " 回/秒, " + getNodeCount() + " ノード)");
+        }
+
+        int best = bestChild();
+        return best < 0 ? Move.toArray(rootMoves.get(0), this.getCapturedPieces())
+                : Move.toArray(moves[best], this.getCapturedPieces());
+    }
+
+    // ルートの子のうち最も多く訪れたもの (ルートが展開されていなければ -1)
+    private int bestChild() {
+        int first = firstChild.get(0);
+        if (first < 0) return -1;
+        int best = -1;
+        for (int child = first; child < first + childCount[0]; child++) {
+            if (best < 0 || visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // 木を空にしてルートだけにする (配列は使い回し、使った範囲だけを消す)
+    private void resetTree() {
+        if (moves == null || moves.length != maxNodes) {
+            moves = new int[maxNodes];
+            childCount = new int[maxNodes];
+            firstChild = new AtomicIntegerArray(maxNodes);
+            visits = new AtomicIntegerArray(maxNodes);
+            points = new AtomicIntegerArray(maxNodes);
+            outcome = new byte[maxNodes];
+        } else {
+            int used = Math.min(nodeCount.get(), maxNodes);
+            for (int i = 0; i < used; i++) {
+                visits.set(i, 0);
+                points.set(i, 0);
+                outcome[i] = UNKNOWN;
+            }
+        }
+        firstChild.set(0, UNEXPANDED);
+        outcome[0] = UNDECIDED;
+        nodeCount.set(1);
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * 1 つのスレッドの探索。局面・合法手のバッファ・経路・プレイアウトを 1 つずつ持ち、繰り返しの中では配列を作らない。
+     */
+    private class Worker {
+        private final Position position = new Position();
+        private final MoveList buffer = new MoveList();
+        private final int[] path = new int[MAX_TREE_PLIES + 1];
+        private final Playout playout = new Playout();
+
+        void run() {
+            while (timeLimitMillis <= 0 || System.nanoTime() - deadline < 0) {
+                if (playouts.incrementAndGet() > playoutLimit && playoutLimit > 0) {
+                    playouts.decrementAndGet(); // 予算を超えた分は数えない
+                    break;
+                }
+                iterate();
+            }
+        }
+
+        // 選択・展開・プレイアウト・逆伝播を 1 回行う
+        private void iterate() {
+            position.copyFrom(rootPosition);
+            int node = 0;
+            int length = 0;
+            path[0] = 0;
+            visits.addAndGet(0, VIRTUAL_LOSS);
+
+            int winner = -1;
+            boolean decided = false;
+            while (true) {
+                int first = firstChild.get(node);
+                if (first == UNEXPANDED && (node == 0 || visits.get(node) - VIRTUAL_LOSS >= EXPAND_VISITS)) {
+                    first = expand(node);
+                }
+                if (first < 0 || length == MAX_TREE_PLIES) break; // 葉 (他のスレッドが展開中のときも葉として扱う)
+                int count = childCount[node];
+                if (count == 0) { // 合法手がない側の負け
+                    winner = 1 - position.getSideToMove();
+                    decided = true;
+                    break;
+                }
+                node = select(node, first, count);
+                position.doMove(moves[node]);
+                visits.addAndGet(node, VIRTUAL_LOSS);
+                path[++length] = node;
+
+                int state = outcome[node];
+                if (state == UNKNOWN) {
+                    int w = position.winner();
+                    state = w < 0 ? UNDECIDED : w + 2;
+                    outcome[node] = (byte) state; // 同じ値しか書かないので、他のスレッドと重なってもよい
+                }
+                if (state != UNDECIDED) {
+                    winner = state - 2;
+                    decided = true;
+                    break;
+                }
+            }
+            if (!decided) {
+                playout.setPosition(position);
+                winner = playout.play();
+            }
+            backPropagate(length, winner);
+        }
+
+        // count 個のノードを確保して最初の番号を返す。maxNodes を超えるなら何も確保せずに -1
+        private int reserveNodes(int count) {
+            while (true) {
+                int first = nodeCount.get();
+                if (first + count > maxNodes) return -1;
+                if (nodeCount.compareAndSet(first, first + count)) return first;
+            }
+        }
+
+        // node の子を作り、最初の子の番号を返す。他のスレッドが展開中か木がいっぱいなら負の値
+        private int expand(int node) {
+            if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                return firstChild.get(node);
+            }
+            position.generateLegalMoves(position.getSideToMove(), buffer);
+            int count = buffer.size();
+            int first = reserveNodes(count);
+            if (first < 0) {
+                firstChild.set(node, FULL); // 木がいっぱいなので、この先は葉のままプレイアウトする
+                return FULL;
+            }
+            for (int i = 0; i < count; i++) {
+                int child = first + i;
+                moves[child] = buffer.get(i);
+                firstChild.set(child, UNEXPANDED);
+                visits.set(child, 0);
+                points.set(child, 0);
+                outcome[child] = UNKNOWN;
+            }
+            childCount[node] = count;
+            firstChild.set(node, first); // ここで子が他のスレッドから見えるようになる
+            return first;
+        }
+
+        // UCT の値が最大の子 (まだ訪れていない子があれば、その最初の子)
+        private int select(int parent, int first, int count) {
+            double logParent = Math.log(Math.max(1, visits.get(parent)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + count; child++) {
+                int n = visits.get(child);
+                if (n == 0) return child;
+                double value = points.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        // 経路の各ノードの virtual loss を本当の結果に置き換える
+        private void backPropagate(int length, int winner) {
+            int rootSide = rootPosition.getSideToMove();
+            for (int i = length; i >= 0; i--) {
+                int node = path[i];
+                int mover = (i % 2 == 1) ? rootSide : 1 - rootSide; // node へ指した側
+                visits.addAndGet(node, 1 - VIRTUAL_LOSS);
+                points.addAndGet(node, winner < 0 ? 1 : winner == mover ? 2 : 0);
+            }
+        }
+    }
+
+    // 1手あたりの思考時間 (ミリ秒、0 以下なら時間では打ち切らない)
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    // 1手あたりのプレイアウトの回数の上限 (0 以下なら回数では打ち切らない)
+    public void setPlayoutLimit(long playoutLimit) {
+        this.playoutLimit = playoutLimit;
+    }
+
+    public long getPlayoutLimit() {
+        return playoutLimit;
+    }
+
+    // 木のノードの数の上限 (いっぱいになったら、それ以上は展開せずにプレイアウトだけを続ける)
+    public void setMaxNodes(int maxNodes) {
+        if (maxNodes < 2) {
+            throw new IllegalArgumentException("ノードの数は 2 以上にしてください: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+    }
+
+    // 1 つの木を共有して探索するスレッド数
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // chooseMove のたびにプレイアウトの回数と速さを表示するか
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    // 直前の chooseMove で行ったプレイアウトの回数
+    public long getPlayoutCount() {
+        return playouts.get();
+    }
+
+    // 直前の chooseMove の 1 秒あたりのプレイアウトの回数
+    public long getPlayoutsPerSecond() {
+        return playouts.get() * 1_000_000_000L / Math.max(1, elapsedNanos);
+    }
+
+    // 直前の chooseMove で作った木のノードの数
+    public int getNodeCount() {
+        return Math.min(nodeCount.get(), maxNodes);
+    }
+}
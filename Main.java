@@ -2,27 +2,50 @@ import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
+        // 探索スレッド数 (java Main 8 のように指定。省略時は 1)。西岡AI と 五籐AI とモンテカルロAI で使う
+        int threads = 1;
+        if (args.length > 0) {
+            try {
+                threads = Math.max(1, Integer.parseInt(args[0]));
+            } catch (NumberFormatException e) {
+                System.out.println("スレッド数が不正です。1スレッドで探索します: " + args[0]);
+            }
+        }
+
+        // 局面データベース (TablebaseGenerator で作る) があれば、全ての AI がそれを使う
+        Player.setTablebase(Tablebase.openIfExists(Tablebase.DEFAULT_FILE));
+        // 定跡 (OpeningBookGenerator で作る) があれば、序盤は探索せずにそれを指す
+        Player.setOpeningBook(OpeningBook.loadIfExists(OpeningBook.DEFAULT_FILE));
+
         HumanPlayer PlayerB = new HumanPlayer("あなた");
         
         Scanner scanner = new Scanner(System.in); 
-        System.out.println("どのAIと戦いますか？\n以下の選択肢から一つ選択してください.\n（西岡AI: 1, 五籐AI: 2, 加藤AI: 3, 宮田AI: 4, 栗政AI: 5）: ");
+        System.out.println("どのAIと戦いますか？\n以下の選択肢から一つ選択してください.\n（西岡AI: 1, 五籐AI: 2, 加藤AI: 3, 宮田AI: 4, 栗政AI: 5, モンテカルロAI: 6）: ");
 
         String choice = scanner.next();
         
         Player PlayerA = null; 
 
         if (choice.equalsIgnoreCase("1")) {
-            PlayerA = new MinMax("西岡AI");
+            MinMax minMaxPlayer = new MinMax("西岡AI");
+            minMaxPlayer.setThreads(threads);
+            PlayerA = minMaxPlayer;
         } else if (choice.equalsIgnoreCase("2")) {
-            PlayerA = new AI_gj("五籐AI");
+            AI_gj gjPlayer = new AI_gj("五籐AI");
+            gjPlayer.setThreads(threads);
+            PlayerA = gjPlayer;
         } else if (choice.equalsIgnoreCase("3")) {
             QLearn qlearnPlayer = new QLearn("加藤AI");
-            qlearnPlayer.loadQTable("qtable.dat");
+            qlearnPlayer.loadQTable("qtable.qtb");
             PlayerA = qlearnPlayer; 
         } else if (choice.equalsIgnoreCase("4")) {
             PlayerA = new AlphaBeta("宮田AI");
         } else if (choice.equalsIgnoreCase("5")) {
             PlayerA = new ABPlayer("栗政AI");
+        } else if (choice.equalsIgnoreCase("6")) {
+            MCTS mctsPlayer = new MCTS("モンテカルロAI");
+            mctsPlayer.setThreads(threads);
+            PlayerA = mctsPlayer;
         } else {
             System.out.println("無効な選択です。適切な値を入力してください。");
             scanner.close(); // 無効な選択の場合はここで閉じて終了
@@ -52,7 +75,7 @@ public class Main {
         
         if (PlayerA != null) {
             Game game = new Game(PlayerA, PlayerB, firstPlayer); 
-            game.startGame(); 
+            new ConsoleGame(game, scanner).startGame(); 
         } else {
             System.out.println("AIプレイヤーが選択されなかったため、ゲームを開始できません。");
         }
@@ -11,10 +11,11 @@ public class MainSimu {
 	// こんな感じ ↓
 	// QLearn PlayerA = new QLearn("QLearn");
 	// PlayerA.trial(1000);
-	    RandomPlayer PlayerA = new RandomPlayer("Random");
-	    // MinMax PlayerB = new MinMax("MinMax");
-        AI_gj PlayerB = new AI_gj("AI_gj");
-        Game game = new Game(PlayerA, PlayerB); // ゲームのインスタンスを作
-        Game.runSimulations(100, PlayerA, PlayerB); // AI同士の対戦を100回シミュレーション
+	// 1 局ごとにプレイヤーを作り直し、args[0] のスレッド数 (省略時はコア数) で並列に対局させる
+	int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+	Player.setTablebase(Tablebase.openIfExists(Tablebase.DEFAULT_FILE)); // 局面データベースがあれば使う
+	Player.setOpeningBook(OpeningBook.loadIfExists(OpeningBook.DEFAULT_FILE)); // 定跡があれば使う
+	// Game.runSimulations(100, () -> new RandomPlayer("Random"), () -> new MinMax("MinMax"), workers);
+        Game.runSimulations(100, () -> new RandomPlayer("Random"), () -> new AI_gj("AI_gj"), workers); // AI同士の対戦を100回シミュレーション
     }
 }
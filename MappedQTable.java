@@ -0,0 +1,210 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Q テーブルのバイナリファイルを MappedByteBuffer で直接読む、読み出し専用の Q テーブル。
+ * 開くときにファイル全体を読み込まないので起動はすぐに終わり、使った部分だけが OS によって読み込まれる。
+ *
+ * <pre>
+ * ファイルの形式 (ビッグエンディアン)
+ *   int   MAGIC ("QTBL")
+ *   int   VERSION
+ *   int   局面の数 n
+ *   int   手の数の合計 m
+ *   long  局面のキー x n          (昇順。二分探索で引く)
+ *   int   手のブロックの先頭 x (n + 1) (局面 i の手は start[i] から start[i + 1] の手前まで)
+ *   short 手のキー x m
+ *   (4 バイト境界まで詰め物)
+ *   float Q 値 x m
+ * </pre>
+ *
+ * 版 2 からは、局面のキーは左右反転をまとめた正規形 (QLearn.canonicalStateKey) で、手のキーもその向きに揃えてある。
+ * 版 1 のファイルも読めるが、キーが正規形とは限らないので isCanonical で確かめて QLearn.canonicalize してから使う。
+ */
+public class MappedQTable implements QValues {
+    public static final int MAGIC = 0x5154424C; // "QTBL"
+    public static final int VERSION = 2;
+    private static final int FIRST_VERSION = 1; // 正規形にする前の版
+    private static final int HEADER_BYTES = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int version;
+    private final int states;
+    private final int actions;
+    private final int startsOffset;
+    private final int movesOffset;
+    private final int valuesOffset;
+
+    private MappedQTable(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Q テーブルのファイルではありません");
+        }
+        version = buffer.getInt(4);
+        if (version < FIRST_VERSION || version > VERSION) {
+            throw new IllegalArgumentException("対応していない Q テーブルの版です: " + version);
+        }
+        states = buffer.getInt(8);
+        actions = buffer.getInt(12);
+        startsOffset = HEADER_BYTES + states * 8;
+        movesOffset = startsOffset + (states + 1) * 4;
+        valuesOffset = align4(movesOffset + actions * 2);
+    }
+
+    // filename のバイナリの Q テーブルを開く
+    public static MappedQTable open(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Q テーブルのファイルが大きすぎます (2GB まで): " + channel.size());
+            }
+            // マップした領域はチャネルを閉じても使える
+            return new MappedQTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // filename がこの形式のファイルかどうか (先頭の MAGIC で判定する)
+    public static boolean isBinaryFile(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            return file.length() >= HEADER_BYTES && file.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // table をこの形式で filename に書き出す (table のキーは正規形にしておくこと)
+    public static void write(QTable table, String filename) throws IOException {
+        int n = table.size();
+        long[] keys = new long[n];
+        int[] slots = new int[n];
+        int count = 0;
+        for (int slot = 0; slot < table.slotCount(); slot++) {
+            if (table.isUsed(slot)) {
+                keys[count++] = table.keyAt(slot);
+            }
+        }
+        Arrays.sort(keys);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            slots[i] = table.find(keys[i]);
+            m += table.actionCount(slots[i]);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(m);
+            for (long key : keys) {
+                out.writeLong(key);
+            }
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                out.writeInt(start);
+                start += table.actionCount(slots[i]);
+            }
+            out.writeInt(start);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < table.actionCount(slots[i]); j++) {
+                    out.writeShort(table.moveAt(slots[i], j));
+                }
+            }
+            int movesEnd = HEADER_BYTES + n * 8 + (n + 1) * 4 + m * 2;
+            for (int pad = movesEnd; pad < align4(movesEnd); pad++) {
+                out.writeByte(0);
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < table.actionCount(slots[i]); j++) {
+                    out.writeFloat(table.valueAt(slots[i], j));
+                }
+            }
+        }
+    }
+
+    // 学習を続けるために、書き換えられる QTable に写す
+    public QTable toQTable() {
+        QTable table = new QTable(states);
+        for (int i = 0; i < states; i++) {
+            int slot = table.findOrInsert(buffer.getLong(HEADER_BYTES + i * 8));
+            for (int j = 0; j < actionCount(i); j++) {
+                table.put(slot, moveAt(i, j), valueAt(i, j));
+            }
+        }
+        return table;
+    }
+
+    // スロットはキーの昇順での番号
+    @Override
+    public int find(long state) {
+        int low = 0;
+        int high = states - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long key = buffer.getLong(HEADER_BYTES + mid * 8);
+            if (key < state) {
+                low = mid + 1;
+            } else if (key > state) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int actionCount(int slot) {
+        return start(slot + 1) - start(slot);
+    }
+
+    @Override
+    public int moveAt(int slot, int i) {
+        return buffer.getShort(movesOffset + (start(slot) + i) * 2) & 0xFFFF;
+    }
+
+    @Override
+    public float valueAt(int slot, int i) {
+        return buffer.getFloat(valuesOffset + (start(slot) + i) * 4);
+    }
+
+    @Override
+    public float get(int slot, int move, float defaultValue) {
+        int start = start(slot);
+        int end = start(slot + 1);
+        short m = (short) move;
+        for (int i = start; i < end; i++) {
+            if (buffer.getShort(movesOffset + i * 2) == m) {
+                return buffer.getFloat(valuesOffset + i * 4);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public int size() {
+        return states;
+    }
+
+    public int actionCount() {
+        return actions;
+    }
+
+    // 局面のキーが左右反転の正規形で書かれているか (版 2 以降)
+    public boolean isCanonical() {
+        return version >= 2;
+    }
+
+    private int start(int slot) {
+        return buffer.getInt(startsOffset + slot * 4);
+    }
+
+    private static int align4(int offset) {
+        return (offset + 3) & ~3;
+    }
+}
@@ -1,12 +1,17 @@
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MinMax extends Player {
-    // 探索の深さ
-    private static final int MAX_DEPTH = 4; // 探索深度を調整（計算資源と相談）
+    // 探索の深さ (反復深化で 1 手ずつ深くする。通常は時間・ノード数の予算で先に打ち切られる)
+    private static final int MAX_DEPTH = 64;
+    private static final long DEFAULT_TIME_LIMIT_MILLIS = 1000; // 1手あたりの思考時間 (AI_gj と同じ 1 秒)
+    private static final int TIME_CHECK_INTERVAL = 63;         // 時間切れを確かめる間隔 (ノード数 - 1)
 
     // 駒の基本価値
     private static final int LION_VALUE = 2500; // ライオンの価値を非常に高く設定（詰み/トライはこれよりはるかに高い）
@@ -64,6 +69,40 @@ public class MinMax extends Player {
         { 500, 1000, 500} // 自陣奥は高く
     };
 
+    // 駒の種類 (Position.LION..HIYOKO) ごとの価値と配置点テーブル (成ったひよこは価値が NIWATORI_VALUE で、配置点は PST_HIYOKO を使う)
+    private static final int[] PIECE_VALUES = {LION_VALUE, KIRIN_VALUE, ZOU_VALUE, HIYOKO_VALUE};
+    private static final int[][][] PST_BY_KIND = {PST_LION, PST_KIRIN, PST_ZOU, PST_HIYOKO};
+
+    // 手の並べ替えの点数 (orderMoves)。駒を取る手・成る手は ORDER_CAPTURE に価値の分を足す
+    private static final int ORDER_TT_MOVE = 1 << 30;
+    private static final int ORDER_WIN = 1 << 29;     // ライオンを取る手、トライ
+    private static final int ORDER_CAPTURE = 1 << 28;
+    private static final int ORDER_KILLER = 1 << 27;
+    private static final int MAX_HISTORY = 1 << 26;  // history がこれを超えたら全体を半分にする
+    private static final int HISTORY_SOURCES = Position.SQUARES + Position.KIND_COUNT; // 移動元のマスと打つ駒の種類
+
+    // 合法手バッファはルートの手を並列に読むスレッドごとに持つ
+    private final ThreadLocal<MoveList.Stack> moveStack = ThreadLocal.withInitial(MoveList.Stack::new); // 探索の深さごとの合法手バッファ
+    private final ThreadLocal<MoveList> evasionMoves = ThreadLocal.withInitial(MoveList::new);           // 詰み判定用の合法手バッファ
+    private TranspositionTable transpositionTable = new TranspositionTable(); // 探索済みの局面 (null なら使わない)
+    private final ThreadLocal<OrderingTables> orderingTables = ThreadLocal.withInitial(OrderingTables::new); // 手の並べ替え用の表
+    private volatile int searchGeneration; // chooseMove ごとに 1 増やす (スレッドごとの killer 手をここで捨てる)
+
+    // 探索の予算 (0 以下なら、その項目では打ち切らない)
+    private int maxDepth = MAX_DEPTH;
+    private long timeLimitMillis = DEFAULT_TIME_LIMIT_MILLIS;
+    private long nodeLimit = 0;
+
+    // ルートの手を読むスレッド数 (1 なら呼び出したスレッドだけで読む)
+    private int threads = 1;
+    private ForkJoinPool pool;
+
+    // 探索中の状態 (ルートを並列に読むときは全スレッドで共有する)
+    private long deadline;                           // 打ち切る時刻 (System.nanoTime)
+    private final AtomicLong nodes = new AtomicLong(); // 今回の chooseMove で訪れた局面の数
+    private volatile boolean aborted;                // 予算を使い切って、今の深さの探索を途中でやめた
+    private int completedDepth;                      // 最後まで読み切れた深さ
+
     public MinMax(String name) {
         super(name);
     }
@@ -71,153 +110,325 @@ public class MinMax extends Player {
     @Override
     public int[] chooseMove(Game game) { //AIがどのような探索をしているかを調べられるメソッド
         game.setSilentMode(true);
+        int[] bookMove = probeBooks(game);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        if (transpositionTable != null) {
+            transpositionTable.newSearch();
+        }
         // 現在のプレイヤーとボードの状態をMinMaxアルゴリズムのルートノードとして設定
         SimulationState initialState = new SimulationState(game.getBoard().clone(), game.getPlayerA().clone(), game.getPlayerB().clone(), this.getPlayerType()); // PlayerA, PlayerBはGameクラスから取得し、自身のPlayerTypeを渡す
-        int[] bestMove = null;
+        int bestMove = Move.NONE;
         int bestValue = Integer.MIN_VALUE;
 
         // chooseMoveで呼ばれるgetAllPossibleMovesにはGameインスタンスを渡す
-        // GameクラスのisValidMoveAndNotIntoCheckとisValidDropAndNotIntoCheckを利用
-        List<int[]> moves = getAllPossibleMoves(game); 
+        // GameクラスのgenerateLegalMoves (王手放置の手を除いた合法手) を利用
+        MoveList moves = moveStack.get().get(0);
+        getAllPossibleMoves(game, moves);
         
         // AlphaBeta同様、合法手がなければnullを返す
         if (moves.isEmpty()) {
             return null;
         }
 
-        // 探索効率向上のため、合法手をソートする
-        sortMoves(moves, initialState.board, this.getPlayerType(), game); // gameインスタンスも渡す
-        
-        // Minimax探索の開始
-        for (int[] move : moves) {
-            SimulationState nextState = initialState.clone(); // 現在の状態を複製
-            
-            // nextStateのplayerA, playerBのplayerTypeが正しく設定されていることを確認
-            if (nextState.playerA.getPlayerType() == null) nextState.playerA.setPlayerType(PlayerType.PLAYER1);
-            if (nextState.playerB.getPlayerType() == null) nextState.playerB.setPlayerType(PlayerType.PLAYER2);
+        // 探索効率向上のため、合法手を並べ替える
+        searchGeneration++;
+        orderMoves(moves, this.getPlayerType(), Move.NONE, 0);
+
+        // 合法手が1つしかなければ読む必要はない
+        if (moves.size() == 1) {
+            game.setSilentMode(false);
+            return Move.toArray(moves.get(0), this.getCapturedPieces());
+        }
 
-            nextState.applyMove(move); // 手を適用
+        nodes.set(0);
+        aborted = false;
+        completedDepth = 0;
+        deadline = System.nanoTime() + timeLimitMillis * 1_000_000L;
 
-            // ミニマックスアルゴリズムは、相手のターンを考慮して最小値を探す
-            int value = minimax(nextState, MAX_DEPTH - 1, false);
+        // 反復深化: 深さ 1 から順に読み、予算を使い切ったら最後に読み切れた深さの最善手を使う
+        // (深さ 1 は必ず最後まで読むので、少なくとも 1 つは評価済みの手が残る)
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int[] result = (threads > 1)
+                    ? searchRootInParallel(initialState, moves, depth)
+                    : searchRoot(initialState, moves, depth);
 
-            if (value > bestValue) {
-                bestValue = value;
-                bestMove = move;
+            if (aborted) {
+                break; // 途中までしか読めなかった深さの結果は使わない
             }
+            bestMove = result[0];
+            bestValue = result[1];
+            completedDepth = depth;
+
+            // 前の深さでの最善手を、次の深さで最初に読む
+            moves.moveToFront(bestMove);
         }
         game.setSilentMode(false);
-        return bestMove;
+        return bestMove == Move.NONE ? null : Move.toArray(bestMove, this.getCapturedPieces());
     }
 
-    // chooseMoveから呼ばれる、Gameインスタンスを引数にとる合法手生成メソッド
-    // ここに手駒を打つ処理を追加
-    private List<int[]> getAllPossibleMoves(Game game) {
-        List<int[]> allPossibleMoves = new ArrayList<>();
-        PlayerType myPlayerType = this.getPlayerType(); // 現在の手番のプレイヤータイプ
+    // ルートの手を順に読み、{最善手, 評価値} を返す。予算を使い切ったときは null
+    private int[] searchRoot(SimulationState initialState, MoveList moves, int depth) {
+        int iterationBestMove = Move.NONE;
+        int iterationBestValue = Integer.MIN_VALUE;
+        int alpha = Integer.MIN_VALUE;
 
-        // 1. 盤上の駒の移動に関する合法手を収集
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = game.getBoard().getPiece(r, c);
-                // 自分の駒であれば
-                if (piece != null && piece.getOwner() == myPlayerType) {
-                    List<int[]> movesForPiece = piece.getPossibleMoves(r, c, game.getBoard());
-                    for (int[] move : movesForPiece) {
-                        // 移動が王手にならないかチェック (Gameクラスのメソッドを使用)
-                        if (game.isValidMoveAndNotIntoCheck(myPlayerType, r, c, move[0], move[1])) {
-                            // {元の行, 元の列, 新しい行, 新しい列}
-                            allPossibleMoves.add(new int[]{r, c, move[0], move[1]});
-                        }
-                    }
-                }
+        // Minimax探索の開始
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            SimulationState nextState = createChildState(initialState, move);
+
+            // 相手のターンを考慮して最小値を探す。これまでの最善値より良くならない手はそこで打ち切る
+            int value = minimax(nextState, depth - 1, 1, alpha, Integer.MAX_VALUE, false);
+            if (aborted) {
+                return null;
+            }
+
+            if (value > iterationBestValue) {
+                iterationBestValue = value;
+                iterationBestMove = move;
             }
+            alpha = Math.max(alpha, value);
         }
+        return new int[]{iterationBestMove, iterationBestValue};
+    }
 
-        // 2. 手駒を打つ合法手を収集
-        List<Piece> captured = this.getCapturedPieces(); // MinMaxインスタンス自身の手駒を取得
-        for (int i = 0; i < captured.size(); i++) {
-            Piece pieceToDrop = captured.get(i);
-            for (int r = 0; r < Board.ROWS; r++) {
-                for (int c = 0; c < Board.COLS; c++) {
-                    // 空いているマスであれば打てる AND その手が王手にならないかチェック (Gameクラスのメソッドを使用)
-                    if (game.getBoard().isEmpty(r, c) && game.isValidDropAndNotIntoCheck(myPlayerType, pieceToDrop, r, c)) {
-                        // 手駒を打つ手は、特別な形式でリストに追加
-                        // { -1, 手駒リストのインデックス, 落とす行, 落とす列 }
-                        allPossibleMoves.add(new int[]{-1, i, r, c});
-                    }
+    /**
+     * ルートの手を ForkJoinPool のスレッドで手分けして読み、{最善手, 評価値} を返します。予算を使い切ったときは null。
+     * 各スレッドはそれまでに見つかった最善値より 1 小さい値を alpha にして窓を狭めます。
+     * こうすると最善値と同点の手も正確な値が求まるので、どの順に読み終わっても
+     * 「最善値を持つ手のうちリストで最初の手」という searchRoot と同じ結果になります。
+     */
+    private int[] searchRootInParallel(SimulationState initialState, MoveList moves, int depth) {
+        int size = moves.size();
+        int[] values = new int[size];
+        boolean[] exact = new boolean[size]; // alpha より大きい (= 正確な) 値が求まった手
+        AtomicInteger sharedBest = new AtomicInteger(Integer.MIN_VALUE);
+
+        List<Callable<Void>> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            int move = moves.get(i);
+            tasks.add(() -> {
+                SimulationState nextState = createChildState(initialState, move);
+                int best = sharedBest.get();
+                int alpha = (best == Integer.MIN_VALUE) ? Integer.MIN_VALUE : best - 1;
+                int value = minimax(nextState, depth - 1, 1, alpha, Integer.MAX_VALUE, false);
+                if (!aborted && value > alpha) {
+                    values[index] = value;
+                    exact[index] = true;
+                    sharedBest.accumulateAndGet(value, Math::max);
                 }
+                return null;
+            });
+        }
+        getPool().invokeAll(tasks);
+        if (aborted) {
+            return null;
+        }
+
+        int bestIndex = -1;
+        for (int i = 0; i < size; i++) {
+            if (exact[i] && (bestIndex < 0 || values[i] > values[bestIndex])) {
+                bestIndex = i;
             }
         }
-        return allPossibleMoves;
+        return new int[]{moves.get(bestIndex), values[bestIndex]};
     }
 
+    // ルートの局面を複製して move を指した局面を作る
+    private SimulationState createChildState(SimulationState initialState, int move) {
+        SimulationState nextState = initialState.clone(); // 現在の状態を複製
+
+        // nextStateのplayerA, playerBのplayerTypeが正しく設定されていることを確認
+        if (nextState.playerA.getPlayerType() == null) nextState.playerA.setPlayerType(PlayerType.PLAYER1);
+        if (nextState.playerB.getPlayerType() == null) nextState.playerB.setPlayerType(PlayerType.PLAYER2);
+
+        nextState.applyMove(move); // 手を適用
+        return nextState;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    // chooseMoveから呼ばれる、Gameインスタンスを引数にとる合法手生成メソッド
+    // 盤上の駒の移動と手駒を打つ手を moves に詰める
+    private void getAllPossibleMoves(Game game, MoveList moves) {
+        game.generateLegalMoves(this.getPlayerType(), moves);
+    }
+
+
+    // alpha-beta 法による探索。ply はルートからの手数 (合法手バッファの選択に使う)
+    private int minimax(SimulationState state, int depth, int ply, int alpha, int beta, boolean maximizingPlayer) {
+        // 予算 (時間・ノード数) を使い切ったら、ここで探索をやめる (深さ 1 は最後まで読む)
+        nodes.incrementAndGet();
+        if (aborted || (completedDepth > 0 && isOutOfBudget())) {
+            aborted = true;
+            return 0;
+        }
 
-    private int minimax(SimulationState state, int depth, boolean maximizingPlayer) {
         // 探索終了条件
         // 1. 深さ制限に到達
         // 2. ゲームが終了（詰み、トライ勝利）
-    
+        // 3. 同じ局面を同じ深さですでに探索済み (置換表)
+        // 左右反転した局面は同じエントリを使う (評価関数が左右対称なので値はそのまま使え、手は向きを直して出し入れする)
+        long key = 0L;
+        boolean mirrored = false;
+        int ttMove = Move.NONE;
+        if (transpositionTable != null) {
+            key = state.hashKey();
+            long mirroredKey = Zobrist.mirror(key, state.board);
+            mirrored = Symmetry.isMirrored(key, mirroredKey);
+            key = Symmetry.canonicalKey(key, mirroredKey);
+            long entry = transpositionTable.probe(key);
+            if (entry != 0) {
+                // 同じ深さの結果だけを使う (深い結果を混ぜないので、読む順序によらず同じ深さなら同じ値になる)
+                if (TranspositionTable.depth(entry) == depth && TranspositionTable.isUsable(entry, alpha, beta)) {
+                    return TranspositionTable.score(entry);
+                }
+                ttMove = Symmetry.orient(TranspositionTable.move(entry), mirrored);
+            }
+        }
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+
         if (depth == 0 || state.isGameOver() != null) {
-            return evaluate(state.board, this.getPlayerType(), state.playerA, state.playerB); // 評価関数を呼び出し
+            return evaluate(state.board, this.getPlayerType(), state.playerA, state.playerB, state.material); // 評価関数を呼び出し
         }
 
         // minimax内ではSimulationStateの情報を直接利用して合法手を生成
-        List<int[]> moves = state.getLegalMovesInSimulation(); 
+        MoveList moves = moveStack.get().get(ply);
+        state.getLegalMovesInSimulation(moves);
         
         // 合法手がない場合、評価を返す (ステイルメイトなど)
         if (moves.isEmpty()) {
-             return evaluate(state.board, this.getPlayerType(), state.playerA, state.playerB);
+             return evaluate(state.board, this.getPlayerType(), state.playerA, state.playerB, state.material);
         }
 
-        // 探索効率向上のため、合法手をソートする
-        // minimax内で渡されるstateのboardとplayerインスタンスを使ってソート
-        // sortMoves(moves, state.board, state.currentPlayerType, state.toGame()); // toGameは削除するため変更
-        sortMovesForSimulation(moves, state);
-
+        // 探索効率向上のため、合法手を並べ替える (前の深さで最善だった手 (置換表の手) を最初に読む)
+        orderMoves(moves, state.currentPlayerType, ttMove, ply);
 
+        int bestValue;
+        int bestMove = Move.NONE;
         if (maximizingPlayer) { // 自分の手番 (最大化)
             int maxValue = Integer.MIN_VALUE;
-            for (int[] move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
                 SimulationState nextState = state.clone(); // 状態を複製
-                nextState.applyMove(move); // 手を適用
-                maxValue = Math.max(maxValue, minimax(nextState, depth - 1, false));
+                nextState.applyMove(moves.get(i)); // 手を適用
+                int value = minimax(nextState, depth - 1, ply + 1, alpha, beta, false);
+                if (aborted) {
+                    return 0;
+                }
+                if (value > maxValue) {
+                    maxValue = value;
+                    bestMove = moves.get(i);
+                }
+                alpha = Math.max(alpha, value);
+                if (beta <= alpha) {
+                    recordCutoff(moves.get(i), state.currentPlayerType, depth, ply);
+                    break; // 相手はこの局面を選ばない
+                }
             }
-            return maxValue;
+            bestValue = maxValue;
         } else { // 相手の手番 (最小化)
             int minValue = Integer.MAX_VALUE;
-            for (int[] move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
                 SimulationState nextState = state.clone(); // 状態を複製
-                nextState.applyMove(move); // 手を適用
-                minValue = Math.min(minValue, minimax(nextState, depth - 1, true));
+                nextState.applyMove(moves.get(i)); // 手を適用
+                int value = minimax(nextState, depth - 1, ply + 1, alpha, beta, true);
+                if (aborted) {
+                    return 0;
+                }
+                if (value < minValue) {
+                    minValue = value;
+                    bestMove = moves.get(i);
+                }
+                beta = Math.min(beta, value);
+                if (beta <= alpha) {
+                    recordCutoff(moves.get(i), state.currentPlayerType, depth, ply);
+                    break; // 自分はこの局面を選ばない
+                }
             }
-            return minValue;
+            bestValue = minValue;
         }
+
+        if (transpositionTable != null) {
+            transpositionTable.store(key, depth, TranspositionTable.boundOf(bestValue, alphaOrig, betaOrig), bestValue,
+                    Symmetry.orient(bestMove, mirrored));
+        }
+        return bestValue;
     }
 
-    // 評価関数
-    private int evaluate(Board board, PlayerType myPlayerType, Player playerA, Player playerB) {
-        int score = 0;
+    private boolean isOutOfBudget() {
+        long count = nodes.get();
+        if (nodeLimit > 0 && count >= nodeLimit) {
+            return true;
+        }
+        return timeLimitMillis > 0 && (count & TIME_CHECK_INTERVAL) == 0 && System.nanoTime() >= deadline;
+    }
+
+    // 反復深化の深さの上限 (固定の深さで読ませたいときに使う)
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    // 1手あたりの思考時間 (ミリ秒、0 以下なら時間では打ち切らない)
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    // 1手あたりに読む局面数の上限 (0 以下なら局面数では打ち切らない)
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    // ルートの手を読むスレッド数 (2 以上で ForkJoinPool による並列探索。同じ深さなら 1 スレッドと同じ手・評価値になる)
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // 直前の chooseMove で最後まで読み切れた深さ
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // 直前の chooseMove で訪れた局面の数
+    public long getNodeCount() {
+        return nodes.get();
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // 置換表を差し替える (同じ手番を受け持つ MinMax 同士なら共有してよい。null で無効)
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    // 評価関数 (ベンチマークから呼べるようにパッケージプライベート)
+    int evaluate(Board board, PlayerType myPlayerType, Player playerA, Player playerB) {
+        return evaluate(board, myPlayerType, playerA, playerB, materialOf(board));
+    }
+
+    // material は盤上の駒の価値と配置点の合計 (PLAYER1 から見た値、materialOf(board) と同じ)。探索中は差分で求めた値を渡す
+    private int evaluate(Board board, PlayerType myPlayerType, Player playerA, Player playerB, int material) {
         PlayerType opponentPlayerType = (myPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
 
         // 1. 駒の価値による評価
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null) {
-                    int pieceValue = getPieceValue(piece);
-                    int positionValue = getPositionValue(piece, r, c); // 配置点テーブルからの価値
-
-                    if (piece.getOwner() == myPlayerType) {
-                        score += pieceValue;
-                        score += positionValue;
-                    } else {
-                        score -= pieceValue;
-                        score -= positionValue;
-                    }
-                }
-            }
-        }
+        int score = myPlayerType == PlayerType.PLAYER1 ? material : -material;
 
         // 2. 王手判定と詰み、トライ勝利の評価
         // isCheckMateはPlayerType.PLAYER1がチェックメイトされているか判定するため、
@@ -287,54 +498,30 @@ public class MinMax extends Player {
         return score;
     }
 
-    // 駒の価値を返すヘルパーメソッド
-    private int getPieceValue(Piece piece) {
-        if (piece instanceof Hiyoko) {
-            return piece.isPromoted() ? NIWATORI_VALUE : HIYOKO_VALUE;
-        } else if (piece instanceof Kirin) {
-            return KIRIN_VALUE;
-        } else if (piece instanceof Zou) {
-            return ZOU_VALUE;
-        } else if (piece instanceof Lion) {
-            return LION_VALUE;
+    // 盤上の全ての駒の materialOf の合計
+    private static int materialOf(Board board) {
+        int material = 0;
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece != null) {
+                    material += materialOf(piece, r, c);
+                }
+            }
         }
-        return 0;
+        return material;
     }
 
-    // 駒の配置点テーブルから価値を取得するヘルパーメソッド
-    private int getPositionValue(Piece piece, int row, int col) {
-        int[][] pst;
-        // PLAYER1とPLAYER2でテーブルを反転させる必要がある
+    // (row, col) にいる駒の価値と配置点 (PLAYER1 の駒なら正、PLAYER2 の駒なら負)
+    private static int materialOf(Piece piece, int row, int col) {
+        int kind = piece.getKind();
+        int value = (kind == Position.HIYOKO && piece.isPromoted()) ? NIWATORI_VALUE : PIECE_VALUES[kind];
         if (piece.getOwner() == PlayerType.PLAYER1) {
-            if (piece instanceof Hiyoko) {
-                pst = PST_HIYOKO;
-            } else if (piece instanceof Kirin) {
-                pst = PST_KIRIN;
-            } else if (piece instanceof Zou) {
-                pst = PST_ZOU;
-            } else if (piece instanceof Lion) {
-                pst = PST_LION;
-            } else {
-                return 0;
-            }
-            return pst[row][col];
-        } else { // PLAYER2の場合、行を反転してテーブルを参照
-            if (piece instanceof Hiyoko) {
-                pst = PST_HIYOKO;
-            } else if (piece instanceof Kirin) {
-                pst = PST_KIRIN;
-            } else if (piece instanceof Zou) {
-                pst = PST_ZOU;
-            } else if (piece instanceof Lion) {
-                pst = PST_LION;
-            } else {
-                return 0;
-            }
-            return pst[Board.ROWS - 1 - row][col];
+            return value + PST_BY_KIND[kind][row][col];
         }
+        return -(value + PST_BY_KIND[kind][Board.ROWS - 1 - row][col]); // PLAYER2 は行を反転して参照
     }
 
-
     // ライオンの守り駒の数を数える
     private int countLionDefenders(Board board, PlayerType lionOwner) {
         int defenders = 0;
@@ -374,18 +561,12 @@ public class MinMax extends Player {
         int lRow = lionPos[0];
         int lCol = lionPos[1];
 
-        // 盤上の全ての敵駒について、ライオンを攻撃できるかチェック
+        // 盤上の全ての敵駒について、ライオンのマスに利いているかを利きマスクで判定
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == attackerType) {
-                    List<int[]> possibleMoves = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : possibleMoves) {
-                        if (move[0] == lRow && move[1] == lCol) {
-                            attackers++;
-                            break; // この駒はライオンを攻撃できる
-                        }
-                    }
+                if (piece != null && piece.getOwner() == attackerType && piece.attacks(r, c, lRow, lCol)) {
+                    attackers++; // この駒はライオンを攻撃できる
                 }
             }
         }
@@ -421,7 +602,7 @@ public class MinMax extends Player {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
                 if (piece != null && piece.getOwner() == playerType) {
-                    mobility += piece.getPossibleMoves(r, c, board).size();
+                    mobility += Integer.bitCount(piece.getMoveMask(r, c, board));
                 }
             }
         }
@@ -436,109 +617,66 @@ public class MinMax extends Player {
 
     // 攻撃されている自分の駒の数を数える
     private int countAttackedOwnPieces(Board board, PlayerType myPlayerType, PlayerType opponentPlayerType) {
-        int attackedPieces = 0;
         // 相手の全ての駒が攻撃できるマスを収集
-        List<int[]> opponentAttackMoves = new ArrayList<>();
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece opponentPiece = board.getPiece(r, c);
-                if (opponentPiece != null && opponentPiece.getOwner() == opponentPlayerType) {
-                    opponentAttackMoves.addAll(opponentPiece.getPossibleMoves(r, c, board));
-                }
-            }
-        }
-
-        // 自分の駒が攻撃されているかチェック
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece myPiece = board.getPiece(r, c);
-                if (myPiece != null && myPiece.getOwner() == myPlayerType) {
-                    // このマスが相手の攻撃範囲に含まれているか
-                    for (int[] attackMove : opponentAttackMoves) {
-                        if (attackMove[0] == r && attackMove[1] == c) {
-                            attackedPieces++;
-                            break; // 複数の駒から攻撃されていても1つとしてカウント
-                        }
-                    }
-                }
-            }
-        }
-        return attackedPieces;
+        int opponentAttackMask = collectMoveMask(board, opponentPlayerType);
+        // 自分の駒が攻撃されているかチェック (複数の駒から攻撃されていても1つとしてカウント)
+        return Integer.bitCount(opponentAttackMask & collectPieceMask(board, myPlayerType));
     }
 
     // 攻撃している相手の駒の数を数える
     private int countAttackedOpponentPieces(Board board, PlayerType myPlayerType, PlayerType opponentPlayerType) {
-        int attackedPieces = 0;
         // 自分の全ての駒が攻撃できるマスを収集
-        List<int[]> myAttackMoves = new ArrayList<>();
+        int myAttackMask = collectMoveMask(board, myPlayerType);
+        // 相手の駒が攻撃されているかチェック
+        return Integer.bitCount(myAttackMask & collectPieceMask(board, opponentPlayerType));
+    }
+
+    // playerType の全ての駒が動けるマス (getPossibleMoves の和集合)
+    private int collectMoveMask(Board board, PlayerType playerType) {
+        int mask = 0;
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
-                Piece myPiece = board.getPiece(r, c);
-                if (myPiece != null && myPiece.getOwner() == myPlayerType) {
-                    myAttackMoves.addAll(myPiece.getPossibleMoves(r, c, board));
+                Piece piece = board.getPiece(r, c);
+                if (piece != null && piece.getOwner() == playerType) {
+                    mask |= piece.getMoveMask(r, c, board);
                 }
             }
         }
+        return mask;
+    }
 
-        // 相手の駒が攻撃されているかチェック
+    // playerType の駒がいるマス
+    private int collectPieceMask(Board board, PlayerType playerType) {
+        int mask = 0;
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
-                Piece opponentPiece = board.getPiece(r, c);
-                if (opponentPiece != null && opponentPiece.getOwner() == opponentPlayerType) {
-                    // このマスが自分の攻撃範囲に含まれているか
-                    for (int[] attackMove : myAttackMoves) {
-                        if (attackMove[0] == r && attackMove[1] == c) {
-                            attackedPieces++;
-                            break;
-                        }
-                    }
+                Piece piece = board.getPiece(r, c);
+                if (piece != null && piece.getOwner() == playerType) {
+                    mask |= 1 << Position.square(r, c);
                 }
             }
         }
-        return attackedPieces;
+        return mask;
     }
 
     // 守られている自分の駒の数を数える (ライオン以外)
     private int countDefendedOwnPieces(Board board, PlayerType myPlayerType, PlayerType opponentPlayerType) {
         int defendedPieces = 0;
+        int opponentAttackMask = collectMoveMask(board, opponentPlayerType);
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece myPiece = board.getPiece(r, c);
-                if (myPiece != null && myPiece.getOwner() == myPlayerType && !(myPiece instanceof Lion)) {
-                    // この駒が攻撃されているかチェック
-                    boolean isAttacked = false;
-                    for (int oppR = 0; oppR < Board.ROWS; oppR++) {
-                        for (int oppC = 0; oppC < Board.COLS; oppC++) {
-                            Piece opponentPiece = board.getPiece(oppR, oppC);
-                            if (opponentPiece != null && opponentPiece.getOwner() == opponentPlayerType) {
-                                List<int[]> opponentMoves = opponentPiece.getPossibleMoves(oppR, oppC, board);
-                                for (int[] move : opponentMoves) {
-                                    if (move[0] == r && move[1] == c) {
-                                        isAttacked = true;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (isAttacked) break;
-                        }
-                        if (isAttacked) break;
-                    }
-
-                    if (isAttacked) { // 攻撃されている場合のみ、守りがあるかチェック
-                        // 自分の他の駒がこの駒をカバーしているか
-                        for (int ownR = 0; ownR < Board.ROWS; ownR++) {
-                            for (int ownC = 0; ownC < Board.COLS; ownC++) {
-                                if (ownR == r && ownC == c) continue; // 自分の駒自身は除く
-                                Piece potentialDefender = board.getPiece(ownR, ownC);
-                                if (potentialDefender != null && potentialDefender.getOwner() == myPlayerType) {
-                                    List<int[]> defenderMoves = potentialDefender.getPossibleMoves(ownR, ownC, board);
-                                    for (int[] move : defenderMoves) {
-                                        if (move[0] == r && move[1] == c) {
-                                            defendedPieces++;
-                                            break;
-                                        }
-                                    }
-                                }
+                int bit = 1 << Position.square(r, c);
+                if (myPiece != null && myPiece.getOwner() == myPlayerType && !(myPiece instanceof Lion)
+                        && (opponentAttackMask & bit) != 0) { // 攻撃されている場合のみ、守りがあるかチェック
+                    // 自分の他の駒がこの駒をカバーしているか
+                    for (int ownR = 0; ownR < Board.ROWS; ownR++) {
+                        for (int ownC = 0; ownC < Board.COLS; ownC++) {
+                            if (ownR == r && ownC == c) continue; // 自分の駒自身は除く
+                            Piece potentialDefender = board.getPiece(ownR, ownC);
+                            if (potentialDefender != null && potentialDefender.getOwner() == myPlayerType
+                                    && (potentialDefender.getMoveMask(ownR, ownC, board) & bit) != 0) {
+                                defendedPieces++;
                             }
                         }
                     }
@@ -583,20 +721,7 @@ public class MinMax extends Player {
 
     // 指定された座標が攻撃範囲内にあるかチェックするヘルパーメソッド
     private boolean isSquareAttacked(Board board, int targetRow, int targetCol, PlayerType attackingPlayerType) {
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == attackingPlayerType) {
-                    List<int[]> possibleMoves = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : possibleMoves) {
-                        if (move[0] == targetRow && move[1] == targetCol) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttackedBy(targetRow, targetCol, attackingPlayerType);
     }
 
     // 王手判定（指定されたプレイヤーが王手されているか）
@@ -615,114 +740,66 @@ public class MinMax extends Player {
         }
 
         Player currentPlayingPlayer = (checkedPlayerType == PlayerType.PLAYER1) ? playerA : playerB;
-        // getAllPossibleMovesWithCurrentStateはSimulationStateのコンテキストで動くように変更済み
-        List<int[]> legalMovesForCheckMate = getAllPossibleMovesWithCurrentState(board, currentPlayingPlayer);
-
-        // どの手も王手を回避できるかチェック
-        for (int[] move : legalMovesForCheckMate) {
-            // シミュレーション状態をクローンし、手を適用してチェック
-            SimulationState tempState = new SimulationState(board.clone(), playerA.clone(), playerB.clone(), checkedPlayerType);
-            tempState.applyMove(move); // applyMoveで手駒のremoveなども処理される
-            if (!tempState.isCheck(checkedPlayerType)) { // 王手を回避できる手が見つかった
-                return false;
-            }
-        }
-        return true; // 全ての手が王手になる
+        // 生成される手は「指した後に王手が残らない手」だけなので、1つでもあれば王手を回避できる
+        MoveList evasions = evasionMoves.get();
+        generateMovesInSimulation(board, checkedPlayerType, currentPlayingPlayer.getCapturedPieces(), evasions);
+        return evasions.isEmpty(); // 全ての手が王手になる
     }
 
-    // SimulationState内で使うための、盤面とPlayerインスタンスを直接受け取る合法手生成メソッド
-    private List<int[]> getAllPossibleMovesWithCurrentState(Board board, Player player) {
-        List<int[]> allPossibleMoves = new ArrayList<>();
-        PlayerType myPlayerType = player.getPlayerType();
+    // SimulationState内で使うための、盤面と手駒を直接受け取る合法手生成メソッド
+    // 盤面をその場で動かして王手にならないかを確かめ、元に戻す
+    private void generateMovesInSimulation(Board board, PlayerType playerType, List<Piece> hand, MoveList moves) {
+        moves.clear();
 
         // 1. 盤上の駒の移動に関する合法手を収集
         for (int r = 0; r < Board.ROWS; r++) {
             for (int c = 0; c < Board.COLS; c++) {
                 Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getOwner() == myPlayerType) {
-                    List<int[]> movesForPiece = piece.getPossibleMoves(r, c, board);
-                    for (int[] move : movesForPiece) {
-                        // シミュレーション内のisValidMoveAndNotIntoCheck
-                        if (isValidMoveInSimulation(board, player, r, c, move[0], move[1])) {
-                            allPossibleMoves.add(new int[]{r, c, move[0], move[1]});
-                        }
+                if (piece == null || piece.getOwner() != playerType) continue;
+                int targets = piece.getMoveMask(r, c, board);
+                while (targets != 0) {
+                    int to = Integer.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    int toRow = Position.rowOf(to);
+                    int toCol = Position.colOf(to);
+                    Piece capturedPiece = board.getPiece(toRow, toCol);
+
+                    board.removePiece(r, c);
+                    board.placePiece(piece, toRow, toCol);
+                    boolean inCheck = isCheck(board, playerType);
+                    board.placePiece(piece, r, c);
+                    board.placePiece(capturedPiece, toRow, toCol);
+
+                    if (!inCheck) {
+                        boolean promotion = piece instanceof Hiyoko && !piece.isPromoted()
+                                && toRow == (playerType == PlayerType.PLAYER1 ? Board.ROWS - 1 : 0);
+                        moves.add(Move.move(Position.square(r, c), to, piece.getKind(),
+                                capturedPiece == null ? -1 : capturedPiece.getKind(),
+                                capturedPiece != null && capturedPiece.isPromoted(), promotion));
                     }
                 }
             }
         }
 
-        // 2. 手駒を打つ合法手を収集
-        List<Piece> captured = player.getCapturedPieces(); // 引数で渡されたplayerの手駒
-        for (int i = 0; i < captured.size(); i++) {
-            Piece pieceToDrop = captured.get(i);
+        // 2. 手駒を打つ合法手を収集 (同じ種類の駒は1回だけ)
+        int seenKinds = 0;
+        for (int i = 0; i < hand.size(); i++) {
+            Piece pieceToDrop = hand.get(i);
+            int kind = pieceToDrop.getKind();
+            if ((seenKinds & (1 << kind)) != 0) continue;
+            seenKinds |= 1 << kind;
             for (int r = 0; r < Board.ROWS; r++) {
                 for (int c = 0; c < Board.COLS; c++) {
-                    // 空いているマスであれば打てるかチェック & シミュレーション内のisValidDropAndNotIntoCheck
-                    if (board.isEmpty(r, c) && isValidDropInSimulation(board, player, pieceToDrop, r, c)) {
-                        allPossibleMoves.add(new int[]{-1, i, r, c});
+                    if (!board.isEmpty(r, c)) continue;
+                    board.placePiece(pieceToDrop, r, c);
+                    boolean inCheck = isCheck(board, playerType);
+                    board.removePiece(r, c);
+                    if (!inCheck) {
+                        moves.add(Move.drop(kind, Position.square(r, c)));
                     }
                 }
             }
         }
-        return allPossibleMoves;
-    }
-
-    // シミュレーション内での駒の移動の合法性チェック（王手にならないか）
-    private boolean isValidMoveInSimulation(Board board, Player currentPlayer, int fromRow, int fromCol, int toRow, int toCol) {
-        Board tempBoard = board.clone();
-        Player tempPlayerA = (currentPlayer.getPlayerType() == PlayerType.PLAYER1) ? currentPlayer.clone() : new MinMax("tempA"); // 実際にはSimulationStateのplayerA/Bをコピーする必要がある
-        Player tempPlayerB = (currentPlayer.getPlayerType() == PlayerType.PLAYER2) ? currentPlayer.clone() : new MinMax("tempB"); // 実際にはSimulationStateのplayerA/Bをコピーする必要がある
-
-        SimulationState tempState;
-
-        if (currentPlayer.getPlayerType() == PlayerType.PLAYER1) {
-             tempState = new SimulationState(board.clone(), currentPlayer.clone(), new MinMax("dummy").clone(), currentPlayer.getPlayerType()); // ダミーのPlayerB
-             tempState.playerB.setPlayerType(PlayerType.PLAYER2); // ダミーにもタイプ設定
-        } else {
-             tempState = new SimulationState(board.clone(), new MinMax("dummy").clone(), currentPlayer.clone(), currentPlayer.getPlayerType()); // ダミーのPlayerA
-             tempState.playerA.setPlayerType(PlayerType.PLAYER1); // ダミーにもタイプ設定
-        }
-
-        // 駒の移動
-        Piece movedPiece = tempState.board.getPiece(fromRow, fromCol);
-        Piece capturedPiece = tempState.board.getPiece(toRow, toCol);
-
-        tempState.board.removePiece(fromRow, fromCol);
-        tempState.board.placePiece(movedPiece, toRow, toCol);
-
-        if (capturedPiece != null) {
-            // シミュレーションなので、仮で捕獲駒を追加
-            if (currentPlayer.getPlayerType() == PlayerType.PLAYER1) {
-                tempState.playerA.addCapturedPiece(capturedPiece);
-            } else {
-                tempState.playerB.addCapturedPiece(capturedPiece);
-            }
-        }
-        
-        return !tempState.isCheck(currentPlayer.getPlayerType());
-    }
-
-    // シミュレーション内での手駒を打つ合法性チェック（王手にならないか）
-    private boolean isValidDropInSimulation(Board board, Player currentPlayer, Piece pieceToDrop, int toRow, int toCol) {
-        Board tempBoard = board.clone();
-        // HACK: isValidMoveInSimulationと同様の問題。SimulationStateに実装すべき。
-
-        SimulationState tempState;
-        if (currentPlayer.getPlayerType() == PlayerType.PLAYER1) {
-             tempState = new SimulationState(board.clone(), currentPlayer.clone(), new MinMax("dummy").clone(), currentPlayer.getPlayerType());
-             tempState.playerB.setPlayerType(PlayerType.PLAYER2);
-        } else {
-             tempState = new SimulationState(board.clone(), new MinMax("dummy").clone(), currentPlayer.clone(), currentPlayer.getPlayerType());
-             tempState.playerA.setPlayerType(PlayerType.PLAYER1);
-        }
-
-        // 手駒を打つ
-        tempState.board.placePiece(pieceToDrop.clone(), toRow, toCol); // クローンを置く
-
-        // 手駒リストからの削除はapplyMoveで行われるため、ここでは行わない
-        // ここでのチェックは「その場所に打った結果、王手にならないか」のみ
-        
-        return !tempState.isCheck(currentPlayer.getPlayerType());
     }
 
 
@@ -763,140 +840,102 @@ public class MinMax extends Player {
     }
 
 
-    // chooseMoveから呼ばれるソート用メソッド
-    private void sortMoves(List<int[]> moves, Board board, PlayerType playerType, Game game) {
-        Collections.sort(moves, (move1, move2) -> {
-            // ライオン捕獲手を最優先にする
-            boolean canCaptureLion1 = willCaptureLion(game.getBoard(), playerType, move1);
-            boolean canCaptureLion2 = willCaptureLion(game.getBoard(), playerType, move2);
-
-            if (canCaptureLion1 && !canCaptureLion2) {
-                return -1; // move1がライオン捕獲手で、move2がそうでない場合、move1を優先
-            }
-            if (!canCaptureLion1 && canCaptureLion2) {
-                return 1; // move2がライオン捕獲手で、move1がそうでない場合、move2を優先
-            }
-
-            // ライオン捕獲手でない、または両方ともライオン捕獲手の場合、通常の評価でソート
-            int score1 = 0;
-            int score2 = 0;
-
-            // move1の評価: 一時的なGame状態を作成して適用
-            Game tempGame1 = game.clone();
-            applyMoveToGame(tempGame1, move1);
-            score1 = evaluate(tempGame1.getBoard(), playerType, tempGame1.getPlayerA(), tempGame1.getPlayerB());
-
-            // move2の評価: 一時的なGame状態を作成して適用
-            Game tempGame2 = game.clone();
-            applyMoveToGame(tempGame2, move2);
-            score2 = evaluate(tempGame2.getBoard(), playerType, tempGame2.getPlayerA(), tempGame2.getPlayerB());
-
-            // 降順にソート (評価が高い方が先)
-            return Integer.compare(score2, score1);
-        });
-    }
-
-    // sortMoves内でGameインスタンスに手を適用するためのヘルパー
-    private void applyMoveToGame(Game game, int[] move) {
-        if (move[0] == -1) { // 打ち込みの場合
-            // 手駒リストから対応する駒を見つける
-            Piece pieceToDrop = null;
-            Player currentPlayer = game.getCurrentPlayer(); // Gameが持つcurrentPlayer
-            List<Piece> captured = currentPlayer.getCapturedPieces();
-            if (move[1] >= 0 && move[1] < captured.size()) {
-                 pieceToDrop = captured.get(move[1]);
-            }
-            if (pieceToDrop != null) {
-                game.performDrop(pieceToDrop, move[2], move[3]);
-            }
-        } else { // 移動の場合
-            game.performMove(move[0], move[1], move[2], move[3]);
-        }
-    }
     /**
-     * 指定された手が相手のライオンを捕獲するかどうかを判定します (Gameインスタンス用)。
-     * @param board 現在の盤面
-     * @param currentPlayerType 現在の手番のプレイヤータイプ
-     * @param move チェックする手 {fromRow, fromCol, toRow, toCol} または {-1, capturedPieceIndex, toRow, toCol}
-     * @return 相手のライオンを捕獲する場合true、そうでない場合false
+     * 手を読む順に並べ替えます。手ごとに 1 回だけ点数を付け、点数の高い順に並べます。
+     * 点数は局面を動かさずに Move に入っている情報だけで決めます。
+     * <ol>
+     * <li>置換表の手 (前の深さでの最善手)</li>
+     * <li>ライオンを取る手、トライ (ライオンが敵陣の一番奥に入る手)</li>
+     * <li>駒を取る手 (取る駒の価値が高い順、同じなら動かす駒の価値が低い順)、ひよこが成る手</li>
+     * <li>killer 手 (同じ ply で最近 beta カットを起こした駒を取らない手)</li>
+     * <li>それ以外の手は history (beta カットを起こした回数を深さで重み付けした値) の高い順</li>
+     * </ol>
      */
-    private boolean willCaptureLion(Board board, PlayerType currentPlayerType, int[] move) {
-        PlayerType opponentPlayerType = (currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
-        Board tempBoard = board.clone();
-
-        if (move[0] != -1) { // 移動の場合
-            int fromRow = move[0];
-            int fromCol = move[1];
-            int toRow = move[2];
-            int toCol = move[3];
-
-            Piece capturedPiece = tempBoard.getPiece(toRow, toCol);
-            if (capturedPiece != null && capturedPiece instanceof Lion && capturedPiece.getOwner() == opponentPlayerType) {
-                return true;
+    private void orderMoves(MoveList moves, PlayerType side, int ttMove, int ply) {
+        OrderingTables tables = orderingTables.get();
+        tables.startSearch(searchGeneration);
+        int owner = Position.ownerIndex(side);
+        int tryRow = (side == PlayerType.PLAYER1) ? Board.ROWS - 1 : 0;
+        int[] killers = tables.killers[Math.min(ply, MAX_DEPTH)];
+        int[] scores = tables.scores;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (move == ttMove) {
+                score = ORDER_TT_MOVE;
+            } else if (Move.capturedKind(move) == Position.LION) {
+                score = ORDER_WIN;
+            } else if (Move.kind(move) == Position.LION && !Move.isDrop(move) && Position.rowOf(Move.to(move)) == tryRow) {
+                score = ORDER_WIN - 1;
+            } else if (Move.isCapture(move) || Move.isPromotion(move)) {
+                score = ORDER_CAPTURE;
+                if (Move.isCapture(move)) {
+                    int victim = Move.isCapturedPromoted(move) ? NIWATORI_VALUE : PIECE_VALUES[Move.capturedKind(move)];
+                    score += victim * 16 - PIECE_VALUES[Move.kind(move)] / 100;
+                }
+                if (Move.isPromotion(move)) {
+                    score += (NIWATORI_VALUE - HIYOKO_VALUE) * 16;
+                }
+            } else if (move == killers[0]) {
+                score = ORDER_KILLER;
+            } else if (move == killers[1]) {
+                score = ORDER_KILLER - 1;
+            } else {
+                score = tables.history[historyIndex(owner, move)];
             }
+            scores[i] = score;
         }
-        // 打ち込みではライオンは捕獲できないため、チェック不要
-        return false;
+        moves.sortByScore(scores);
     }
 
-    /**
-     * 指定された手が相手のライオンを捕獲するかどうかを判定します (SimulationState用)。
-     * @param state 現在のSimulationState
-     * @param move チェックする手 {fromRow, fromCol, toRow, toCol} または {-1, capturedPieceIndex, toRow, toCol}
-     * @return 相手のライオンを捕獲する場合true、そうでない場合false
-     */
-    private boolean willCaptureLionInSimulation(SimulationState state, int[] move) {
-        PlayerType opponentPlayerType = (state.currentPlayerType == PlayerType.PLAYER1) ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
-        Board tempBoard = state.board.clone(); // 盤面をクローンして影響を与えないようにする
-
-        if (move[0] != -1) { // 移動の場合
-            int fromRow = move[0];
-            int fromCol = move[1];
-            int toRow = move[2];
-            int toCol = move[3];
-
-            // 実際に手を適用して、そのマスに相手のライオンがいるか確認
-            Piece capturedPiece = tempBoard.getPiece(toRow, toCol);
-            if (capturedPiece != null && capturedPiece instanceof Lion && capturedPiece.getOwner() == opponentPlayerType) {
-                return true;
-            }
+    // move で beta カットが起きたときに killer 手と history を更新する (駒を取る手と成る手は点数が高いので覚えない)
+    private void recordCutoff(int move, PlayerType side, int depth, int ply) {
+        if (Move.isCapture(move) || Move.isPromotion(move)) {
+            return;
+        }
+        OrderingTables tables = orderingTables.get();
+        int[] killers = tables.killers[Math.min(ply, MAX_DEPTH)];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int i = historyIndex(Position.ownerIndex(side), move);
+        tables.history[i] += depth * depth;
+        if (tables.history[i] >= MAX_HISTORY) {
+            tables.ageHistory();
         }
-        // 打ち込みではライオンは捕獲できないため、チェック不要
-        return false;
     }
 
+    // history の表の位置 (手番・移動元 (打つ手は 12 + 駒の種類)・移動先)
+    private static int historyIndex(int owner, int move) {
+        int from = Move.isDrop(move) ? Position.SQUARES + Move.kind(move) : Move.from(move);
+        return (owner * HISTORY_SOURCES + from) * Position.SQUARES + Move.to(move);
+    }
 
-    // minimaxから呼ばれるソート用メソッド
-    private void sortMovesForSimulation(List<int[]> moves, SimulationState state) {
-        Collections.sort(moves, (move1, move2) -> {
-            // ライオン捕獲手を最優先にする
-            boolean canCaptureLion1 = willCaptureLionInSimulation(state, move1);
-            boolean canCaptureLion2 = willCaptureLionInSimulation(state, move2);
-
-            if (canCaptureLion1 && !canCaptureLion2) {
-                return -1; // move1がライオン捕獲手で、move2がそうでない場合、move1を優先
+    // 手の並べ替えに使う killer 手・history と点数の作業領域。ルートの手を並列に読むときはスレッドごとに持つ
+    private static final class OrderingTables {
+        final int[][] killers = new int[MAX_DEPTH + 1][2];
+        final int[] history = new int[2 * HISTORY_SOURCES * Position.SQUARES];
+        final int[] scores = new int[MoveList.MAX_MOVES];
+        private int generation = -1;
+
+        // 新しい chooseMove の最初に使うとき、前の局面の killer 手を消し、history を半分にする
+        void startSearch(int searchGeneration) {
+            if (generation == searchGeneration) return;
+            generation = searchGeneration;
+            for (int[] k : killers) {
+                k[0] = Move.NONE;
+                k[1] = Move.NONE;
             }
-            if (!canCaptureLion1 && canCaptureLion2) {
-                return 1; // move2がライオン捕獲手で、move1がそうでない場合、move2を優先
-            }
-
-            // ライオン捕獲手でない、または両方ともライオン捕獲手の場合、通常の評価でソート
-            int score1 = 0;
-            int score2 = 0;
-
-            // move1の評価
-            SimulationState tempState1 = state.clone();
-            tempState1.applyMove(move1);
-            score1 = evaluate(tempState1.board, state.currentPlayerType, tempState1.playerA, tempState1.playerB);
-
-            // move2の評価
-            SimulationState tempState2 = state.clone();
-            tempState2.applyMove(move2);
-            score2 = evaluate(tempState2.board, state.currentPlayerType, tempState2.playerA, tempState2.playerB);
+            ageHistory();
+        }
 
-            // 降順にソート (評価が高い方が先)
-            return Integer.compare(score2, score1);
-        });
+        void ageHistory() {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
     }
 
     // ライオンが捕獲されたかどうかの判定（isCheckMateと似ているが、直接ライオンが盤面にいないかをチェック）
@@ -913,42 +952,55 @@ public class MinMax extends Player {
         public Player playerA; // PLAYER1
         public Player playerB; // PLAYER2
         public PlayerType currentPlayerType; // 現在手番のプレイヤー
+        public int material; // 盤上の駒の価値と配置点の合計 (PLAYER1 から見た値)。applyMove で動いた駒の分だけ更新する
 
         public SimulationState(Board board, Player playerA, Player playerB, PlayerType currentPlayerType) {
             this.board = board;
             this.playerA = playerA;
             this.playerB = playerB;
             this.currentPlayerType = currentPlayerType;
+            this.material = materialOf(board);
         }
 
         // 手を状態に適用する
-        public void applyMove(int[] move) {
+        public void applyMove(int move) {
             Player currentPlayer = (this.currentPlayerType == PlayerType.PLAYER1) ? playerA : playerB;
             Player opponentPlayer = (this.currentPlayerType == PlayerType.PLAYER1) ? playerB : playerA;
-
-            if (move[0] == -1) { // 打ち込みの場合
-                // 手駒リストのインデックスから駒を取得し、手駒から削除
-                Piece pieceToDrop = currentPlayer.getCapturedPieces().remove(move[1]); 
-                board.placePiece(pieceToDrop, move[2], move[3]);
+            int toRow = Position.rowOf(Move.to(move));
+            int toCol = Position.colOf(Move.to(move));
+
+            if (Move.isDrop(move)) { // 打ち込みの場合
+                // 手駒リストから同じ種類の駒を取り出し、手駒から削除
+                List<Piece> hand = currentPlayer.getCapturedPieces();
+                Piece pieceToDrop = hand.remove(Move.handIndex(hand, Move.kind(move)));
+                board.placePiece(pieceToDrop, toRow, toCol);
+                material += materialOf(pieceToDrop, toRow, toCol);
             } else { // 移動の場合
-                Piece movedPiece = board.getPiece(move[0], move[1]);
-                Piece capturedPiece = board.getPiece(move[2], move[3]);
+                int fromRow = Position.rowOf(Move.from(move));
+                int fromCol = Position.colOf(Move.from(move));
+                Piece movedPiece = board.getPiece(fromRow, fromCol);
+                Piece capturedPiece = board.getPiece(toRow, toCol);
+                material -= materialOf(movedPiece, fromRow, fromCol);
+                if (capturedPiece != null) {
+                    material -= materialOf(capturedPiece, toRow, toCol); // addCapturedPiece で持ち主が変わる前に引く
+                }
 
-                board.removePiece(move[0], move[1]);
+                board.removePiece(fromRow, fromCol);
                 
                 // 成りの判定と適用
                 if (movedPiece instanceof Hiyoko && !movedPiece.isPromoted()) {
                     // PLAYER1のひよこが敵陣最奥 (Row 3) に移動
-                    if (this.currentPlayerType == PlayerType.PLAYER1 && move[2] == 3) {
+                    if (this.currentPlayerType == PlayerType.PLAYER1 && toRow == 3) {
                         movedPiece.promote();
                     }
                     // PLAYER2のひよこが敵陣最奥 (Row 0) に移動
-                    else if (this.currentPlayerType == PlayerType.PLAYER2 && move[2] == 0) {
+                    else if (this.currentPlayerType == PlayerType.PLAYER2 && toRow == 0) {
                         movedPiece.promote();
                     }
                 }
 
-                board.placePiece(movedPiece, move[2], move[3]);
+                board.placePiece(movedPiece, toRow, toCol);
+                material += materialOf(movedPiece, toRow, toCol);
 
                 if (capturedPiece != null) {
                     opponentPlayer.addCapturedPiece(capturedPiece); // 捕獲した駒を相手の手駒に追加
@@ -959,77 +1011,17 @@ public class MinMax extends Player {
         }
 
         // SimulationState内で使う、合法手生成メソッド (王手にならない手のみ)
-        public List<int[]> getLegalMovesInSimulation() {
-            List<int[]> legalMoves = new ArrayList<>();
+        public void getLegalMovesInSimulation(MoveList moves) {
             Player currentPlayer = (this.currentPlayerType == PlayerType.PLAYER1) ? playerA : playerB;
-
-            // 1. 盤上の駒の移動に関する合法手を収集
-            for (int r = 0; r < Board.ROWS; r++) {
-                for (int c = 0; c < Board.COLS; c++) {
-                    Piece piece = board.getPiece(r, c);
-                    if (piece != null && piece.getOwner() == this.currentPlayerType) {
-                        List<int[]> movesForPiece = piece.getPossibleMoves(r, c, board);
-                        for (int[] move : movesForPiece) {
-                            // 手を適用して王手にならないかチェック
-                            if (isValidMoveInSimulation(r, c, move[0], move[1])) {
-                                legalMoves.add(new int[]{r, c, move[0], move[1]});
-                            }
-                        }
-                    }
-                }
-            }
-
-            // 2. 手駒を打つ合法手を収集
-            List<Piece> captured = currentPlayer.getCapturedPieces();
-            for (int i = 0; i < captured.size(); i++) {
-                Piece pieceToDrop = captured.get(i);
-                for (int r = 0; r < Board.ROWS; r++) {
-                    for (int c = 0; c < Board.COLS; c++) {
-                        // 空いているマスであれば打てる AND その手が王手にならないかチェック
-                        if (board.isEmpty(r, c) && isValidDropInSimulation(pieceToDrop, r, c)) {
-                            legalMoves.add(new int[]{-1, i, r, c});
-                        }
-                    }
-                }
-            }
-            return legalMoves;
-        }
-
-        // シミュレーション内での駒の移動の合法性チェック（王手にならないか）
-        private boolean isValidMoveInSimulation(int fromRow, int fromCol, int toRow, int toCol) {
-            SimulationState tempState = this.clone(); // 現在の状態をクローン
-            
-            // 駒の移動を実行 (ここでは手駒の増減は考慮しない)
-            Piece movedPiece = tempState.board.getPiece(fromRow, fromCol);
-            Piece capturedPiece = tempState.board.getPiece(toRow, toCol); // 捕獲される駒
-
-            tempState.board.removePiece(fromRow, fromCol);
-            tempState.board.placePiece(movedPiece, toRow, toCol);
-
-            // 捕獲駒があれば、仮で相手の手駒に追加（isCheckの判定には直接影響しないが、状態の一貫性のため）
-            if (capturedPiece != null) {
-                Player opponent = (this.currentPlayerType == PlayerType.PLAYER1) ? tempState.playerB : tempState.playerA;
-                opponent.addCapturedPiece(capturedPiece); // 相手のCapturedPiecesに追加
-            }
-            
-            // 移動後の盤面で、自分のライオンが王手でないかを確認
-            return !tempState.isCheck(this.currentPlayerType);
+            generateMovesInSimulation(board, this.currentPlayerType, currentPlayer.getCapturedPieces(), moves);
         }
 
-        // シミュレーション内での手駒を打つ合法性チェック（王手にならないか）
-        private boolean isValidDropInSimulation(Piece pieceToDrop, int toRow, int toCol) {
-            SimulationState tempState = this.clone(); // 現在の状態をクローン
-
-            // 手駒を打つ
-            tempState.board.placePiece(pieceToDrop.clone(), toRow, toCol); // クローンを置く
 
-            // 手駒リストからの削除はapplyMoveで行われるため、ここでは行わない
-            // ここでのチェックは「その場所に打った結果、王手にならないか」のみ
-            
-            return !tempState.isCheck(this.currentPlayerType);
+        // 置換表用の局面のキー (盤面・両者の手駒・手番)
+        public long hashKey() {
+            return Zobrist.compute(board, playerA.getCapturedPieces(), playerB.getCapturedPieces(), currentPlayerType);
         }
 
-
         // ゲームが終了したかを判定 (詰み、トライ勝利)
         public PlayerType isGameOver() {
             // 詰み判定
@@ -1076,20 +1068,7 @@ public class MinMax extends Player {
 
         // 指定された座標が攻撃範囲内にあるかチェックするヘルパーメソッド
         private boolean isSquareAttacked(Board board, int targetRow, int targetCol, PlayerType attackingPlayerType) {
-            for (int r = 0; r < Board.ROWS; r++) {
-                for (int c = 0; c < Board.COLS; c++) {
-                    Piece piece = board.getPiece(r, c);
-                    if (piece != null && piece.getOwner() == attackingPlayerType) {
-                        List<int[]> possibleMoves = piece.getPossibleMoves(r, c, board);
-                        for (int[] move : possibleMoves) {
-                            if (move[0] == targetRow && move[1] == targetCol) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
-            return false;
+            return board.isSquareAttackedBy(targetRow, targetCol, attackingPlayerType);
         }
 
         // プレイヤータイプから相手のプレイヤータイプを取得 (SimulationStateの内部メソッド)
@@ -0,0 +1,139 @@
+import java.util.List;
+
+/**
+ * 指し手を 1 つの int に詰めた表現。
+ * 探索中は int[] を作らずにこの値をそのまま MoveList に入れて使い回す。
+ *
+ * <pre>
+ * bit  0- 3 : 移動先のマス (sq = row * 3 + col)
+ * bit  4- 7 : 移動元のマス (打つ手では 0)
+ * bit  8-10 : 動かす駒 / 打つ駒の種類 (Position.LION など)
+ * bit 11-13 : 取る駒の種類 + 1 (取らなければ 0)
+ * bit 14    : 取る駒が成っている (にわとり)
+ * bit 15    : この手でひよこが成る
+ * bit 16    : 手駒を打つ手
+ * </pre>
+ *
+ * Player.chooseMove の返り値は従来通り int[] なので、境界で toArray により変換する。
+ */
+public final class Move {
+    // 手がないことを表す値 (移動元と移動先が同じ手は存在しないので 0 は使われない)
+    public static final int NONE = 0;
+
+    private static final int SQUARE_MASK = 0xF;
+    private static final int FROM_SHIFT = 4;
+    private static final int KIND_SHIFT = 8;
+    private static final int KIND_MASK = 0x7;
+    private static final int CAPTURE_SHIFT = 11;
+    private static final int CAPTURED_PROMOTED = 1 << 14;
+    private static final int PROMOTION = 1 << 15;
+    private static final int DROP = 1 << 16;
+
+    private Move() {}
+
+    // 駒を動かす手
+    public static int move(int from, int to, int kind, int capturedKind, boolean capturedPromoted, boolean promotion) {
+        int move = to | (from << FROM_SHIFT) | (kind << KIND_SHIFT);
+        if (capturedKind >= 0) {
+            move |= (capturedKind + 1) << CAPTURE_SHIFT;
+            if (capturedPromoted) move |= CAPTURED_PROMOTED;
+        }
+        if (promotion) move |= PROMOTION;
+        return move;
+    }
+
+    // 手駒を打つ手
+    public static int drop(int kind, int to) {
+        return DROP | to | (kind << KIND_SHIFT);
+    }
+
+    public static int from(int move) {
+        return (move >>> FROM_SHIFT) & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int kind(int move) {
+        return (move >>> KIND_SHIFT) & KIND_MASK;
+    }
+
+    // 取る駒の種類 (取らなければ -1)
+    public static int capturedKind(int move) {
+        return ((move >>> CAPTURE_SHIFT) & KIND_MASK) - 1;
+    }
+
+    public static boolean isCapture(int move) {
+        return ((move >>> CAPTURE_SHIFT) & KIND_MASK) != 0;
+    }
+
+    public static boolean isCapturedPromoted(int move) {
+        return (move & CAPTURED_PROMOTED) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    public static boolean isDrop(int move) {
+        return (move & DROP) != 0;
+    }
+
+    /**
+     * chooseMove の返り値の形式 ({fromRow, fromCol, toRow, toCol} または {-1, 手駒のインデックス, toRow, toCol}) に変換します。
+     * 打つ手は hand の中で最初に見つかった同じ種類の駒のインデックスを使います。
+     */
+    public static int[] toArray(int move, List<Piece> hand) {
+        int to = to(move);
+        if (isDrop(move)) {
+            return new int[]{-1, handIndex(hand, kind(move)), Position.rowOf(to), Position.colOf(to)};
+        }
+        int from = from(move);
+        return new int[]{Position.rowOf(from), Position.colOf(from), Position.rowOf(to), Position.colOf(to)};
+    }
+
+    /**
+     * chooseMove の形式の手 (int[]) を詰めた形式に変換します (toArray の逆)。
+     * 成りの判定は Game.performMove と同じく、先手は 3 行目、後手は 0 行目に入ったひよこを成りとします。
+     */
+    public static int fromArray(int[] move, Board board, List<Piece> hand) {
+        int to = Position.square(move[2], move[3]);
+        if (move[0] == -1) {
+            return drop(hand.get(move[1]).getKind(), to);
+        }
+        Piece piece = board.getPiece(move[0], move[1]);
+        Piece target = board.getPiece(move[2], move[3]);
+        boolean promotion = piece instanceof Hiyoko && !piece.isPromoted()
+                && move[2] == (piece.getOwner() == PlayerType.PLAYER1 ? Board.ROWS - 1 : 0);
+        return move(Position.square(move[0], move[1]), to, piece.getKind(),
+                target == null ? -1 : target.getKind(), target != null && target.isPromoted(), promotion);
+    }
+
+    // hand の中で kind の駒が最初に現れるインデックス (なければ -1)
+    public static int handIndex(List<Piece> hand, int kind) {
+        for (int i = 0; i < hand.size(); i++) {
+            if (hand.get(i).getKind() == kind) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // デバッグ表示用 (例: "1,1-2,1+x", 打つ手は "H*2,1")
+    public static String toString(int move) {
+        if (move == NONE) return "none";
+        int to = to(move);
+        StringBuilder sb = new StringBuilder();
+        if (isDrop(move)) {
+            sb.append("LKZH".charAt(kind(move))).append('*');
+        } else {
+            int from = from(move);
+            sb.append(Position.rowOf(from)).append(',').append(Position.colOf(from)).append('-');
+        }
+        sb.append(Position.rowOf(to)).append(',').append(Position.colOf(to));
+        if (isPromotion(move)) sb.append('+');
+        if (isCapture(move)) sb.append('x');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.function.IntBinaryOperator;
+
+/**
+ * 詰めた指し手 (Move) を入れる使い回し用のバッファ。
+ * 探索では ply ごとに 1 つずつ持ち、clear して詰め直すことで配列を作らずに合法手を列挙する。
+ */
+public class MoveList {
+    // 1 局面の指し手の数の上限 (盤上 8 駒 x 8 方向 + 手駒 4 種 x 12 マス より十分大きい)
+    public static final int MAX_MOVES = 128;
+
+    private final int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(MAX_MOVES);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    // move があれば先頭に移す (他の手の順序はそのまま)。置換表の最善手を先に試すのに使う
+    public boolean moveToFront(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 並び順を比較関数で安定ソートする (Collections.sort と同じく、等しい手は元の順序のまま)
+    public void sort(IntBinaryOperator comparator) {
+        for (int i = 1; i < size; i++) {
+            int move = moves[i];
+            int j = i - 1;
+            while (j >= 0 && comparator.applyAsInt(moves[j], move) > 0) {
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            moves[j + 1] = move;
+        }
+    }
+
+    /**
+     * scores[i] を i 番目の手の点数として、点数の高い順に安定ソートする (scores も同じ順に並べ替える)。
+     * 点数は並べる前に 1 手ずつ求めておくので、比較のたびに局面を作り直さずに済む。
+     */
+    public void sortByScore(int[] scores) {
+        for (int i = 1; i < size; i++) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * 探索の深さ (ply) ごとの MoveList をまとめて持つ。
+     * 再帰の各段で get(ply) を使えば、子の局面が親の指し手リストを上書きすることはない。
+     */
+    public static class Stack {
+        private MoveList[] lists = new MoveList[16];
+
+        public MoveList get(int ply) {
+            if (ply >= lists.length) {
+                MoveList[] grown = new MoveList[Math.max(ply + 1, lists.length * 2)];
+                System.arraycopy(lists, 0, grown, 0, lists.length);
+                lists = grown;
+            }
+            MoveList list = lists[ply];
+            if (list == null) {
+                list = new MoveList();
+                lists[ply] = list;
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * 序盤の局面ごとに、前もって深く読んでおいた最善手を引く定跡。OpeningBookGenerator で作る。
+ * 局面は Game.getHashKey の Zobrist キーを左右反転の正規形 (Symmetry) にしたもので引き、手も正規形の向きで持つ。
+ *
+ * <pre>
+ * ファイルの形式 (ビッグエンディアン)
+ *   int   MAGIC ("OBOK")
+ *   int   VERSION
+ *   int   局面の数 n
+ *   int   作ったときの探索の深さ
+ *   long  局面のキー x n (昇順)
+ *   int   手 (Move の形式) x n
+ * </pre>
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x4F424F4B; // "OBOK"
+    public static final int VERSION = 1;
+    public static final String DEFAULT_FILE = "opening.obk";
+
+    private final long[] keys;
+    private final int[] moves;
+    private final int depth;
+
+    private OpeningBook(long[] keys, int[] moves, int depth) {
+        this.keys = keys;
+        this.moves = moves;
+        this.depth = depth;
+    }
+
+    public static OpeningBook load(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("定跡のファイルではありません: " + filename);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("対応していない定跡の版です: " + version);
+            }
+            int n = in.readInt();
+            int depth = in.readInt();
+            long[] keys = new long[n];
+            int[] moves = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = in.readLong();
+            }
+            for (int i = 0; i < n; i++) {
+                moves[i] = in.readInt();
+            }
+            return new OpeningBook(keys, moves, depth);
+        }
+    }
+
+    // filename があれば読み込み、なければ null (読めなかったときも null を返し、理由を表示する)
+    public static OpeningBook loadIfExists(String filename) {
+        if (!new File(filename).isFile()) return null;
+        try {
+            OpeningBook book = load(filename);
+            System.out.println("定跡を読み込みました。(" + book.size() + " 局面)");
+            return book;
+        } catch (IOException e) {
+            System.out.println("定跡を読み込めませんでした: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 正規形のキー keys[i] と手 moves[i] の組を filename に書き出す
+    public static void write(String filename, long[] keys, int[] moves, int n, int depth) throws IOException {
+        Integer[] order = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(depth);
+            for (int i : order) {
+                out.writeLong(keys[i]);
+            }
+            for (int i : order) {
+                out.writeInt(moves[i]);
+            }
+        }
+    }
+
+    /**
+     * game の手番のプレイヤーの定跡手を返します。
+     * キーの衝突に備えて、今の局面の合法手にある手だけを返します。
+     * @return Player.chooseMove と同じ形式の手。定跡にない局面なら null
+     */
+    public int[] probe(Game game) {
+        long key = game.getHashKey();
+        long mirroredKey = Zobrist.mirror(key, game.getBoard());
+        int i = Arrays.binarySearch(keys, Symmetry.canonicalKey(key, mirroredKey));
+        if (i < 0) return null;
+        int move = Symmetry.orient(moves[i], Symmetry.isMirrored(key, mirroredKey));
+
+        Player mover = game.getCurrentPlayer();
+        MoveList legalMoves = new MoveList();
+        game.generateLegalMoves(mover.getPlayerType(), legalMoves);
+        for (int j = 0; j < legalMoves.size(); j++) {
+            if (legalMoves.get(j) == move) {
+                return Move.toArray(move, mover.getCapturedPieces());
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    // 定跡を作ったときの探索の深さ
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * OpeningBook のファイルを作る (オフラインで 1 回だけ動かす)。
+ * 初期局面 (Game.initializeGame) から plies 手未満で現れる全ての局面を集め、
+ * それぞれを MinMax で深さ depth まで読んだ最善手を定跡にする。局面ごとの探索はスレッドで手分けする。
+ *
+ * <pre>
+ * java OpeningBookGenerator [-plies 5] [-depth 8] [-threads N] [-output opening.obk]
+ * </pre>
+ */
+public class OpeningBookGenerator {
+    public static void main(String[] args) throws IOException {
+        int plies = 5;
+        int depth = 8;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String output = OpeningBook.DEFAULT_FILE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "-depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "-output":
+                    output = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("不明な引数です: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<Long, Position> positions = collect(Position.initial(), plies);
+        System.out.println(plies + " 手未満の局面: " + positions.size());
+
+        long[] keys = new long[positions.size()];
+        int[] moves = new int[positions.size()];
+        int n = search(new ArrayList<>(positions.values()), depth, threads, keys, moves);
+        OpeningBook.write(output, keys, moves, n, depth);
+        System.out.println(String.format("%s に %d 局面を保存しました。(深さ %d, %d スレッド, %.1f 秒)",
+                output, n, depth, threads, (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * root から plies 手未満で現れる決着していない局面を、左右反転の正規形のキーごとに 1 つずつ集めます。
+     * 手数の順にたどるので、同じ局面に別の手順で着いても最も早く現れたときの手数で数えます。
+     */
+    static Map<Long, Position> collect(Position root, int plies) {
+        Game game = Perft.createGame(root.toText());
+        Map<Long, Position> positions = new LinkedHashMap<>();
+        List<Position> frontier = List.of(root);
+        MoveList moves = new MoveList();
+        for (int ply = 0; ply < plies; ply++) {
+            List<Position> next = new ArrayList<>();
+            for (Position position : frontier) {
+                game.setPosition(position);
+                if (game.isGameOver() != null) continue;
+                long key = game.getHashKey();
+                long canonical = Symmetry.canonicalKey(key, Zobrist.mirror(key, game.getBoard()));
+                if (positions.putIfAbsent(canonical, position) != null || ply == plies - 1) continue;
+
+                game.generateLegalMoves(game.getCurrentPlayer().getPlayerType(), moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    long undoToken = game.doMove(moves.get(i));
+                    next.add(game.toPosition());
+                    game.undoMove(undoToken);
+                }
+            }
+            frontier = next;
+        }
+        return positions;
+    }
+
+    // 局面ごとに最善手を読み、正規形のキーと手を keys / moves に入れる。入れた数を返す
+    private static int search(List<Position> positions, int depth, int threads, long[] keys, int[] moves) {
+        ThreadLocal<Game> games = ThreadLocal.withInitial(() -> {
+            MinMax first = new MinMax("定跡A");
+            MinMax second = new MinMax("定跡B");
+            for (MinMax searcher : new MinMax[]{first, second}) {
+                searcher.setMaxDepth(depth);
+                searcher.setTimeLimitMillis(0); // 深さだけで止める
+            }
+            Game game = new Game(first, second);
+            game.setSilentMode(true);
+            return game;
+        });
+
+        List<Callable<long[]>> tasks = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            tasks.add(() -> {
+                Game game = games.get();
+                game.setPosition(position);
+                Player mover = game.getCurrentPlayer();
+                int[] best = mover.chooseMove(game);
+                if (best == null) return null;
+                int move = Move.fromArray(best, game.getBoard(), mover.getCapturedPieces());
+                long key = game.getHashKey();
+                long mirroredKey = Zobrist.mirror(key, game.getBoard());
+                return new long[]{Symmetry.canonicalKey(key, mirroredKey), Symmetry.orient(move, Symmetry.isMirrored(key, mirroredKey))};
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int n = 0;
+        try {
+            List<Future<long[]>> results = pool.invokeAll(tasks);
+            for (Future<long[]> result : results) {
+                long[] entry = result.get();
+                if (entry == null) continue;
+                keys[n] = entry[0];
+                moves[n] = (int) entry[1];
+                n++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("定跡の作成が中断されました", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("定跡の局面の探索に失敗しました", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,269 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 合法手生成の検証と速度測定のための perft。
+ * 指定した深さまで Game.generateLegalMoves / doMove / undoMove で全ての手を展開し、末端の局面の数を数えます。
+ * 途中で isGameOver が勝者を返した局面 (詰み・トライ) はそれ以上展開しません。
+ *
+ * <pre>
+ * java Perft [深さ] [-position "KLZ/1H1/1h1/zlk 1 -"] [-divide] [-threads N]
+ * java Perft -check   保存してある参照値と比べる
+ * java Perft [深さ] -reference   performMove / performDrop / isKingInCheck だけを使う遅い実装で数える
+ * </pre>
+ *
+ * 局面の形式は Position.parse を参照。手を速くする変更をしたら -check で結果が変わっていないことを確かめること。
+ */
+public class Perft {
+    // Game.initializeGame と同じ初期局面
+    public static final String INITIAL = "KLZ/1H1/1h1/zlk 1 -";
+
+    // 参照値: REFERENCE_COUNTS[i][d - 1] が REFERENCE_POSITIONS[i] の深さ d の perft の値
+    // (Game の generateLegalMoves / doMove / isGameOver で数えた値。手駒は同じ種類を 1 回だけ数える)
+    private static final String[] REFERENCE_POSITIONS = {
+        INITIAL,
+        "LHZ/z2/3/l1k 1 Hk",    // 両者が手駒を持つ局面
+        "2Z/L1Z/Khl/1h1 2 K",   // 後手番
+        "1Lh/KZ1/1lH/z1k 1 -",  // ライオンが前に出た局面
+        "KL1/1N1/1h1/z1l 1 Zk", // にわとりのいる局面
+    };
+    private static final long[][] REFERENCE_COUNTS = {
+        {4L, 13L, 67L, 395L, 2149L, 12433L, 79530L, 494711L},
+        {10L, 106L, 608L, 4965L, 28790L},
+        {3L, 33L, 125L, 1033L, 4373L, 34922L},
+        {8L, 24L, 191L, 964L, 7410L, 43623L},
+        {14L, 115L, 989L, 5448L, 43832L, 328114L},
+    };
+
+    private final Game game;
+    private final MoveList.Stack moveStack = new MoveList.Stack();
+
+    public Perft(Game game) {
+        this.game = game;
+    }
+
+    // perft 用の Game を作る (プレイヤーは手を選ばないので誰でもよい)
+    public static Game createGame(String position) {
+        Game game = new Game(new RandomPlayer("PlayerA"), new RandomPlayer("PlayerB"));
+        game.setSilentMode(true);
+        game.setPosition(Position.parse(position));
+        return game;
+    }
+
+    // 深さ depth の末端の局面の数
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (game.isGameOver() != null) {
+            return 0;
+        }
+        MoveList moves = moveStack.get(ply);
+        game.generateLegalMoves(game.getCurrentPlayer().getPlayerType(), moves);
+        if (depth == 1) {
+            return moves.size(); // 最後の 1 手は指さずに数だけ数える
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            long undoToken = game.doMove(moves.get(i));
+            nodes += perft(depth - 1, ply + 1);
+            game.undoMove(undoToken);
+        }
+        return nodes;
+    }
+
+    // root の手ごとの perft を表示し、合計を返す
+    public long divide(int depth) {
+        if (depth <= 0 || game.isGameOver() != null) {
+            return perft(depth);
+        }
+        MoveList moves = new MoveList();
+        game.generateLegalMoves(game.getCurrentPlayer().getPlayerType(), moves);
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            long undoToken = game.doMove(moves.get(i));
+            long nodes = perft(depth - 1, 1);
+            game.undoMove(undoToken);
+            System.out.println(Move.toString(moves.get(i)) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    /**
+     * generateLegalMoves を使わず、Game.clone と performMove / performDrop / isKingInCheck だけで数える遅い perft。
+     * 手の生成を速くしたときに、元のルールの実装と結果が同じかを確かめるのに使います。
+     */
+    public static long referencePerft(Game game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (game.isGameOver() != null) {
+            return 0;
+        }
+        Player player = game.getCurrentPlayer();
+        PlayerType playerType = player.getPlayerType();
+        Board board = game.getBoard();
+        long nodes = 0;
+
+        // 盤上の駒の移動
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece == null || piece.getOwner() != playerType) continue;
+                for (int[] to : piece.getPossibleMoves(r, c, board)) {
+                    Game child = game.clone();
+                    child.performMove(r, c, to[0], to[1]);
+                    if (!child.isKingInCheck(playerType)) {
+                        child.switchPlayer();
+                        nodes += referencePerft(child, depth - 1);
+                    }
+                }
+            }
+        }
+
+        // 手駒を打つ手 (同じ種類の駒は 1 回だけ)
+        List<Piece> captured = player.getCapturedPieces();
+        int seenKinds = 0;
+        for (int i = 0; i < captured.size(); i++) {
+            int kind = captured.get(i).getKind();
+            if ((seenKinds & (1 << kind)) != 0) continue;
+            seenKinds |= 1 << kind;
+            for (int r = 0; r < Board.ROWS; r++) {
+                for (int c = 0; c < Board.COLS; c++) {
+                    if (!board.isEmpty(r, c)) continue;
+                    Game child = game.clone();
+                    child.performDrop(child.getCurrentPlayer().getCapturedPieces().get(i), r, c);
+                    if (!child.isKingInCheck(playerType)) {
+                        child.switchPlayer();
+                        nodes += referencePerft(child, depth - 1);
+                    }
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * root の手ごとに Game を複製し、ForkJoinPool のスレッドで手分けして数えます。
+     * 結果は perft(depth) と同じになります。
+     */
+    public static long parallelPerft(Game game, int depth, int threads) {
+        if (depth <= 1 || game.isGameOver() != null) {
+            return new Perft(game).perft(depth);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new RootTask(game, depth));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Game game;
+        private final int depth;
+
+        RootTask(Game game, int depth) {
+            this.game = game;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            MoveList moves = new MoveList();
+            game.generateLegalMoves(game.getCurrentPlayer().getPlayerType(), moves);
+            List<RecursiveTask<Long>> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                Game child = game.clone();
+                tasks.add(new RecursiveTask<Long>() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected Long compute() {
+                        child.doMove(move);
+                        return new Perft(child).perft(depth - 1);
+                    }
+                });
+            }
+            invokeAll(tasks);
+            long total = 0;
+            for (RecursiveTask<Long> task : tasks) {
+                total += task.join();
+            }
+            return total;
+        }
+    }
+
+    // 参照値と比べる。全て一致すれば true
+    public static boolean check() {
+        boolean ok = true;
+        for (int i = 0; i < REFERENCE_POSITIONS.length; i++) {
+            for (int d = 1; d <= REFERENCE_COUNTS[i].length; d++) {
+                long nodes = new Perft(createGame(REFERENCE_POSITIONS[i])).perft(d);
+                long expected = REFERENCE_COUNTS[i][d - 1];
+                boolean match = nodes == expected;
+                ok &= match;
+                System.out.println((match ? "OK " : "NG ") + REFERENCE_POSITIONS[i] + " depth " + d + ": " + nodes
+                        + (match ? "" : " (参照値 " + expected + ")"));
+            }
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        int depth = 5;
+        String position = INITIAL;
+        boolean divide = false;
+        boolean reference = false;
+        int threads = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-check":
+                    System.exit(check() ? 0 : 1);
+                    return;
+                case "-divide":
+                    divide = true;
+                    break;
+                case "-reference":
+                    reference = true;
+                    break;
+                case "-position":
+                    position = args[++i];
+                    break;
+                case "-threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+                    break;
+            }
+        }
+
+        Game game = createGame(position);
+        long start = System.nanoTime();
+        long nodes;
+        if (reference) {
+            nodes = referencePerft(game, depth);
+        } else if (divide) {
+            nodes = new Perft(game).divide(depth);
+        } else if (threads > 1) {
+            nodes = parallelPerft(game, depth, threads);
+        } else {
+            nodes = new Perft(game).perft(depth);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.println("局面: " + position);
+        System.out.println("深さ " + depth + ": " + nodes + " 局面, " + elapsed / 1_000_000 + " ms, "
+                + nodes * 1_000_000_000L / elapsed + " nps (" + threads + " スレッド)");
+    }
+}
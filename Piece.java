@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class Piece implements Cloneable {
@@ -29,10 +30,49 @@ public abstract class Piece implements Cloneable {
         this.isPromoted = false;
     }
 
-    public abstract List<int[]> getPossibleMoves(int currentRow, int currentCol, Board board);
+    // 移動可能なマスの一覧 {row, col} (利きのテーブルから、自分の駒のいるマスを除いたもの)
+    public List<int[]> getPossibleMoves(int currentRow, int currentCol, Board board) {
+        int targets = getMoveMask(currentRow, currentCol, board);
+        List<int[]> moves = new ArrayList<>(Integer.bitCount(targets));
+        while (targets != 0) {
+            int sq = Integer.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(new int[]{Position.rowOf(sq), Position.colOf(sq)});
+        }
+        return moves;
+    }
+
+    // getPossibleMoves と同じマスをリストを作らずにマスクで返す
+    public int getMoveMask(int currentRow, int currentCol, Board board) {
+        int targets = getAttackMask(currentRow, currentCol);
+        int moves = targets;
+        while (targets != 0) {
+            int sq = Integer.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            Piece targetPiece = board.getPiece(Position.rowOf(sq), Position.colOf(sq));
+            // 移動先に駒がない、または相手の駒であれば移動可能
+            if (targetPiece != null && targetPiece.getOwner() == this.getOwner()) {
+                moves &= ~(1 << sq);
+            }
+        }
+        return moves;
+    }
+
+    // この駒が (row, col) にいるときに利いているマス (12bit マスク、sq = row * 3 + col)
+    public int getAttackMask(int row, int col) {
+        return AttackTable.attacks(getKind(), Position.ownerIndex(owner), isPromoted, Position.square(row, col));
+    }
+
+    // この駒が (row, col) から (targetRow, targetCol) に利いているか
+    public boolean attacks(int row, int col, int targetRow, int targetCol) {
+        return (getAttackMask(row, col) & (1 << Position.square(targetRow, targetCol))) != 0;
+    }
 
     public abstract String getSymbol();
 
+    // ビットボード (Position) 上での駒の種類
+    public abstract int getKind();
+
     @Override
     public Piece clone() {
         try {
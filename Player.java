@@ -6,6 +6,11 @@ public abstract class Player implements Cloneable { // インターフェース
     protected PlayerType playerType;
     protected List<Piece> capturedPieces;
 
+    // 全ての AI で共有する局面データベース (null なら使わない)
+    private static volatile Tablebase tablebase;
+    // 全ての AI で共有する定跡 (null なら使わない)
+    private static volatile OpeningBook openingBook;
+
     public Player(String name) {
         this.name = name;
         this.capturedPieces = new ArrayList<>();
@@ -41,6 +46,31 @@ public abstract class Player implements Cloneable { // インターフェース
     // AIが手を決定するための抽象メソッド (MinMaxが実装)
     public abstract int[] chooseMove(Game game); 
 
+    public static Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    public static void setTablebase(Tablebase tablebase) {
+        Player.tablebase = tablebase;
+    }
+
+    public static OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    public static void setOpeningBook(OpeningBook openingBook) {
+        Player.openingBook = openingBook;
+    }
+
+    // 局面データベースか定跡に今の局面があれば、その手 (探索せずに指せる)。どちらにもなければ null
+    protected int[] probeBooks(Game game) {
+        Tablebase tb = tablebase;
+        int[] move = tb == null ? null : tb.bestMove(game);
+        if (move != null) return move;
+        OpeningBook book = openingBook;
+        return book == null ? null : book.probe(game);
+    }
+
     @Override
     public Player clone() { // cloneメソッドをここで実装
         try {
@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 合法手から一様にランダムに選んで対局を最後まで指す (プレイアウト) 専用の局面。
+ * MCTS の評価や学習データの生成で大量の対局を回すためのもので、Game も Position も使わず、
+ * マスごとの駒のコードと駒のコードごとのマスクだけを持って、その場で指し進める (1 局の中では配列を作らない)。
+ *
+ * 駒はどれも 1 マスしか動かないので、あき王手や合駒はない。そのため合法手は指して戻さずに決められる。
+ * <ul>
+ * <li>王手されていなければ、ライオン以外の手と打つ手は全て合法。ライオンは相手の利いていないマスにだけ動ける</li>
+ * <li>王手されていれば、ライオンが逃げる手か、王手している駒が 1 つのときにそれを取る手だけが合法</li>
+ * </ul>
+ * 手の集合と決着の判定は Game.generateLegalMoves / Game.isGameOver と同じ (手駒は同じ種類を 1 回だけ数える)。
+ * 千日手は判定せず、getMaxPlies 手で決着しなければ引き分けにする。
+ *
+ * <pre>
+ * java Playout [-position "KLZ/1H1/1h1/zlk 1 -"] [-games 1000000] [-threads N] [-seed S] [-plies 100]
+ * </pre>
+ */
+public class Playout {
+    public static final int DEFAULT_MAX_PLIES = 100; // Game.playSimulation の最大手数と同じ
+
+    // 駒のコード (Tablebase のマスの状態と同じ): 0 = 空き、1 + 持ち主 * 5 + 種類 (にわとりは Position.NIWATORI)
+    private static final int TYPES = 5;
+    private static final int CODES = 1 + 2 * TYPES;
+    private static final int SQUARES = Position.SQUARES;
+    private static final int[] ATTACKS = new int[CODES * SQUARES];   // [code * 12 + sq]: sq にいる駒が利くマス
+    private static final int[] ATTACKERS = new int[CODES * SQUARES]; // [code * 12 + sq]: そこにいれば sq に利くマス
+
+    // 打つ手は移動元を DROP_FROM + 種類 (盤上のマスは 0..11) にして、手を from << 4 | to で表す
+    private static final int DROP_FROM = SQUARES;
+
+    static {
+        for (int owner = 0; owner < 2; owner++) {
+            for (int type = 0; type < TYPES; type++) {
+                int code = code(owner, type);
+                for (int sq = 0; sq < SQUARES; sq++) {
+                    int mask = Position.attackSet(type, owner, 1 << sq);
+                    ATTACKS[code * SQUARES + sq] = mask;
+                    for (int to = 0; to < SQUARES; to++) {
+                        if ((mask & (1 << to)) != 0) {
+                            ATTACKERS[code * SQUARES + to] |= 1 << sq;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // 局面
+    private final int[] board = new int[SQUARES];      // マスごとの駒のコード
+    private final int[] pieces = new int[CODES];       // コードごとの駒のあるマス
+    private final int[] occupied = new int[2];
+    private final int[] lions = new int[2];            // ライオンのいるマス (取られたら -1)
+    private final int[] hands = new int[2 * Position.KIND_COUNT];
+    private int sideToMove;
+
+    private final int[] moves = new int[MoveList.MAX_MOVES];
+    private final SplittableRandom random;
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    private int plies; // 直前の play の手数
+
+    // run の集計
+    private final long[] wins = new long[2];
+    private long draws;
+    private long totalPlies;
+    private long[] lengths = new long[DEFAULT_MAX_PLIES + 1]; // 手数ごとの対局の数
+
+    public Playout() {
+        this(new SplittableRandom());
+    }
+
+    // 乱数の種を決めると、同じ局面からは同じ対局の列になる
+    public Playout(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private Playout(SplittableRandom random) {
+        this.random = random;
+    }
+
+    private static int code(int owner, int type) {
+        return 1 + owner * TYPES + type;
+    }
+
+    private static int typeOf(int code) {
+        return (code - 1) % TYPES;
+    }
+
+    // position の局面にする
+    public void setPosition(Position position) {
+        Arrays.fill(board, 0);
+        Arrays.fill(pieces, 0);
+        int promoted = position.getPromoted();
+        for (int owner = 0; owner < 2; owner++) {
+            occupied[owner] = position.getOccupied(owner);
+            lions[owner] = position.lionSquare(owner);
+            for (int kind = 0; kind < Position.KIND_COUNT; kind++) {
+                hands[owner * Position.KIND_COUNT + kind] = position.getHandCount(owner, kind);
+                for (int bits = position.getPieces(owner, kind); bits != 0; bits &= bits - 1) {
+                    int sq = Integer.numberOfTrailingZeros(bits);
+                    int type = kind == Position.HIYOKO && (promoted & (1 << sq)) != 0 ? Position.NIWATORI : kind;
+                    int code = code(owner, type);
+                    board[sq] = code;
+                    pieces[code] |= 1 << sq;
+                }
+            }
+        }
+        sideToMove = position.getSideToMove();
+    }
+
+    /**
+     * 今の局面からランダムに指し進めます (局面は指し終わった状態になります)。
+     * @return 勝者 (0: PLAYER1, 1: PLAYER2)。getMaxPlies 手で決着しなければ -1
+     */
+    public int play() {
+        plies = 0;
+        int winner = winner();
+        while (winner < 0 && plies < maxPlies) {
+            int side = sideToMove;
+            int count = generate(side);
+            if (count == 0) return 1 - side; // 合法手がない側の負け
+            doMove(moves[random.nextInt(count)]);
+            plies++;
+            winner = winner();
+        }
+        return winner;
+    }
+
+    /**
+     * start から games 局のプレイアウトをして、勝敗と手数を集計に足します。
+     * @return 先手の勝ち数
+     */
+    public long run(Position start, long games) {
+        long before = wins[0];
+        for (long i = 0; i < games; i++) {
+            setPosition(start);
+            record(play(), plies);
+        }
+        return wins[0] - before;
+    }
+
+    private void record(int winner, int plies) {
+        if (winner < 0) {
+            draws++;
+        } else {
+            wins[winner]++;
+        }
+        totalPlies += plies;
+        lengths[plies]++;
+    }
+
+    // other の集計を足す (スレッドごとに回した結果をまとめる)
+    public void merge(Playout other) {
+        wins[0] += other.wins[0];
+        wins[1] += other.wins[1];
+        draws += other.draws;
+        totalPlies += other.totalPlies;
+        if (other.lengths.length > lengths.length) {
+            lengths = Arrays.copyOf(lengths, other.lengths.length);
+        }
+        for (int i = 0; i < other.lengths.length; i++) {
+            lengths[i] += other.lengths[i];
+        }
+    }
+
+    // ---------------- 手の生成・指す・決着 ----------------
+
+    // owner の合法手を moves に入れ、その数を返す
+    private int generate(int owner) {
+        int opponent = 1 - owner;
+        int own = occupied[owner];
+        int lion = lions[owner];
+        int checkers = checkers(owner);
+        int count = 0;
+        if (lion >= 0) {
+            int targets = ATTACKS[board[lion] * SQUARES + lion] & ~own & ~attacksBy(opponent);
+            for (; targets != 0; targets &= targets - 1) {
+                moves[count++] = lion << 4 | Integer.numberOfTrailingZeros(targets);
+            }
+        }
+        if (checkers != 0) {
+            // 王手: ライオンが逃げる手のほかは、ただ 1 つの王手している駒を取る手だけ
+            if ((checkers & (checkers - 1)) != 0) return count;
+            int target = Integer.numberOfTrailingZeros(checkers);
+            for (int bits = own & ~(1 << lion); bits != 0; bits &= bits - 1) {
+                int from = Integer.numberOfTrailingZeros(bits);
+                if ((ATTACKS[board[from] * SQUARES + from] & checkers) != 0) moves[count++] = from << 4 | target;
+            }
+            return count;
+        }
+        for (int bits = lion >= 0 ? own & ~(1 << lion) : own; bits != 0; bits &= bits - 1) {
+            int from = Integer.numberOfTrailingZeros(bits);
+            for (int targets = ATTACKS[board[from] * SQUARES + from] & ~own; targets != 0; targets &= targets - 1) {
+                moves[count++] = from << 4 | Integer.numberOfTrailingZeros(targets);
+            }
+        }
+        int empty = ~(occupied[0] | occupied[1]) & Position.FULL;
+        for (int kind = Position.KIRIN; kind <= Position.HIYOKO; kind++) {
+            if (hands[owner * Position.KIND_COUNT + kind] == 0) continue;
+            for (int targets = empty; targets != 0; targets &= targets - 1) {
+                moves[count++] = (DROP_FROM + kind) << 4 | Integer.numberOfTrailingZeros(targets);
+            }
+        }
+        return count;
+    }
+
+    // 手番の側が move を指す
+    private void doMove(int move) {
+        int owner = sideToMove;
+        int from = move >>> 4;
+        int to = move & 0xF;
+        int toBit = 1 << to;
+        if (from >= DROP_FROM) {
+            int kind = from - DROP_FROM;
+            int code = code(owner, kind);
+            board[to] = code;
+            pieces[code] |= toBit;
+            occupied[owner] |= toBit;
+            hands[owner * Position.KIND_COUNT + kind]--;
+        } else {
+            int opponent = 1 - owner;
+            int captured = board[to];
+            if (captured != 0) {
+                pieces[captured] &= ~toBit;
+                occupied[opponent] &= ~toBit;
+                int type = typeOf(captured);
+                if (type == Position.LION) lions[opponent] = -1;
+                hands[owner * Position.KIND_COUNT + (type == Position.NIWATORI ? Position.HIYOKO : type)]++;
+            }
+            int code = board[from];
+            int fromBit = 1 << from;
+            board[from] = 0;
+            pieces[code] &= ~fromBit;
+            occupied[owner] ^= fromBit | toBit;
+            int type = typeOf(code);
+            if (type == Position.HIYOKO && Position.rowOf(to) == (owner == 0 ? Board.ROWS - 1 : 0)) {
+                code = code(owner, Position.NIWATORI); // 敵陣の奥に入ったひよこは成る
+            } else if (type == Position.LION) {
+                lions[owner] = to;
+            }
+            board[to] = code;
+            pieces[code] |= toBit;
+        }
+        sideToMove = 1 - owner;
+    }
+
+    // 勝者 (決着していなければ -1)。Game.isGameOver と同じ順に判定する
+    private int winner() {
+        boolean check0 = checkers(0) != 0;
+        boolean check1 = checkers(1) != 0;
+        if (check0 && generate(0) == 0) return 1; // 詰み
+        if (check1 && generate(1) == 0) return 0;
+        if (lions[0] >= 0 && Position.rowOf(lions[0]) == Board.ROWS - 1 && !check0) return 0; // トライ
+        if (lions[1] >= 0 && Position.rowOf(lions[1]) == 0 && !check1) return 1;
+        if (lions[0] < 0) return 1; // ライオンを取られた
+        if (lions[1] < 0) return 0;
+        return -1;
+    }
+
+    // owner のライオンに利いている相手の駒のマス
+    private int checkers(int owner) {
+        int lion = lions[owner];
+        if (lion < 0) return 0;
+        int first = code(1 - owner, 0);
+        int bits = 0;
+        for (int code = first; code < first + TYPES; code++) {
+            bits |= pieces[code] & ATTACKERS[code * SQUARES + lion];
+        }
+        return bits;
+    }
+
+    // owner の駒が利いているマス
+    private int attacksBy(int owner) {
+        int bits = 0;
+        for (int own = occupied[owner]; own != 0; own &= own - 1) {
+            int sq = Integer.numberOfTrailingZeros(own);
+            bits |= ATTACKS[board[sq] * SQUARES + sq];
+        }
+        return bits;
+    }
+
+    // ---------------- 設定と集計 ----------------
+
+    // 決着しなければ引き分けにする手数
+    public void setMaxPlies(int maxPlies) {
+        if (maxPlies < 1) {
+            throw new IllegalArgumentException("手数の上限は 1 以上にしてください: " + maxPlies);
+        }
+        this.maxPlies = maxPlies;
+        if (lengths.length < maxPlies + 1) {
+            lengths = Arrays.copyOf(lengths, maxPlies + 1);
+        }
+    }
+
+    public int getMaxPlies() {
+        return maxPlies;
+    }
+
+    // 直前の play の手数
+    public int getPlies() {
+        return plies;
+    }
+
+    public long getPlayer1Wins() {
+        return wins[0];
+    }
+
+    public long getPlayer2Wins() {
+        return wins[1];
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    public long getGames() {
+        return wins[0] + wins[1] + draws;
+    }
+
+    public long getTotalPlies() {
+        return totalPlies;
+    }
+
+    public double getAveragePlies() {
+        long games = getGames();
+        return games == 0 ? 0 : (double) totalPlies / games;
+    }
+
+    // ちょうど plies 手で終わった対局の数
+    public long getLengthCount(int plies) {
+        return plies < lengths.length ? lengths[plies] : 0;
+    }
+
+    public void print() {
+        long games = getGames();
+        System.out.println("--- プレイアウトの結果 ---");
+        System.out.println(String.format("対局数: %d (先手の勝ち %d, 後手の勝ち %d, 引き分け %d)",
+                games, wins[0], wins[1], draws));
+        System.out.println(String.format("手数: 平均 %.1f", getAveragePlies()));
+        // 手数の分布を 10 手ごとにまとめて表示する
+        for (int from = 0; from < lengths.length; from += 10) {
+            long count = 0;
+            for (int i = from; i < Math.min(from + 10, lengths.length); i++) {
+                count += lengths[i];
+            }
+            if (count > 0) {
+                System.out.println(String.format("  %3d-%3d 手: %d 局 (%.1f%%)", from, Math.min(from + 9, lengths.length - 1),
+                        count, 100.0 * count / games));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        String position = Perft.INITIAL;
+        long games = 1_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int maxPlies = DEFAULT_MAX_PLIES;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-position":
+                    position = args[++i];
+                    break;
+                case "-games":
+                    games = Long.parseLong(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-plies":
+                    maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("不明な引数です: " + args[i]);
+            }
+        }
+
+        Position start = Position.parse(position);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Callable<Playout>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Playout playout = new Playout(seeds.split()); // スレッドごとに独立した乱数の列
+            playout.setMaxPlies(maxPlies);
+            long share = games / threads + (t < games % threads ? 1 : 0);
+            tasks.add(() -> {
+                playout.run(start, share);
+                return playout;
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        Playout total = new Playout(seed);
+        total.setMaxPlies(maxPlies);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<Playout> result : pool.invokeAll(tasks)) {
+                total.merge(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("プレイアウトが中断されました", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("プレイアウトに失敗しました", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+
+        total.print();
+        System.out.println(String.format("%.2f 秒, %d 局/秒 (%d スレッド, 種 %d)", elapsed / 1e9,
+                total.getGames() * 1_000_000_000L / elapsed, threads, seed));
+    }
+}
@@ -0,0 +1,510 @@
+import java.util.List;
+
+/**
+ * ビットボードによる局面表現。
+ * 3x4 の盤を 12bit のマスクで表し、マス番号は sq = row * 3 + col とする。
+ * 駒の種類と持ち主ごとに 1 つずつマスクを持ち、成ったひよこ(にわとり)は別マスクで管理する。
+ * 盤面表示などのコンソール UI は従来通り Board が担当し、探索はこのクラスの上で行う想定。
+ */
+public class Position implements Cloneable {
+    // 駒の種類 (手駒のインデックスとしても使用)
+    public static final int LION = 0;
+    public static final int KIRIN = 1;
+    public static final int ZOU = 2;
+    public static final int HIYOKO = 3;
+    public static final int KIND_COUNT = 4;
+
+    // 利きテーブルの添字用 (成ったひよこ)
+    public static final int NIWATORI = 4;
+
+    public static final int SQUARES = Board.ROWS * Board.COLS;
+    public static final int FULL = (1 << SQUARES) - 1;
+
+    // 列・行のマスク
+    public static final int COL_0 = 0b001_001_001_001;
+    public static final int COL_2 = 0b100_100_100_100;
+    public static final int ROW_0 = 0b000_000_000_111;
+    public static final int ROW_3 = 0b111_000_000_000;
+
+    private int[] pieces = new int[2 * KIND_COUNT]; // [owner * 4 + kind]
+    private int promoted;                           // にわとりのいるマス
+    private int[] occupied = new int[2];            // 持ち主ごとの駒のあるマス
+    private int[] hands = new int[2 * KIND_COUNT];  // 手駒の枚数 [owner * 4 + kind]
+    private int sideToMove;                         // 0: PLAYER1, 1: PLAYER2
+
+    public Position() {}
+
+    // Game/Board の状態からビットボードを作成する
+    public static Position of(Board board, List<Piece> player1Hand, List<Piece> player2Hand, PlayerType sideToMove) {
+        Position pos = new Position();
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece != null) {
+                    pos.put(ownerIndex(piece.getOwner()), piece.getKind(), piece.isPromoted(), square(r, c));
+                }
+            }
+        }
+        if (player1Hand != null) {
+            for (Piece p : player1Hand) pos.hands[p.getKind()]++;
+        }
+        if (player2Hand != null) {
+            for (Piece p : player2Hand) pos.hands[KIND_COUNT + p.getKind()]++;
+        }
+        pos.sideToMove = ownerIndex(sideToMove);
+        return pos;
+    }
+
+    // 初期局面 (Game.initializeGame と同じ配置)
+    public static Position initial() {
+        Position pos = new Position();
+        pos.put(0, KIRIN, false, square(0, 0));
+        pos.put(0, LION, false, square(0, 1));
+        pos.put(0, ZOU, false, square(0, 2));
+        pos.put(0, HIYOKO, false, square(1, 1));
+        pos.put(1, ZOU, false, square(3, 0));
+        pos.put(1, LION, false, square(3, 1));
+        pos.put(1, KIRIN, false, square(3, 2));
+        pos.put(1, HIYOKO, false, square(2, 1));
+        return pos;
+    }
+
+    /**
+     * 文字列から局面を作ります (perft などで任意の局面を指定するため)。
+     * 形式は "KLZ/1H1/1h1/zlk 1 -" のように、行 0 から行 3 までを '/' で区切って列 0 から並べ、
+     * 手番 (1: PLAYER1, 2: PLAYER2) と手駒 (なければ "-") を空白で続けます。
+     * 駒は L(ライオン) K(きりん) Z(ぞう) H(ひよこ) N(にわとり) で、大文字が PLAYER1、小文字が PLAYER2、数字は空きマスの数です。
+     */
+    public static Position parse(String text) {
+        String[] fields = text.trim().split("\\s+");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("局面の形式が不正です: " + text);
+        }
+        String[] rows = fields[0].split("/");
+        if (rows.length != Board.ROWS) {
+            throw new IllegalArgumentException("行の数が不正です: " + fields[0]);
+        }
+        Position pos = new Position();
+        for (int r = 0; r < Board.ROWS; r++) {
+            int c = 0;
+            for (char ch : rows[r].toCharArray()) {
+                if (Character.isDigit(ch)) {
+                    c += ch - '0';
+                    continue;
+                }
+                if (c >= Board.COLS) {
+                    throw new IllegalArgumentException("列の数が不正です: " + rows[r]);
+                }
+                int owner = Character.isUpperCase(ch) ? 0 : 1;
+                char upper = Character.toUpperCase(ch);
+                boolean promoted = upper == 'N';
+                pos.put(owner, kindOf(promoted ? 'H' : upper), promoted, square(r, c));
+                c++;
+            }
+            if (c != Board.COLS) {
+                throw new IllegalArgumentException("列の数が不正です: " + rows[r]);
+            }
+        }
+        if (!fields[1].equals("1") && !fields[1].equals("2")) {
+            throw new IllegalArgumentException("手番は 1 か 2 で指定してください: " + fields[1]);
+        }
+        pos.sideToMove = fields[1].equals("1") ? 0 : 1;
+        if (!fields[2].equals("-")) {
+            for (char ch : fields[2].toCharArray()) {
+                int owner = Character.isUpperCase(ch) ? 0 : 1;
+                pos.hands[owner * KIND_COUNT + kindOf(Character.toUpperCase(ch))]++;
+            }
+        }
+        return pos;
+    }
+
+    // parse と同じ形式の文字列
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < Board.ROWS; r++) {
+            if (r > 0) sb.append('/');
+            int empty = 0;
+            for (int c = 0; c < Board.COLS; c++) {
+                int sq = square(r, c);
+                int owner = ownerAt(sq);
+                if (owner < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                char ch = isPromoted(sq) ? 'N' : "LKZH".charAt(kindAt(sq));
+                sb.append(owner == 0 ? ch : Character.toLowerCase(ch));
+            }
+            if (empty > 0) sb.append(empty);
+        }
+        sb.append(' ').append(sideToMove + 1).append(' ');
+        int length = sb.length();
+        for (int owner = 0; owner < 2; owner++) {
+            for (int kind = 0; kind < KIND_COUNT; kind++) {
+                char ch = "LKZH".charAt(kind);
+                for (int n = 0; n < getHandCount(owner, kind); n++) {
+                    sb.append(owner == 0 ? ch : Character.toLowerCase(ch));
+                }
+            }
+        }
+        if (sb.length() == length) sb.append('-');
+        return sb.toString();
+    }
+
+    private static int kindOf(char symbol) {
+        int kind = "LKZH".indexOf(symbol);
+        if (kind < 0) {
+            throw new IllegalArgumentException("駒の記号が不正です: " + symbol);
+        }
+        return kind;
+    }
+
+    // ---------------- 座標・インデックスの変換 ----------------
+
+    public static int square(int row, int col) {
+        return row * Board.COLS + col;
+    }
+
+    public static int rowOf(int sq) {
+        return sq / Board.COLS;
+    }
+
+    public static int colOf(int sq) {
+        return sq % Board.COLS;
+    }
+
+    public static int ownerIndex(PlayerType type) {
+        return type == PlayerType.PLAYER1 ? 0 : 1;
+    }
+
+    public static PlayerType ownerType(int owner) {
+        return owner == 0 ? PlayerType.PLAYER1 : PlayerType.PLAYER2;
+    }
+
+    // ---------------- シフトによる利きの計算 ----------------
+
+    // マスク全体を (dr, dc) だけずらす。盤外に出たビットは捨てる
+    public static int shift(int bb, int dr, int dc) {
+        if (dc == 1) bb = (bb & ~COL_2) << 1;
+        else if (dc == -1) bb = (bb & ~COL_0) >>> 1;
+        if (dr == 1) bb = bb << Board.COLS;
+        else if (dr == -1) bb = bb >>> Board.COLS;
+        return bb & FULL;
+    }
+
+    private static int orthogonal(int bb) {
+        return shift(bb, -1, 0) | shift(bb, 1, 0) | shift(bb, 0, -1) | shift(bb, 0, 1);
+    }
+
+    private static int diagonal(int bb) {
+        return shift(bb, -1, -1) | shift(bb, -1, 1) | shift(bb, 1, -1) | shift(bb, 1, 1);
+    }
+
+    // 駒の集合 bb が利いているマス (駒の動きは Lion, Kirin, Zou, Hiyoko の getPossibleMoves と同じ)
+    public static int attackSet(int type, int owner, int bb) {
+        switch (type) {
+            case LION:
+                return orthogonal(bb) | diagonal(bb);
+            case KIRIN:
+                return orthogonal(bb);
+            case ZOU:
+                return diagonal(bb);
+            case HIYOKO:
+                // 先手は行が増加方向、後手は行が減少方向
+                return shift(bb, owner == 0 ? 1 : -1, 0);
+            case NIWATORI:
+                // Hiyoko と同じく、にわとりは持ち主によらず上下左右と上側の斜め
+                return orthogonal(bb) | shift(bb, -1, -1) | shift(bb, -1, 1);
+            default:
+                return 0;
+        }
+    }
+
+    // 1マスにいる駒の利き (テーブル参照)
+    public static int attacks(int kind, int owner, boolean isPromoted, int sq) {
+        return AttackTable.attacks(kind, owner, isPromoted, sq);
+    }
+
+    // ---------------- 盤面の操作 ----------------
+
+    public void put(int owner, int kind, boolean isPromoted, int sq) {
+        int bit = 1 << sq;
+        pieces[owner * KIND_COUNT + kind] |= bit;
+        occupied[owner] |= bit;
+        if (isPromoted) promoted |= bit;
+    }
+
+    public void remove(int sq) {
+        int mask = ~(1 << sq);
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] &= mask;
+        }
+        occupied[0] &= mask;
+        occupied[1] &= mask;
+        promoted &= mask;
+    }
+
+    // ---------------- 盤面の参照 ----------------
+
+    public int getPieces(int owner, int kind) {
+        return pieces[owner * KIND_COUNT + kind];
+    }
+
+    public int getPromoted() {
+        return promoted;
+    }
+
+    public int getOccupied(int owner) {
+        return occupied[owner];
+    }
+
+    public int getOccupied() {
+        return occupied[0] | occupied[1];
+    }
+
+    public int getEmpty() {
+        return ~(occupied[0] | occupied[1]) & FULL;
+    }
+
+    public boolean isPromoted(int sq) {
+        return (promoted & (1 << sq)) != 0;
+    }
+
+    // そのマスにいる駒の持ち主 (いなければ -1)
+    public int ownerAt(int sq) {
+        int bit = 1 << sq;
+        if ((occupied[0] & bit) != 0) return 0;
+        if ((occupied[1] & bit) != 0) return 1;
+        return -1;
+    }
+
+    // そのマスにいる駒の種類 (いなければ -1)
+    public int kindAt(int sq) {
+        int bit = 1 << sq;
+        for (int i = 0; i < pieces.length; i++) {
+            if ((pieces[i] & bit) != 0) return i % KIND_COUNT;
+        }
+        return -1;
+    }
+
+    public int getHandCount(int owner, int kind) {
+        return hands[owner * KIND_COUNT + kind];
+    }
+
+    public void setHandCount(int owner, int kind, int count) {
+        hands[owner * KIND_COUNT + kind] = count;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        this.sideToMove = sideToMove;
+    }
+
+    // ライオンのいるマス (いなければ -1)
+    public int lionSquare(int owner) {
+        int lion = pieces[owner * KIND_COUNT + LION];
+        return lion == 0 ? -1 : Integer.numberOfTrailingZeros(lion);
+    }
+
+    // ---------------- 利き・指し手 ----------------
+
+    // sq にいる駒が利いているマス
+    public int attacksFrom(int sq) {
+        int owner = ownerAt(sq);
+        if (owner < 0) return 0;
+        return attacks(kindAt(sq), owner, isPromoted(sq), sq);
+    }
+
+    // owner の全ての駒の利き (シフトでまとめて計算)
+    public int attacksBy(int owner) {
+        int base = owner * KIND_COUNT;
+        int hiyoko = pieces[base + HIYOKO];
+        return attackSet(LION, owner, pieces[base + LION])
+                | attackSet(KIRIN, owner, pieces[base + KIRIN])
+                | attackSet(ZOU, owner, pieces[base + ZOU])
+                | attackSet(HIYOKO, owner, hiyoko & ~promoted)
+                | attackSet(NIWATORI, owner, hiyoko & promoted);
+    }
+
+    // sq に owner の駒が利いているか (逆引きテーブルと駒のマスクの AND で判定する)
+    public boolean isAttacked(int sq, int byOwner) {
+        int base = byOwner * KIND_COUNT;
+        int hiyoko = pieces[base + HIYOKO];
+        return (pieces[base + LION] & AttackTable.attackers(LION, byOwner, false, sq)) != 0
+                || (pieces[base + KIRIN] & AttackTable.attackers(KIRIN, byOwner, false, sq)) != 0
+                || (pieces[base + ZOU] & AttackTable.attackers(ZOU, byOwner, false, sq)) != 0
+                || (hiyoko & ~promoted & AttackTable.attackers(HIYOKO, byOwner, false, sq)) != 0
+                || (hiyoko & promoted & AttackTable.attackers(HIYOKO, byOwner, true, sq)) != 0;
+    }
+
+    // 自分のライオンに相手の駒が利いているか (ライオンがいなければ false、Game.isKingInCheck と同じ)
+    public boolean isInCheck(int owner) {
+        int lionSq = lionSquare(owner);
+        return lionSq >= 0 && isAttacked(lionSq, 1 - owner);
+    }
+
+    // sq の駒が動けるマス (自分の駒のあるマスを除く)
+    public int movesFrom(int sq) {
+        int owner = ownerAt(sq);
+        if (owner < 0) return 0;
+        return attacksFrom(sq) & ~occupied[owner];
+    }
+
+    // sq の駒が取れる相手の駒のマス
+    public int capturesFrom(int sq) {
+        int owner = ownerAt(sq);
+        if (owner < 0) return 0;
+        return attacksFrom(sq) & occupied[1 - owner];
+    }
+
+    // 手駒を打てるマス
+    public int dropTargets() {
+        return getEmpty();
+    }
+
+    // ---------------- 指して戻す (Game を使わない探索・プレイアウト用) ----------------
+
+    // 詰めた手 (Move) を手番の側が指す。手番も入れ替わる
+    public void doMove(int move) {
+        int owner = sideToMove;
+        int to = Move.to(move);
+        int kind = Move.kind(move);
+        if (Move.isDrop(move)) {
+            put(owner, kind, false, to);
+            hands[owner * KIND_COUNT + kind]--;
+        } else {
+            int from = Move.from(move);
+            boolean wasPromoted = isPromoted(from);
+            if (Move.isCapture(move)) {
+                remove(to);
+                hands[owner * KIND_COUNT + Move.capturedKind(move)]++;
+            }
+            remove(from);
+            put(owner, kind, wasPromoted || Move.isPromotion(move), to);
+        }
+        sideToMove = 1 - owner;
+    }
+
+    // doMove(move) を取り消す (手の中に取った駒と成りの情報があるので、それだけで戻せる)
+    public void undoMove(int move) {
+        int owner = 1 - sideToMove;
+        int to = Move.to(move);
+        int kind = Move.kind(move);
+        sideToMove = owner;
+        if (Move.isDrop(move)) {
+            remove(to);
+            hands[owner * KIND_COUNT + kind]++;
+            return;
+        }
+        boolean wasPromoted = isPromoted(to) && !Move.isPromotion(move);
+        remove(to);
+        put(owner, kind, wasPromoted, Move.from(move));
+        if (Move.isCapture(move)) {
+            int captured = Move.capturedKind(move);
+            hands[owner * KIND_COUNT + captured]--;
+            put(1 - owner, captured, Move.isCapturedPromoted(move), to);
+        }
+    }
+
+    /**
+     * owner の合法手 (自分のライオンに相手の駒が利いたままになる手を除く) を moves に入れます。
+     * Game.generateLegalMoves と同じ手の集合になります (ひよこは敵陣の奥で成り、打つ手では成らない)。
+     * @param moves 結果を入れるバッファ (最初に clear されます)
+     */
+    public void generateLegalMoves(int owner, MoveList moves) {
+        moves.clear();
+        generateLegalMoves(owner, moves, false);
+    }
+
+    // owner に合法手が 1 つでもあるか
+    public boolean hasLegalMove(int owner) {
+        return generateLegalMoves(owner, null, true);
+    }
+
+    private boolean generateLegalMoves(int owner, MoveList moves, boolean stopAtFirst) {
+        int side = sideToMove;
+        sideToMove = owner; // doMove は手番の側が指すので、一時的に owner の手番にする
+        boolean found = false;
+        int promotionRow = owner == 0 ? Board.ROWS - 1 : 0;
+        for (int own = occupied[owner]; own != 0 && !(found && stopAtFirst); own &= own - 1) {
+            int from = Integer.numberOfTrailingZeros(own);
+            int kind = kindAt(from);
+            boolean promotable = kind == HIYOKO && !isPromoted(from);
+            for (int targets = movesFrom(from); targets != 0; targets &= targets - 1) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                int move = Move.move(from, to, kind, kindAt(to), isPromoted(to), promotable && rowOf(to) == promotionRow);
+                if (isLegal(move, owner)) {
+                    found = true;
+                    if (stopAtFirst) break;
+                    moves.add(move);
+                }
+            }
+        }
+        for (int kind = KIRIN; kind <= HIYOKO && !(found && stopAtFirst); kind++) {
+            if (hands[owner * KIND_COUNT + kind] == 0) continue;
+            for (int targets = getEmpty(); targets != 0; targets &= targets - 1) {
+                int move = Move.drop(kind, Integer.numberOfTrailingZeros(targets));
+                if (isLegal(move, owner)) {
+                    found = true;
+                    if (stopAtFirst) break;
+                    moves.add(move);
+                }
+            }
+        }
+        sideToMove = side;
+        return found;
+    }
+
+    // 手番の owner が move を指しても自分のライオンに相手の駒が利かないか
+    private boolean isLegal(int move, int owner) {
+        doMove(move);
+        boolean legal = !isInCheck(owner);
+        undoMove(move);
+        return legal;
+    }
+
+    /**
+     * 決着していれば勝者 (0: PLAYER1, 1: PLAYER2)、していなければ -1。
+     * Game.isGameOver と同じ順に、詰み・トライ (ライオンが敵陣の奥にいて王手されていない)・ライオンを取られた、を判定します。
+     * 手番の側に合法手がない (詰みではない) 局面は決着に含めないので、呼び出し側で hasLegalMove を見てください。
+     */
+    public int winner() {
+        if (isInCheck(0) && !hasLegalMove(0)) return 1;
+        if (isInCheck(1) && !hasLegalMove(1)) return 0;
+        int lion0 = lionSquare(0);
+        int lion1 = lionSquare(1);
+        if (lion0 >= 0 && rowOf(lion0) == Board.ROWS - 1 && !isInCheck(0)) return 0;
+        if (lion1 >= 0 && rowOf(lion1) == 0 && !isInCheck(1)) return 1;
+        if (lion0 < 0) return 1;
+        if (lion1 < 0) return 0;
+        return -1;
+    }
+
+    // other と同じ局面にする (配列を作らずに複製する)
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(other.hands, 0, hands, 0, hands.length);
+        promoted = other.promoted;
+        sideToMove = other.sideToMove;
+    }
+
+    @Override
+    public Position clone() {
+        try {
+            Position cloned = (Position) super.clone();
+            cloned.pieces = pieces.clone();
+            cloned.occupied = occupied.clone();
+            cloned.hands = hands.clone();
+            return cloned;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
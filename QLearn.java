@@ -1,178 +1,251 @@
-import java.io.FileOutputStream;
 import java.io.FileInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class QLearn extends Player {
 
     private static final double ALPHA = 0.1;
     private static final double GAMMA = 0.9;
-    private static double EPSILON = 1.0;
+    private static final double INITIAL_EPSILON = 1.0;
     private static final double MIN_EPSILON = 0.05;
-
-    private Map<String, Map<Integer, Double>> qTable = new HashMap<>();
-    private Random rand = new Random();
+    private static final double EPSILON_DECAY = 0.995; // 1 エピソードごとに掛ける
+
+    // 局面のキーのビット配置: マスごとに 4bit (0 = 空き、1..10 = SYMBOLS の位置 + 1) x 12 マス、
+    // その上に学習中に付ける手番のタグ 2bit (encodeState の文字列の "_PLAYER1" などに当たる)
+    private static final int TAG_SHIFT = 48;
+    private static final long TAG_NONE = 0;
+    // encodeState で使う駒の記号 (先手, 後手の順に Position.LION..NIWATORI)
+    private static final String SYMBOLS = "獅麒象ひ鶏ラキゾヒニ";
+
+    // Q テーブルには左右反転した局面をまとめた正規形のキー (canonicalStateKey) で入れ、手のキーもその向きに直す
+    // 学習中は複数のスレッド (trial の各ワーカー) で共有する
+    private StripedQTable qTable = new StripedQTable();
+    private MappedQTable mappedTable; // loadQTable で開いたファイル (学習を始めたら qTable に写して使う)
+    private Random rand = new Random(); // インスタンスごと (= 学習のスレッドごと) の乱数
+    private double epsilon = INITIAL_EPSILON; // ランダムに指す確率
+    private MoveList legalMoves = new MoveList(); // 合法手のバッファ (getLegalMoves で使い回す)
 
     public QLearn(String name) {
         super(name);
     }
 
-    private void decayEpsilon(int ep, int maxEpisodes) {
-        EPSILON = Math.max(MIN_EPSILON, EPSILON * 0.995);
+    // 学習を始めたときの epsilon が start のとき、episode 番目 (0 から) のエピソードで使う epsilon
+    private static double epsilonAt(double start, long episode) {
+        return Math.max(MIN_EPSILON, start * Math.pow(EPSILON_DECAY, episode));
     }
 
     @Override
     public int[] chooseMove(Game game) {
-        String state = encodeState(game);
-        List<int[]> legalMoves = getLegalMoves(game);
-        if (legalMoves == null || legalMoves.isEmpty()) return null;
-
-        if (rand.nextDouble() < EPSILON) {
-            return legalMoves.get(rand.nextInt(legalMoves.size()));
+        long key = encodeStateKey(game, TAG_NONE);
+        long state = canonicalStateKey(key);
+        boolean mirrored = state != key;
+        MoveList legalMoves = getLegalMoves(game);
+        if (legalMoves.isEmpty()) return null;
+
+        List<Piece> hand = getCapturedPieces();
+        if (rand.nextDouble() < epsilon) {
+            return Move.toArray(legalMoves.get(rand.nextInt(legalMoves.size())), hand);
         } else {
-            Map<Integer, Double> moveQMap = qTable.getOrDefault(state, new HashMap<>());
-            int[] bestAction = null;
-            double bestValue = Double.NEGATIVE_INFINITY;
-            for (int[] move : legalMoves) {
-                //List<Integer> moveKey = Arrays.stream(move).boxed().toList();
-		int moveKey = encodeMove(move);
-                double q = moveQMap.getOrDefault(moveKey, 0.0);
-                if (q > bestValue) {
-                    bestValue = q;
-                    bestAction = move;
-                }
+            if (mappedTable != null) {
+                return Move.toArray(bestMove(mappedTable, state, mirrored, legalMoves, hand), hand);
+            }
+            QTable stripe = qTable.stripe(state);
+            synchronized (stripe) {
+                return Move.toArray(bestMove(stripe, state, mirrored, legalMoves, hand), hand);
             }
-            return bestAction != null ? bestAction : legalMoves.get(0);
         }
     }
 
-    private void updateQ(String state, int[] move, double reward, String nextState, List<int[]> nextMoves) {
-        int moveKey = encodeMove(move);
-        Map<Integer, Double> qMap = qTable.computeIfAbsent(state, k -> new HashMap<>());
-        double oldQ = qMap.getOrDefault(moveKey, 0.0);
+    // Q 値が最も大きい手 (同じ値なら先の手)。state は正規形のキーで、mirrored なら手を反転して引く
+    private int bestMove(QValues table, long state, boolean mirrored, MoveList legalMoves, List<Piece> hand) {
+        int slot = table.find(state); // この局面の全ての手の Q 値 (なければ全て 0)
+        int bestAction = Move.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            int moveKey = orientMoveKey(encodeMove(move, hand), mirrored);
+            double q = slot < 0 ? 0.0 : table.get(slot, moveKey, 0.0f);
+            if (q > bestValue) {
+                bestValue = q;
+                bestAction = move;
+            }
+        }
+        return bestAction != Move.NONE ? bestAction : legalMoves.get(0);
+    }
 
-        Map<Integer, Double> nextQMap = qTable.getOrDefault(nextState, new HashMap<>());
+    private void updateQ(long state, int moveKey, double reward, long nextState, MoveList nextMoves) {
+        long canonicalState = canonicalStateKey(state);
+        moveKey = orientMoveKey(moveKey, canonicalState != state);
+        state = canonicalState;
+        long canonicalNextState = canonicalStateKey(nextState);
+        boolean nextMirrored = canonicalNextState != nextState;
+        nextState = canonicalNextState;
+
+        // 次の局面の最大値を先に読む (別のロックなので、読んだ後に他のスレッドが更新してもよい)
         double maxNextQ = 0.0;
-        for (int[] nextMove : nextMoves) {
-            int nextKey = encodeMove(nextMove);
-            double q = nextQMap.getOrDefault(nextKey, 0.0);
-            maxNextQ = Math.max(maxNextQ, q);
+        QTable nextStripe = qTable.stripe(nextState);
+        synchronized (nextStripe) {
+            int nextSlot = nextStripe.find(nextState);
+            if (nextSlot >= 0) {
+                List<Piece> hand = getCapturedPieces();
+                for (int i = 0; i < nextMoves.size(); i++) {
+                    int nextKey = orientMoveKey(encodeMove(nextMoves.get(i), hand), nextMirrored);
+                    double q = nextStripe.get(nextSlot, nextKey, 0.0f);
+                    maxNextQ = Math.max(maxNextQ, q);
+                }
+            }
         }
 
-        double newQ = oldQ + ALPHA * (reward + GAMMA * maxNextQ - oldQ);
-        qMap.put(moveKey, newQ);
-        qTable.put(state, qMap);
+        QTable stripe = qTable.stripe(state);
+        synchronized (stripe) {
+            int slot = stripe.findOrInsert(state);
+            double oldQ = stripe.get(slot, moveKey, 0.0f);
+            double newQ = oldQ + ALPHA * (reward + GAMMA * maxNextQ - oldQ);
+            stripe.put(slot, moveKey, (float) newQ);
+        }
     }
 
     public void trial(int episodes) {
-        QLearn playerA = this;
-        RandomPlayer playerB = new RandomPlayer("Random");
+        trial(episodes, 1);
+    }
 
-        for (int ep = 0; ep < episodes; ep++) {
-            if (ep % 10 == 0) {
-                System.out.println("trial完了率 : " + (ep * 100 / episodes) + "%");
+    /**
+     * RandomPlayer を相手に episodes 回対局して Q テーブルを学習します。
+     * threads 個のワーカーがそれぞれ自分の QLearn (乱数・手駒・合法手のバッファ) と相手を持ち、
+     * このインスタンスの Q テーブルを共有して並列にエピソードを進めます。
+     * epsilon はエピソードの通し番号で決めるので、1 スレッドのときは今まで通り 1 エピソードごとに減っていきます。
+     */
+    public void trial(int episodes, int threads) {
+        if (mappedTable != null) {
+            qTable = StripedQTable.of(mappedTable.toQTable());
+            mappedTable = null;
+        }
+        double startEpsilon = epsilon;
+        AtomicInteger nextEpisode = new AtomicInteger();
+        threads = Math.max(1, Math.min(threads, episodes));
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                QLearn worker = i == 0 ? this : new QLearn(getName() + "#" + i);
+                worker.qTable = this.qTable;
+                workers.add(pool.submit(() -> {
+                    RandomPlayer opponent = new RandomPlayer("Random");
+                    for (int ep = nextEpisode.getAndIncrement(); ep < episodes; ep = nextEpisode.getAndIncrement()) {
+                        if (ep % 10 == 0) {
+                            System.out.println("trial完了率 : " + (ep * 100 / episodes) + "%");
+                        }
+                        worker.epsilon = epsilonAt(startEpsilon, ep);
+                        worker.playTrainingEpisode(opponent);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("学習のエピソードに失敗しました", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        epsilon = epsilonAt(startEpsilon, episodes);
 
-            Game game = new Game(playerA, playerB);
-            game.setSilentMode(true);
-            PlayerType winner = null;
-            int turnCount = 0;
-            Map<String, Integer> stateCounts = new HashMap<>();
-
-            while (true) {
-                Player current = game.getCurrentPlayer();
-                boolean isQLearn = current instanceof QLearn;
-                String playerTag = current.getPlayerType().toString();
-                String prevState = isQLearn ? ((QLearn) current).encodeState(game) + "_" + playerTag : "";
-
-                turnCount++;
-                stateCounts.put(prevState, stateCounts.getOrDefault(prevState, 0) + 1);
-
-                int[] move = current.chooseMove(game);
-                if (move == null) {
-                    if (isQLearn) {
-                        double finalReward = -200.0;
-                        ((QLearn) current).updateQ(prevState, new int[]{0, 0, 0, 0}, finalReward, prevState, new ArrayList<>());
-                    }
-                    break;
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.println(String.format("学習: %d エピソード, %d スレッド, %.1f 秒 (%.1f エピソード/秒), %d 局面",
+                episodes, threads, elapsed / 1e9, episodes * 1e9 / elapsed, qTable.size()));
+    }
+
+    // RandomPlayer を相手に 1 局指しながら Q テーブルを更新する
+    private void playTrainingEpisode(RandomPlayer playerB) {
+        QLearn playerA = this;
+        Game game = new Game(playerA, playerB);
+        game.setSilentMode(true);
+        PlayerType winner = null;
+        int turnCount = 0;
+        LongCounter stateCounts = new LongCounter();
+
+        while (true) {
+            Player current = game.getCurrentPlayer();
+            boolean isQLearn = current instanceof QLearn;
+            long prevState = isQLearn ? ((QLearn) current).encodeStateKey(game, tagOf(current.getPlayerType())) : TAG_NONE;
+
+            turnCount++;
+            int prevStateCount = stateCounts.increment(prevState);
+
+            int[] move = current.chooseMove(game);
+            if (move == null) {
+                if (isQLearn) {
+                    double finalReward = -200.0;
+                    ((QLearn) current).updateQ(prevState, encodeMove(new int[]{0, 0, 0, 0}), finalReward, prevState, new MoveList(0));
                 }
+                break;
+            }
 
 		Piece captured = null;
 		if (move[0] != -1) {
 		    captured = game.getBoard().getPiece(move[2], move[3]);
 		}
-                //Piece captured = game.getBoard().getPiece(move[2], move[3]);
-                if (move[0] == -1) {
-                    Piece pieceToDrop = current.getCapturedPieces().get(move[1]);
-                    game.performDrop(pieceToDrop, move[2], move[3]);
-                } else {
-                    game.performMove(move[0], move[1], move[2], move[3]);
-                }
-
-                if (isQLearn) {
-                    String nextState = ((QLearn) current).encodeState(game);
-                    List<int[]> nextMoves = ((QLearn) current).getLegalMoves(game);
-                    double reward = ((QLearn) current).getReward(game, captured);
-                    if (turnCount > 78) reward -= 50.0;
-                    if (turnCount >= 256) reward -= 100.0;
-                    if (stateCounts.get(prevState) >= 4) {
-                        reward -= 1000.0;
-                        ((QLearn) current).updateQ(prevState, move, reward, nextState, nextMoves);
-                        break;
-                    }
-                    ((QLearn) current).updateQ(prevState, move, reward, nextState, nextMoves);
-                }
-
-                if (turnCount >= 128) break;
-                winner = game.isGameOver();
-                if (winner != null) break;
-
-                game.switchPlayer();
+            //Piece captured = game.getBoard().getPiece(move[2], move[3]);
+            if (move[0] == -1) {
+                Piece pieceToDrop = current.getCapturedPieces().get(move[1]);
+                game.performDrop(pieceToDrop, move[2], move[3]);
+            } else {
+                game.performMove(move[0], move[1], move[2], move[3]);
             }
 
-            playerA.decayEpsilon(ep, episodes);
-        }
-    }
-
-    public List<int[]> getLegalMoves(Game game) {
-        List<int[]> allLegalMoves = new ArrayList<>();
-        PlayerType myPlayerType = this.getPlayerType();
-
-        for (int r = 0; r < Board.ROWS; r++) {
-            for (int c = 0; c < Board.COLS; c++) {
-                Piece piece = game.getBoard().getPiece(r, c);
-                if (piece != null && piece.getOwner() == myPlayerType) {
-                    List<int[]> movesForPiece = piece.getPossibleMoves(r, c, game.getBoard());
-                    for (int[] move : movesForPiece) {
-                        if (game.isValidMoveAndNotIntoCheck(myPlayerType, r, c, move[0], move[1])) {
-                            allLegalMoves.add(new int[]{r, c, move[0], move[1]});
-                        }
-                    }
+            if (isQLearn) {
+                long nextState = ((QLearn) current).encodeStateKey(game, TAG_NONE);
+                MoveList nextMoves = ((QLearn) current).getLegalMoves(game);
+                int moveKey = encodeMove(move);
+                double reward = ((QLearn) current).getReward(game, captured);
+                if (turnCount > 78) reward -= 50.0;
+                if (turnCount >= 256) reward -= 100.0;
+                if (prevStateCount >= 4) {
+                    reward -= 1000.0;
+                    ((QLearn) current).updateQ(prevState, moveKey, reward, nextState, nextMoves);
+                    break;
                 }
+                ((QLearn) current).updateQ(prevState, moveKey, reward, nextState, nextMoves);
             }
-        }
 
-        List<Piece> captured = this.getCapturedPieces();
-        for (int i = 0; i < captured.size(); i++) {
-            Piece pieceToDrop = captured.get(i);
-            for (int r = 0; r < Board.ROWS; r++) {
-                for (int c = 0; c < Board.COLS; c++) {
-                    if (game.getBoard().isEmpty(r, c) && game.isValidDropAndNotIntoCheck(myPlayerType, pieceToDrop, r, c)) {
-                        allLegalMoves.add(new int[]{-1, i, r, c});
-                    }
-                }
-            }
+            if (turnCount >= 128) break;
+            winner = game.isGameOver();
+            if (winner != null) break;
+
+            game.switchPlayer();
         }
+    }
 
-        return allLegalMoves;
+    // 自分の合法手を使い回しのバッファに詰めて返す (次に呼ぶまで有効)
+    public MoveList getLegalMoves(Game game) {
+        game.generateLegalMoves(this.getPlayerType(), legalMoves);
+        return legalMoves;
     }
 
     private int encodeMove(int[] move) {
 	return (move[0] + 1) << 12 | (move[1] + 1) << 8 | (move[2] + 1) << 4 | (move[3] + 1);
     }
 
+    // 詰めた指し手から Q テーブルのキー (encodeMove(int[]) と同じ値) を配列を作らずに求める
+    private int encodeMove(int move, List<Piece> hand) {
+        int to = Move.to(move);
+        int key = (Position.rowOf(to) + 1) << 4 | (Position.colOf(to) + 1);
+        if (Move.isDrop(move)) {
+            return key | (Move.handIndex(hand, Move.kind(move)) + 1) << 8;
+        }
+        int from = Move.from(move);
+        return key | (Position.rowOf(from) + 1) << 12 | (Position.colOf(from) + 1) << 8;
+    }
+
     private int[] decodeMove(int moveCode) {
 	return new int[] {
 	    (moveCode >> 12) - 1,
@@ -182,6 +255,120 @@ public class QLearn extends Player {
 	};
     }
 
+    // 手のキー (encodeMove) を左右反転する。列の 4bit (1..3) を反転し、打つ手の手駒の番号はそのまま
+    static int mirrorMoveKey(int moveKey) {
+        int key = moveKey & ~0xF | mirrorColumn(moveKey & 0xF);
+        if ((moveKey >>> 12) != 0) { // 盤上の駒を動かす手
+            key = key & ~0xF00 | mirrorColumn((moveKey >>> 8) & 0xF) << 8;
+        }
+        return key;
+    }
+
+    // 列 + 1 の値を反転する (古いファイルにある盤の外を指すキーはそのまま)
+    private static int mirrorColumn(int column) {
+        return column >= 1 && column <= Board.COLS ? Board.COLS + 1 - column : column;
+    }
+
+    private static int orientMoveKey(int moveKey, boolean mirrored) {
+        return mirrored ? mirrorMoveKey(moveKey) : moveKey;
+    }
+
+    // 局面のキーを左右反転する (手番のタグはそのまま)
+    static long mirrorStateKey(long key) {
+        long mirrored = key;
+        for (int r = 0; r < Board.ROWS; r++) {
+            int left = 4 * Position.square(r, 0);
+            int right = 4 * Position.square(r, Board.COLS - 1);
+            long diff = ((key >>> left) ^ (key >>> right)) & 0xF;
+            mirrored ^= diff << left | diff << right;
+        }
+        return mirrored;
+    }
+
+    // 局面のキーとその左右反転のうち、Q テーブルに入れる方 (小さい方)
+    public static long canonicalStateKey(long key) {
+        return Symmetry.canonicalKey(key, mirrorStateKey(key));
+    }
+
+    /**
+     * 局面のキーが正規形とは限らない Q テーブル (版 1 のファイルや古い直列化の形式) を正規形にします。
+     * 左右反転で同じになる局面の同じ手に両方とも値があるときは平均を取ります。
+     */
+    public static QTable canonicalize(QTable table) {
+        QTable canonical = new QTable(table.size());
+        for (int slot = 0; slot < table.slotCount(); slot++) {
+            if (!table.isUsed(slot)) continue;
+            long key = table.keyAt(slot);
+            long state = canonicalStateKey(key);
+            int target = canonical.findOrInsert(state);
+            for (int i = 0; i < table.actionCount(slot); i++) {
+                int move = orientMoveKey(table.moveAt(slot, i), state != key);
+                float value = table.valueAt(slot, i);
+                float old = canonical.get(target, move, Float.NaN);
+                canonical.put(target, move, Float.isNaN(old) ? value : (old + value) / 2);
+            }
+        }
+        return canonical;
+    }
+
+    // 学習中に局面のキーに付ける手番のタグ
+    private static long tagOf(PlayerType playerType) {
+        return playerType == PlayerType.PLAYER1 ? 1 : 2;
+    }
+
+    /**
+     * encodeState の文字列 (盤面の記号 12 文字) を 64bit に詰めたキー。tag は encodeState の後ろに付けていた手番の印
+     * (TAG_NONE なら付けない)。手駒は含まない。
+     */
+    public long encodeStateKey(Game game, long tag) {
+        long key = tag << TAG_SHIFT;
+        Board board = game.getBoard();
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece p = board.getPiece(r, c);
+                if (p == null) continue;
+                int kind = p.getKind() == Position.HIYOKO && p.isPromoted() ? Position.NIWATORI : p.getKind();
+                long code = 1 + Position.ownerIndex(p.getOwner()) * 5 + kind;
+                key |= code << (4 * (r * Board.COLS + c));
+            }
+        }
+        return key;
+    }
+
+    // encodeState の文字列 (後ろに "_PLAYER1" などが付いていてもよい) をキーにする。読めない文字列なら -1
+    public static long parseStateKey(String state) {
+        int squares = Board.ROWS * Board.COLS;
+        if (state.length() < squares) return -1;
+        long key = 0;
+        for (int sq = 0; sq < squares; sq++) {
+            char ch = state.charAt(sq);
+            if (ch == '.') continue;
+            int code = SYMBOLS.indexOf(ch);
+            if (code < 0) return -1;
+            key |= (long) (code + 1) << (4 * sq);
+        }
+        String tag = state.substring(squares);
+        if (tag.isEmpty()) return key;
+        for (PlayerType playerType : PlayerType.values()) {
+            if (tag.equals("_" + playerType)) return key | tagOf(playerType) << TAG_SHIFT;
+        }
+        return -1;
+    }
+
+    // parseStateKey の逆
+    public static String stateKeyToString(long key) {
+        StringBuilder sb = new StringBuilder();
+        for (int sq = 0; sq < Board.ROWS * Board.COLS; sq++) {
+            int code = (int) (key >>> (4 * sq)) & 0xF;
+            sb.append(code == 0 ? '.' : SYMBOLS.charAt(code - 1));
+        }
+        long tag = key >>> TAG_SHIFT;
+        if (tag != TAG_NONE) {
+            sb.append('_').append(tag == 1 ? PlayerType.PLAYER1 : PlayerType.PLAYER2);
+        }
+        return sb.toString();
+    }
+
     public String encodeState(Game game) {
         StringBuilder sb = new StringBuilder();
         for (int r = 0; r < Board.ROWS; r++) {
@@ -287,32 +474,86 @@ public class QLearn extends Player {
         return safety;
     }
 
+    // Q テーブルを MappedQTable の形式で保存する
     public void saveQTable(String filename) {
-    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-        oos.writeObject(qTable);  // qTableはMap<String, Map<String, Double>>
-	setEpsilon(0.0);
-        System.out.println("Qテーブルを保存しました。");
-    } catch (IOException e) {
-        e.printStackTrace();
+        try {
+            MappedQTable.write(mappedTable != null ? mappedTable.toQTable() : qTable.toQTable(), filename);
+            setEpsilon(0.0);
+            System.out.println("Qテーブルを保存しました。");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
-}
 
-    @SuppressWarnings("unchecked")
+    // Q テーブルを読み込む。MappedQTable の形式ならファイルをマップするだけで、古い Java の直列化の形式
+    // (と正規形になっていない版 1 のファイル) なら全て読み込んで正規形にする
     public void loadQTable(String filename) {
-    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-	qTable = (Map<String, Map<Integer, Double>>) ois.readObject();
-        System.out.println("Qテーブルを読み込みました。");
-    } catch (IOException | ClassNotFoundException e) {
-        e.printStackTrace();
+        try {
+            if (MappedQTable.isBinaryFile(filename)) {
+                mappedTable = MappedQTable.open(filename);
+                if (!mappedTable.isCanonical()) {
+                    qTable = StripedQTable.of(canonicalize(mappedTable.toQTable()));
+                    mappedTable = null;
+                    System.out.println("Qテーブルを読み込みました。(" + qTable.size() + " 局面, 正規形に変換)");
+                    return;
+                }
+                System.out.println("Qテーブルを読み込みました。(" + mappedTable.size() + " 局面)");
+            } else {
+                qTable = StripedQTable.of(canonicalize(readSerializedQTable(filename)));
+                mappedTable = null;
+                System.out.println("Qテーブルを読み込みました。(" + qTable.size() + " 局面)");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 古い形式 (Map<String, Map<Integer, Double>> を Java の直列化で保存したもの) のファイルを読む
+    @SuppressWarnings("unchecked")
+    public static QTable readSerializedQTable(String filename) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
+            return fromMap((Map<String, Map<Integer, Double>>) ois.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Qテーブルの形式が不正です: " + filename, e);
+        }
+    }
+
+    // 読み込んだ Map を QTable にする。局面の文字列が読めないものと、手のキーが 16bit に収まらないもの
+    // (今の encodeMove では作られない古い形式のキー) は使われることがないので読み飛ばす
+    private static QTable fromMap(Map<String, Map<Integer, Double>> map) {
+        QTable table = new QTable(map.size());
+        long skipped = 0;
+        for (Map.Entry<String, Map<Integer, Double>> entry : map.entrySet()) {
+            long state = parseStateKey(entry.getKey());
+            if (state < 0) {
+                skipped += entry.getValue().size();
+                continue;
+            }
+            int slot = -1;
+            for (Map.Entry<Integer, Double> action : entry.getValue().entrySet()) {
+                int move = action.getKey();
+                if (move < 0 || move > 0xFFFF) {
+                    skipped++;
+                    continue;
+                }
+                if (slot < 0) slot = table.findOrInsert(state);
+                table.put(slot, move, action.getValue().floatValue());
+            }
+        }
+        if (skipped > 0) {
+            System.out.println("使われない Q 値を " + skipped + " 個読み飛ばしました。");
+        }
+        return table;
     }
-}
 
     private void setEpsilon(double epsilon) {
-	this.EPSILON = epsilon;
+	this.epsilon = epsilon;
     }
 
     @Override
     public QLearn clone() {
-        return (QLearn) super.clone();
+        QLearn cloned = (QLearn) super.clone();
+        cloned.legalMoves = new MoveList();
+        return cloned;
     }
 }
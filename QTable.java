@@ -0,0 +1,224 @@
+import java.util.Arrays;
+
+/**
+ * QLearn の Q テーブル。
+ * 局面を詰めた 64bit のキー、手を 16bit のキーとして、Q 値を float で持つ。
+ * Map&lt;String, Map&lt;Integer, Double&gt;&gt; の代わりに、局面はオープンアドレス法の配列で、
+ * 局面ごとの手と Q 値は共有の配列 (moves / values) の連続した区間 (ブロック) に入れる。
+ * 1 回の find でその局面の全ての手にたどり着ける。
+ *
+ * ブロックがいっぱいになると倍の大きさのブロックを配列の末尾に作って移すので、
+ * 古いブロックの分だけ無駄ができる (最大でも使っている分と同じ程度)。
+ */
+public class QTable implements QValues {
+    // 局面のキーに使われない値 (QLearn のキーは 50bit までしか使わない)
+    private static final long EMPTY = -1L;
+    private static final int FIRST_BLOCK_CAPACITY = 4;
+
+    // 局面ごと: キー、ブロックの先頭、手の数、ブロックの大きさ
+    private long[] keys;
+    private int[] blockStart;
+    private short[] blockSize;
+    private short[] blockCapacity;
+    private int states;
+
+    // 全ての局面の手と Q 値
+    private short[] moves;
+    private float[] values;
+    private int used;
+
+    public QTable() {
+        this(1024);
+    }
+
+    public QTable(int expectedStates) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedStates * 2) - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        blockStart = new int[capacity];
+        blockSize = new short[capacity];
+        blockCapacity = new short[capacity];
+        moves = new short[Math.max(16, expectedStates * FIRST_BLOCK_CAPACITY)];
+        values = new float[moves.length];
+    }
+
+    /**
+     * 局面 state のスロットを探します。
+     * @return スロット (actionCount, moveAt, valueAt, get, put に渡す)。なければ -1
+     */
+    @Override
+    public int find(long state) {
+        int mask = keys.length - 1;
+        for (int i = index(state, mask); ; i = (i + 1) & mask) {
+            long key = keys[i];
+            if (key == state) return i;
+            if (key == EMPTY) return -1;
+        }
+    }
+
+    // 局面 state のスロットを返す。なければ手のない局面として追加する (それまでのスロットは使えなくなることがある)
+    public int findOrInsert(long state) {
+        if ((states + 1) * 4L >= keys.length * 3L) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = index(state, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == state) return i;
+            i = (i + 1) & mask;
+        }
+        keys[i] = state;
+        blockStart[i] = allocate(FIRST_BLOCK_CAPACITY);
+        blockSize[i] = 0;
+        blockCapacity[i] = FIRST_BLOCK_CAPACITY;
+        states++;
+        return i;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @Override
+    public int actionCount(int slot) {
+        return blockSize[slot];
+    }
+
+    // スロットの i 番目の手のキー (0..0xFFFF)
+    @Override
+    public int moveAt(int slot, int i) {
+        return moves[blockStart[slot] + i] & 0xFFFF;
+    }
+
+    @Override
+    public float valueAt(int slot, int i) {
+        return values[blockStart[slot] + i];
+    }
+
+    // スロットの局面での手 move の Q 値 (なければ defaultValue)
+    @Override
+    public float get(int slot, int move, float defaultValue) {
+        int start = blockStart[slot];
+        int end = start + blockSize[slot];
+        short m = (short) move;
+        for (int i = start; i < end; i++) {
+            if (moves[i] == m) return values[i];
+        }
+        return defaultValue;
+    }
+
+    // スロットの局面での手 move の Q 値を value にする (スロットは変わらない)
+    public void put(int slot, int move, float value) {
+        if (move < 0 || move > 0xFFFF) {
+            throw new IllegalArgumentException("手のキーは 16bit までです: " + move);
+        }
+        int start = blockStart[slot];
+        int size = blockSize[slot];
+        short m = (short) move;
+        for (int i = start; i < start + size; i++) {
+            if (moves[i] == m) {
+                values[i] = value;
+                return;
+            }
+        }
+        if (size == blockCapacity[slot]) {
+            int capacity = Math.min(size * 2, Short.MAX_VALUE);
+            if (capacity == size) {
+                throw new IllegalStateException("1 つの局面の手が多すぎます: " + size);
+            }
+            int moved = allocate(capacity);
+            System.arraycopy(moves, start, moves, moved, size);
+            System.arraycopy(values, start, values, moved, size);
+            start = moved;
+            blockStart[slot] = moved;
+            blockCapacity[slot] = (short) capacity;
+        }
+        moves[start + size] = m;
+        values[start + size] = value;
+        blockSize[slot] = (short) (size + 1);
+    }
+
+    // 局面の数
+    @Override
+    public int size() {
+        return states;
+    }
+
+    // 全ての局面の手の数の合計
+    public long actionCount() {
+        long count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) count += blockSize[i];
+        }
+        return count;
+    }
+
+    // 配列が使っているおおよそのバイト数
+    public long memoryBytes() {
+        return keys.length * (8L + 4 + 2 + 2) + moves.length * (2L + 4);
+    }
+
+    // スロットの番号の上限 (keyAt が EMPTY でないスロットを 0..slotCount()-1 から探して全ての局面をたどれる)
+    public int slotCount() {
+        return keys.length;
+    }
+
+    public boolean isUsed(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    // slot の局面とその全ての手を target に写す
+    public void copySlotTo(int slot, QTable target) {
+        int targetSlot = target.findOrInsert(keys[slot]);
+        for (int i = 0; i < blockSize[slot]; i++) {
+            target.put(targetSlot, moveAt(slot, i), valueAt(slot, i));
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        states = 0;
+        used = 0;
+    }
+
+    private int allocate(int capacity) {
+        if (used + capacity > moves.length) {
+            int grown = Math.max(used + capacity, moves.length + (moves.length >> 1));
+            moves = Arrays.copyOf(moves, grown);
+            values = Arrays.copyOf(values, grown);
+        }
+        int start = used;
+        used += capacity;
+        return start;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldStart = blockStart;
+        short[] oldSize = blockSize;
+        short[] oldCapacity = blockCapacity;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        blockStart = new int[capacity];
+        blockSize = new short[capacity];
+        blockCapacity = new short[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key == EMPTY) continue;
+            int i = index(key, mask);
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            blockStart[i] = oldStart[j];
+            blockSize[i] = oldSize[j];
+            blockCapacity[i] = oldCapacity[j];
+        }
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
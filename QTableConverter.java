@@ -0,0 +1,39 @@
+import java.io.IOException;
+
+/**
+ * 古い形式 (Java の直列化) の Q テーブルを、局面のキーを左右反転の正規形にまとめて MappedQTable の形式に変換する。
+ *
+ * <pre>
+ * java QTableConverter [元のファイル (qtable.dat)] [変換後のファイル (qtable.qtb)]
+ * </pre>
+ */
+public class QTableConverter {
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "qtable.dat";
+        String target = args.length > 1 ? args[1] : "qtable.qtb";
+
+        long start = System.nanoTime();
+        QTable table = QLearn.canonicalize(QLearn.readSerializedQTable(source));
+        MappedQTable.write(table, target);
+
+        // 書き出したファイルを開き直して、全ての Q 値が同じかを確かめる
+        MappedQTable mapped = MappedQTable.open(target);
+        long mismatches = 0;
+        for (int slot = 0; slot < table.slotCount(); slot++) {
+            if (!table.isUsed(slot)) continue;
+            int mappedSlot = mapped.find(table.keyAt(slot));
+            for (int i = 0; i < table.actionCount(slot); i++) {
+                float value = table.valueAt(slot, i);
+                if (mappedSlot < 0 || Float.compare(mapped.get(mappedSlot, table.moveAt(slot, i), Float.NaN), value) != 0) {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println(source + " -> " + target + ": " + mapped.size() + " 局面, " + mapped.actionCount() + " 手, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        if (mismatches > 0) {
+            System.out.println("一致しない Q 値が " + mismatches + " 個あります");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Q 値の読み出し (QTable とファイルを直接読む MappedQTable で共通)。
+ * find で局面のスロットを探し、そのスロットで手ごとの Q 値を読む。
+ */
+public interface QValues {
+    // 局面 state のスロット。なければ -1
+    int find(long state);
+
+    int actionCount(int slot);
+
+    // スロットの i 番目の手のキー (0..0xFFFF)
+    int moveAt(int slot, int i);
+
+    float valueAt(int slot, int i);
+
+    // スロットの局面での手 move の Q 値 (なければ defaultValue)
+    float get(int slot, int move, float defaultValue);
+
+    // 局面の数
+    int size();
+}
@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Game.runSimulations の集計結果。
+ * 複数のスレッドが同時に記録してもよいように、全て LongAdder / LongAccumulator で数える (ロックは使わない)。
+ * 先手 (PLAYER1) が PlayerA、後手 (PLAYER2) が PlayerB。
+ */
+public class SimulationStats {
+    private final LongAdder player1Wins = new LongAdder();
+    private final LongAdder player2Wins = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+
+    // 1 局の手数
+    private final LongAdder totalPlies = new LongAdder();
+    private final LongAccumulator minPlies = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxPlies = new LongAccumulator(Math::max, 0);
+
+    // 手番ごとの思考時間の合計 (ナノ秒) と手の数。添字は Position.ownerIndex
+    private final LongAdder[] thinkNanos = {new LongAdder(), new LongAdder()};
+    private final LongAdder[] thinkMoves = {new LongAdder(), new LongAdder()};
+    private final LongAccumulator[] maxThinkNanos = {
+        new LongAccumulator(Math::max, 0), new LongAccumulator(Math::max, 0)
+    };
+
+    // 1 局の結果を記録する (winner が null なら引き分け)
+    public void recordGame(PlayerType winner, int plies) {
+        if (winner == PlayerType.PLAYER1) {
+            player1Wins.increment();
+        } else if (winner == PlayerType.PLAYER2) {
+            player2Wins.increment();
+        } else {
+            draws.increment();
+        }
+        totalPlies.add(plies);
+        minPlies.accumulate(plies);
+        maxPlies.accumulate(plies);
+    }
+
+    // side が 1 手考えるのにかかった時間を記録する
+    public void recordThinkTime(PlayerType side, long nanos) {
+        int owner = Position.ownerIndex(side);
+        thinkNanos[owner].add(nanos);
+        thinkMoves[owner].increment();
+        maxThinkNanos[owner].accumulate(nanos);
+    }
+
+    public long getPlayer1Wins() {
+        return player1Wins.sum();
+    }
+
+    public long getPlayer2Wins() {
+        return player2Wins.sum();
+    }
+
+    public long getDraws() {
+        return draws.sum();
+    }
+
+    public long getGames() {
+        return getPlayer1Wins() + getPlayer2Wins() + getDraws();
+    }
+
+    public long getTotalPlies() {
+        return totalPlies.sum();
+    }
+
+    public long getMinPlies() {
+        return getGames() == 0 ? 0 : minPlies.get();
+    }
+
+    public long getMaxPlies() {
+        return maxPlies.get();
+    }
+
+    public double getAveragePlies() {
+        long games = getGames();
+        return games == 0 ? 0 : (double) getTotalPlies() / games;
+    }
+
+    // side の思考時間の合計 (ナノ秒)
+    public long getThinkNanos(PlayerType side) {
+        return thinkNanos[Position.ownerIndex(side)].sum();
+    }
+
+    public long getThinkMoves(PlayerType side) {
+        return thinkMoves[Position.ownerIndex(side)].sum();
+    }
+
+    public long getMaxThinkNanos(PlayerType side) {
+        return maxThinkNanos[Position.ownerIndex(side)].get();
+    }
+
+    // side の 1 手あたりの平均思考時間 (ミリ秒)
+    public double getAverageThinkMillis(PlayerType side) {
+        long moves = getThinkMoves(side);
+        return moves == 0 ? 0 : getThinkNanos(side) / 1_000_000.0 / moves;
+    }
+
+    public void print() {
+        System.out.println("--- シミュレーション結果 ---");
+        System.out.println("PlayerAの勝利数: " + getPlayer1Wins());
+        System.out.println("PlayerBの勝利数: " + getPlayer2Wins());
+        System.out.println("引き分け数: " + getDraws());
+        System.out.println(String.format("手数: 平均 %.1f, 最短 %d, 最長 %d", getAveragePlies(), getMinPlies(), getMaxPlies()));
+        for (PlayerType side : PlayerType.values()) {
+            System.out.println(String.format("%s の思考時間: %d 手, 平均 %.2f ms, 最長 %.2f ms",
+                    side == PlayerType.PLAYER1 ? "PlayerA" : "PlayerB", getThinkMoves(side),
+                    getAverageThinkMillis(side), getMaxThinkNanos(side) / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * 複数のスレッドから使える Q テーブル。
+ * 局面のキーで QTable を選ぶロックストライピングで、選んだ QTable 自身をロックにして使う。
+ *
+ * <pre>
+ * QTable table = striped.stripe(state);
+ * synchronized (table) {
+ *     int slot = table.find(state);
+ *     ...
+ * }
+ * </pre>
+ *
+ * 1 つの局面の読み書きはロックの中で完結するが、別々の局面をまたぐ更新 (Q 学習の次の局面の最大値など) は
+ * 他のスレッドの更新と入り混じってもよいものとして扱う。
+ */
+public class StripedQTable {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final QTable[] stripes;
+    private final int mask;
+
+    public StripedQTable() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedQTable(int stripeCount) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount) * 2 - 1);
+        stripes = new QTable[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new QTable();
+        }
+        mask = n - 1;
+    }
+
+    // table の内容を写した StripedQTable を作る
+    public static StripedQTable of(QTable table) {
+        StripedQTable striped = new StripedQTable();
+        for (int slot = 0; slot < table.slotCount(); slot++) {
+            if (!table.isUsed(slot)) continue;
+            QTable stripe = striped.stripe(table.keyAt(slot));
+            table.copySlotTo(slot, stripe);
+        }
+        return striped;
+    }
+
+    // state の局面を受け持つ QTable (使うときはこれをロックする)
+    public QTable stripe(long state) {
+        long h = state * 0xC2B2AE3D27D4EB4FL;
+        return stripes[(int) (h >>> 40) & mask];
+    }
+
+    // 全ての局面を 1 つの QTable に写す (保存用)
+    public QTable toQTable() {
+        QTable merged = new QTable(size());
+        for (QTable stripe : stripes) {
+            synchronized (stripe) {
+                for (int slot = 0; slot < stripe.slotCount(); slot++) {
+                    if (stripe.isUsed(slot)) {
+                        stripe.copySlotTo(slot, merged);
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    public int size() {
+        int size = 0;
+        for (QTable stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long actionCount() {
+        long count = 0;
+        for (QTable stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.actionCount();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * 盤面の左右対称 (列 c と列 2 - c の入れ替え) を扱う。
+ * どうぶつしょうぎのルールは左右対称なので、左右を反転した局面は同じ価値を持ち、反転した手が同じ意味の手になる。
+ * 局面をキーにする表 (QLearn の Q テーブルや置換表) は、局面とその反転のうち決まった方 (正規形) だけを
+ * 入れるようにすると、同じ大きさで 2 倍近くの局面を覚えられる。
+ *
+ * 正規形はキーの小さい方とする。反転した方が正規形だった (isMirrored) ときは、表に入れる手も反転し、
+ * 表から取り出した手も反転して元の向きに戻す (orient)。左右対称な局面ではキーが同じになり、反転しない。
+ */
+public final class Symmetry {
+    private Symmetry() {}
+
+    // マス sq を左右反転したマス
+    public static int mirrorSquare(int sq) {
+        return sq + Board.COLS - 1 - 2 * (sq % Board.COLS);
+    }
+
+    // マスの集合 (Position のビットボード) を左右反転する
+    public static int mirrorBitboard(int bb) {
+        return (bb & ~(Position.COL_0 | Position.COL_2)) | (bb & Position.COL_0) << 2 | (bb & Position.COL_2) >>> 2;
+    }
+
+    // Move の形式の手を左右反転する (Move.NONE はそのまま)
+    public static int mirrorMove(int move) {
+        if (move == Move.NONE) return move;
+        int mirrored = (move & ~0xFF) | mirrorSquare(Move.to(move));
+        if (!Move.isDrop(move)) {
+            mirrored |= mirrorSquare(Move.from(move)) << 4;
+        }
+        return mirrored;
+    }
+
+    // mirrored なら手を反転する (正規形の表に入れるとき・表から出すときに使う)
+    public static int orient(int move, boolean mirrored) {
+        return mirrored ? mirrorMove(move) : move;
+    }
+
+    // 局面を左右反転した新しい Position
+    public static Position mirror(Position position) {
+        Position mirrored = new Position();
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            int owner = position.ownerAt(sq);
+            if (owner >= 0) {
+                mirrored.put(owner, position.kindAt(sq), position.isPromoted(sq), mirrorSquare(sq));
+            }
+        }
+        for (int owner = 0; owner < 2; owner++) {
+            for (int kind = 0; kind < Position.KIND_COUNT; kind++) {
+                mirrored.setHandCount(owner, kind, position.getHandCount(owner, kind));
+            }
+        }
+        mirrored.setSideToMove(position.getSideToMove());
+        return mirrored;
+    }
+
+    // 局面のキー key とその反転 mirroredKey から、正規形のキー
+    public static long canonicalKey(long key, long mirroredKey) {
+        return Math.min(key, mirroredKey);
+    }
+
+    // 反転した方が正規形か
+    public static boolean isMirrored(long key, long mirroredKey) {
+        return mirroredKey < key;
+    }
+}
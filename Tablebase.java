@@ -0,0 +1,268 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * TablebaseGenerator が作った局面データベースを MappedByteBuffer で開き、局面の勝敗と決着までの手数を引く。
+ * 表はオープンアドレス法のハッシュ表をそのままファイルにしたものなので、1 局面の参照は O(1) (数回のメモリ参照) で済む。
+ *
+ * <pre>
+ * ファイルの形式 (ビッグエンディアン)
+ *   int   MAGIC ("DTBL")
+ *   int   VERSION
+ *   long  スロットの数 (2 のべき)
+ *   long  局面の数
+ *   int   最長の決着までの手数
+ *   int   (予備)
+ *   long  スロット x スロットの数  (0 は空き。局面のキー 53bit &lt;&lt; 11 | 値 11bit)
+ * </pre>
+ *
+ * 局面のキーは盤面 (マスごとに 11 通り)・両者の手駒 (種類ごとに 0..2 枚)・手番を 1 つの整数にしたもので、
+ * 左右反転した局面とは小さい方のキー (Symmetry の正規形) を共有する。
+ * 値は手番から見た結果 (DRAW / WIN / LOSS) と、互いに最善を尽くしたときの決着までの手数 (plies)。
+ * 千日手と手数の上限は考えないので、DRAW はどちらも勝ちを強制できない局面を表す。
+ */
+public class Tablebase {
+    public static final int MAGIC = 0x4454424C; // "DTBL"
+    public static final int VERSION = 1;
+    public static final String DEFAULT_FILE = "tablebase.dtb";
+    static final int HEADER_BYTES = 32;
+
+    // 手番から見た結果
+    public static final int DRAW = 0; // 生成中は「まだわからない」の意味でも使う
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+
+    static final int VALUE_BITS = 11;
+    static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+    public static final int MAX_DISTANCE = VALUE_MASK >>> 2;
+
+    // 盤上のマスの状態の数 (空き + 持ち主 2 x 種類 5) と、手駒の組み合わせの数 (3 種類 x 2 人、0..2 枚)
+    private static final int SQUARE_STATES = 11;
+    private static final int HAND_STATES = 729;
+    private static final int MAX_HAND = 2;
+
+    // 大きなファイルは 1GB ごとに分けてマップする
+    private static final int SEGMENT_SHIFT = 27; // スロット数
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long slotCount;
+    private final long mask;
+    private final long positions;
+    private final int maxDistance;
+
+    private Tablebase(MappedByteBuffer[] segments, long slotCount, long positions, int maxDistance) {
+        this.segments = segments;
+        this.slotCount = slotCount;
+        this.mask = slotCount - 1;
+        this.positions = positions;
+        this.maxDistance = maxDistance;
+    }
+
+    // filename のデータベースを開く
+    public static Tablebase open(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            if (file.readInt() != MAGIC) {
+                throw new IOException("局面データベースのファイルではありません: " + filename);
+            }
+            int version = file.readInt();
+            if (version != VERSION) {
+                throw new IOException("対応していない局面データベースの版です: " + version);
+            }
+            long slotCount = file.readLong();
+            long positions = file.readLong();
+            int maxDistance = file.readInt();
+            if (Long.bitCount(slotCount) != 1 || channel.size() < HEADER_BYTES + slotCount * 8) {
+                throw new IOException("局面データベースのファイルが壊れています: " + filename);
+            }
+            int count = (int) ((slotCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long slots = Math.min(slotCount - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * 8, slots * 8);
+            }
+            return new Tablebase(segments, slotCount, positions, maxDistance);
+        }
+    }
+
+    // filename があれば開き、なければ null (開けなかったときも null を返し、理由を表示する)
+    public static Tablebase openIfExists(String filename) {
+        if (!new File(filename).isFile()) return null;
+        try {
+            Tablebase tablebase = open(filename);
+            System.out.println("局面データベースを読み込みました。(" + tablebase.size() + " 局面)");
+            return tablebase;
+        } catch (IOException e) {
+            System.out.println("局面データベースを開けませんでした: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 局面の値を引きます。
+     * @return 値 (result, distance で取り出す)。データベースにない局面なら -1
+     */
+    public int probe(Position position) {
+        long key = key(position);
+        for (long i = index(key, mask); ; i = (i + 1) & mask) {
+            long slot = slot(i);
+            if (slot == 0) return -1;
+            if (slot >>> VALUE_BITS == key) return (int) (slot & VALUE_MASK);
+        }
+    }
+
+    /**
+     * game の手番のプレイヤーの最善手を探索なしで求めます。
+     * 勝ちの局面では最短で勝つ手、負けの局面では最も長く粘る手、引き分けの局面では負けない手を選びます。
+     * @return Player.chooseMove と同じ形式の手。局面がデータベースにないときは null
+     */
+    public int[] bestMove(Game game) {
+        if (probe(game.toPosition()) < 0) return null;
+        Game copy = game.clone(); // 試しに指して isGameOver を見るので、表示をしない複製の上で行う
+        copy.setSilentMode(true);
+        Player mover = copy.getCurrentPlayer();
+        MoveList moves = new MoveList();
+        copy.generateLegalMoves(mover.getPlayerType(), moves);
+
+        int bestMove = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long undoToken = copy.doMove(move);
+            PlayerType winner = copy.isGameOver();
+            int score;
+            if (winner != null) {
+                score = winner == mover.getPlayerType() ? score(LOSS, 0) : score(WIN, 0);
+            } else {
+                int value = probe(copy.toPosition());
+                score = value < 0 ? 0 : score(result(value), distance(value));
+            }
+            copy.undoMove(undoToken);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return bestMove == Move.NONE ? null : Move.toArray(bestMove, game.getCurrentPlayer().getCapturedPieces());
+    }
+
+    // 相手の手番の局面の値 (result, distance) を、そこへ指す側から見た点数にする (大きいほど良い)
+    private static int score(int childResult, int childDistance) {
+        switch (childResult) {
+            case LOSS:
+                return 1_000_000 - childDistance; // 相手の負け: 早く決着する方が良い
+            case WIN:
+                return -1_000_000 + childDistance; // 相手の勝ち: 長く粘る方が良い
+            default:
+                return 0;
+        }
+    }
+
+    public long size() {
+        return positions;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public long slotCount() {
+        return slotCount;
+    }
+
+    private long slot(long i) {
+        return segments[(int) (i >>> SEGMENT_SHIFT)].getLong((int) (i & SEGMENT_MASK) << 3);
+    }
+
+    // ---------------- 値 ----------------
+
+    public static int result(int value) {
+        return value & 0x3;
+    }
+
+    public static int distance(int value) {
+        return value >>> 2;
+    }
+
+    static int value(int result, int distance) {
+        if (distance > MAX_DISTANCE) {
+            throw new IllegalStateException("決着までの手数が大きすぎます: " + distance);
+        }
+        return distance << 2 | result;
+    }
+
+    // ---------------- 局面のキー ----------------
+
+    /**
+     * 局面のキー (左右反転の正規形)。ライオンが盤上にいるので 0 にはならない。
+     * 手駒は種類ごとに 2 枚までしか表せない (どうぶつしょうぎでは同じ種類の駒は 2 枚しかない)。
+     */
+    public static long key(Position position) {
+        long board = 0;
+        long mirrored = 0;
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                board = board * SQUARE_STATES + squareCode(position, Position.square(r, c));
+                mirrored = mirrored * SQUARE_STATES + squareCode(position, Position.square(r, Board.COLS - 1 - c));
+            }
+        }
+        long hands = 0;
+        for (int owner = 0; owner < 2; owner++) {
+            for (int kind = Position.KIRIN; kind <= Position.HIYOKO; kind++) {
+                int count = position.getHandCount(owner, kind);
+                if (count > MAX_HAND) {
+                    throw new IllegalArgumentException("手駒が多すぎます: " + position.toText());
+                }
+                hands = hands * (MAX_HAND + 1) + count;
+            }
+        }
+        return (Symmetry.canonicalKey(board, mirrored) * HAND_STATES + hands) << 1 | position.getSideToMove();
+    }
+
+    // key の局面 (正規形の向き) を作る
+    public static Position decode(long key) {
+        Position position = new Position();
+        position.setSideToMove((int) (key & 1));
+        key >>>= 1;
+        long hands = key % HAND_STATES;
+        long board = key / HAND_STATES;
+        for (int owner = 1; owner >= 0; owner--) {
+            for (int kind = Position.HIYOKO; kind >= Position.KIRIN; kind--) {
+                position.setHandCount(owner, kind, (int) (hands % (MAX_HAND + 1)));
+                hands /= MAX_HAND + 1;
+            }
+        }
+        for (int sq = Position.SQUARES - 1; sq >= 0; sq--) {
+            int code = (int) (board % SQUARE_STATES);
+            board /= SQUARE_STATES;
+            if (code == 0) continue;
+            int owner = (code - 1) / 5;
+            int type = (code - 1) % 5;
+            if (type == Position.NIWATORI) {
+                position.put(owner, Position.HIYOKO, true, sq);
+            } else {
+                position.put(owner, type, false, sq);
+            }
+        }
+        return position;
+    }
+
+    // マスの状態: 0 = 空き、1 + 持ち主 * 5 + 種類 (にわとりは NIWATORI)
+    private static int squareCode(Position position, int sq) {
+        int owner = position.ownerAt(sq);
+        if (owner < 0) return 0;
+        int kind = position.kindAt(sq);
+        int type = kind == Position.HIYOKO && position.isPromoted(sq) ? Position.NIWATORI : kind;
+        return 1 + owner * 5 + type;
+    }
+
+    static long index(long key, long mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 29)) & mask;
+    }
+}
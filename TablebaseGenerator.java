@@ -0,0 +1,405 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tablebase のファイルを作る (オフラインで 1 回だけ動かす)。
+ *
+ * <pre>
+ * java TablebaseGenerator [-position "KLZ/1H1/1h1/zlk 1 -"] [-threads N] [-slots 2 のべき] [-output tablebase.dtb]
+ * </pre>
+ *
+ * 1. 列挙: 開始局面から指せる全ての局面を幅優先でたどり、ハッシュ表 (スロット = Tablebase と同じ形式) に入れる。
+ *    決着した局面 (Game.isGameOver が勝者を返す局面) はその先をたどらず、表にも入れない。
+ * 2. 後退解析: 手数 n = 1, 2, ... の順に、まだ決まっていない局面を全て見直す。
+ *    手数 n - 1 で負ける局面へ指せれば手数 n の勝ち、全ての手が勝たれる局面へ進み、その最長が n - 1 なら手数 n の負け。
+ *    1 回の見直しでは手数 n - 1 以下の値だけを読み、自分のスロットだけを書くので、スロットを分けて並列に進められる。
+ *    新しく決まる局面がなくなったら終わり、残りは引き分け。
+ *
+ * 手の生成と決着の判定は Position の上で行い、Game.generateLegalMoves と Game.isGameOver に合わせてある
+ * (王手を放置する手は指せない、ひよこは敵陣の奥で成る、打つ手では成らない、合法手がなければ負け)。
+ * 開始局面から全ての駒をたどるので、本将棋の初期局面から作ると数千万局面になる。
+ * 駒の少ない局面から始めれば、その局面から先だけのデータベースになる。
+ */
+public class TablebaseGenerator {
+    private static final int CHUNK = 1 << 14;       // 並列に処理する単位 (局面またはスロットの数)
+    private static final int MAX_CHILDREN = 128;     // 1 局面の合法手の数の上限
+    private static final double MAX_LOAD = 0.75;
+
+    // 子の局面の決着 (指した側から見て)
+    private static final int NONE = 0;
+    private static final int MOVER_WINS = 1;
+    private static final int MOVER_LOSES = 2;
+
+    private final AtomicLongArray slots;
+    private final long mask;
+    private final AtomicLong positions = new AtomicLong();
+    private final ForkJoinPool pool;
+    private int maxDistance;
+
+    public TablebaseGenerator(int slotBits, int threads) {
+        if (slotBits < 4 || slotBits > 30) {
+            throw new IllegalArgumentException("スロットの数は 2^4 から 2^30 までです: 2^" + slotBits);
+        }
+        slots = new AtomicLongArray(1 << slotBits);
+        mask = (1L << slotBits) - 1;
+        pool = new ForkJoinPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String position = Perft.INITIAL;
+        String output = Tablebase.DEFAULT_FILE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int slotBits = 27;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-position":
+                    position = args[++i];
+                    break;
+                case "-threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "-slots":
+                    slotBits = 63 - Long.numberOfLeadingZeros(Long.parseLong(args[++i]));
+                    break;
+                case "-output":
+                    output = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("不明な引数です: " + args[i]);
+            }
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(slotBits, threads);
+        try {
+            long start = System.nanoTime();
+            long count = generator.enumerate(Position.parse(position));
+            System.out.println(String.format("列挙: %d 局面, %.1f 秒", count, (System.nanoTime() - start) / 1e9));
+            start = System.nanoTime();
+            generator.solve();
+            System.out.println(String.format("後退解析: 最長 %d 手, %.1f 秒", generator.maxDistance, (System.nanoTime() - start) / 1e9));
+            generator.write(output);
+            System.out.println(output + " に保存しました。(" + threads + " スレッド)");
+        } finally {
+            generator.pool.shutdown();
+        }
+    }
+
+    /**
+     * root から指せる全ての局面 (決着した局面を除く) を表に入れます。
+     * @return 表に入れた局面の数
+     */
+    public long enumerate(Position root) {
+        Expander expander = new Expander();
+        expander.position = root.clone();
+        if (expander.outcome(1 - root.getSideToMove()) != NONE) {
+            return 0; // 開始局面で決着している
+        }
+        long rootKey = Tablebase.key(root);
+        insert(rootKey);
+        long[] frontier = {rootKey};
+        int depth = 0;
+        while (frontier.length > 0) {
+            long[] current = frontier;
+            List<Callable<long[]>> tasks = new ArrayList<>();
+            for (int from = 0; from < current.length; from += CHUNK) {
+                int start = from;
+                int end = Math.min(current.length, from + CHUNK);
+                tasks.add(() -> expand(current, start, end));
+            }
+            frontier = concat(invokeAll(tasks));
+            depth++;
+            System.out.println("  深さ " + depth + ": " + frontier.length + " 局面 (計 " + positions.get() + ")");
+        }
+        return positions.get();
+    }
+
+    // frontier[start..end) の局面の子のうち、新しく表に入れたものを返す
+    private long[] expand(long[] frontier, int start, int end) {
+        Expander expander = new Expander();
+        long[] found = new long[64];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            int count = expander.children(frontier[i]);
+            for (int j = 0; j < count; j++) {
+                if (expander.outcomes[j] == NONE && insert(expander.keys[j])) {
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = expander.keys[j];
+                }
+            }
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    /**
+     * 表の全ての局面の勝敗と手数を決めます。
+     * @return 最長の決着までの手数
+     */
+    public int solve() {
+        long solved = runPass(0);
+        System.out.println("  手数 0: " + solved + " 局面");
+        for (int n = 1; ; n++) {
+            long count = runPass(n);
+            if (count == 0) break;
+            solved += count;
+            maxDistance = n;
+            System.out.println("  手数 " + n + ": " + count + " 局面 (計 " + solved + ")");
+        }
+        System.out.println("  引き分け: " + (positions.get() - solved) + " 局面");
+        return maxDistance;
+    }
+
+    // 手数 n の局面を決める。決めた局面の数を返す
+    private long runPass(int n) {
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (long from = 0; from <= mask; from += CHUNK) {
+            long start = from;
+            long end = Math.min(mask + 1, from + CHUNK);
+            tasks.add(() -> new long[] {pass(n, start, end)});
+        }
+        long count = 0;
+        for (long[] result : invokeAll(tasks)) {
+            count += result[0];
+        }
+        return count;
+    }
+
+    private long pass(int n, long start, long end) {
+        Expander expander = new Expander();
+        long count = 0;
+        for (long i = start; i < end; i++) {
+            long slot = slots.get((int) i);
+            if (slot == 0 || Tablebase.result((int) (slot & Tablebase.VALUE_MASK)) != Tablebase.DRAW) continue;
+            long key = slot >>> Tablebase.VALUE_BITS;
+            int childCount = expander.children(key);
+            int value = -1;
+            if (n == 0) {
+                if (childCount == 0) value = Tablebase.value(Tablebase.LOSS, 0); // 合法手がなければ負け
+            } else {
+                value = evaluate(expander, childCount, n);
+            }
+            if (value >= 0) {
+                slots.set((int) i, key << Tablebase.VALUE_BITS | value);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // 子の値から、手数 n で決まるならその値、決まらなければ -1
+    private int evaluate(Expander expander, int childCount, int n) {
+        boolean allLose = true; // 全ての手で相手が勝つ
+        int longest = -1;
+        for (int j = 0; j < childCount; j++) {
+            int result;
+            int distance = 0;
+            if (expander.outcomes[j] == MOVER_WINS) {
+                result = Tablebase.LOSS;
+            } else if (expander.outcomes[j] == MOVER_LOSES) {
+                result = Tablebase.WIN;
+            } else {
+                int value = lookup(expander.keys[j]);
+                result = Tablebase.result(value);
+                distance = Tablebase.distance(value);
+                if (distance >= n) result = Tablebase.DRAW; // この回に決まった値はまだ使わない
+            }
+            if (result == Tablebase.LOSS && distance == n - 1) {
+                return Tablebase.value(Tablebase.WIN, n);
+            }
+            if (result != Tablebase.WIN) {
+                allLose = false;
+            } else {
+                longest = Math.max(longest, distance);
+            }
+        }
+        return allLose && longest == n - 1 ? Tablebase.value(Tablebase.LOSS, n) : -1;
+    }
+
+    // 局面 key を表に入れる。新しく入れたら true
+    private boolean insert(long key) {
+        long entry = key << Tablebase.VALUE_BITS;
+        for (long i = Tablebase.index(key, mask); ; i = (i + 1) & mask) {
+            long slot = slots.get((int) i);
+            if (slot == 0) {
+                if (!slots.compareAndSet((int) i, 0, entry)) {
+                    i = (i - 1) & mask; // 他のスレッドが先に入れたので同じスロットを見直す
+                    continue;
+                }
+                if (positions.incrementAndGet() > (mask + 1) * MAX_LOAD) {
+                    throw new IllegalStateException("表がいっぱいです。-slots を大きくしてください: " + (mask + 1));
+                }
+                return true;
+            }
+            if (slot >>> Tablebase.VALUE_BITS == key) return false;
+        }
+    }
+
+    // 局面 key の値 (表にあるはずの局面)
+    private int lookup(long key) {
+        for (long i = Tablebase.index(key, mask); ; i = (i + 1) & mask) {
+            long slot = slots.get((int) i);
+            if (slot == 0) {
+                throw new IllegalStateException("列挙していない局面です: " + Tablebase.decode(key).toText());
+            }
+            if (slot >>> Tablebase.VALUE_BITS == key) return (int) (slot & Tablebase.VALUE_MASK);
+        }
+    }
+
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeLong(mask + 1);
+            out.writeLong(positions.get());
+            out.writeInt(maxDistance);
+            out.writeInt(0);
+            for (long i = 0; i <= mask; i++) {
+                out.writeLong(slots.get((int) i));
+            }
+        }
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("局面データベースの作成が中断されました", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private static long[] concat(List<long[]> parts) {
+        int total = 0;
+        for (long[] part : parts) total += part.length;
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, n, part.length);
+            n += part.length;
+        }
+        return all;
+    }
+
+    /**
+     * 1 つのスレッドで使う手の生成器。Position を 1 つ持ち、指して戻すことで子の局面のキーと決着を求める。
+     */
+    static class Expander {
+        Position position;
+        final long[] keys = new long[MAX_CHILDREN];
+        final int[] outcomes = new int[MAX_CHILDREN];
+        private int count;
+
+        // 局面 key の手番の全ての合法手の子を keys / outcomes に入れ、その数を返す
+        int children(long key) {
+            position = Tablebase.decode(key);
+            count = 0;
+            generate(position.getSideToMove(), true);
+            return count;
+        }
+
+        // owner の合法手を生成する。record なら子を記録し、そうでなければ合法手が 1 つでもあれば true を返す
+        private boolean generate(int owner, boolean record) {
+            Position p = position;
+            int opponent = 1 - owner;
+            int sideToMove = p.getSideToMove();
+            for (int pieces = p.getOccupied(owner); pieces != 0; pieces &= pieces - 1) {
+                int from = Integer.numberOfTrailingZeros(pieces);
+                int kind = p.kindAt(from);
+                boolean promoted = p.isPromoted(from);
+                for (int targets = p.movesFrom(from); targets != 0; targets &= targets - 1) {
+                    int to = Integer.numberOfTrailingZeros(targets);
+                    int capturedKind = p.kindAt(to);
+                    boolean capturedPromoted = p.isPromoted(to);
+                    if (capturedKind >= 0) {
+                        p.remove(to);
+                        p.setHandCount(owner, capturedKind, p.getHandCount(owner, capturedKind) + 1);
+                    }
+                    p.remove(from);
+                    boolean promotes = kind == Position.HIYOKO && Position.rowOf(to) == (owner == 0 ? Board.ROWS - 1 : 0);
+                    p.put(owner, kind, promoted || promotes, to);
+                    p.setSideToMove(opponent);
+
+                    boolean legal = !p.isInCheck(owner);
+                    if (legal && record) {
+                        add(capturedKind == Position.LION ? MOVER_WINS : outcome(owner));
+                    }
+
+                    p.setSideToMove(sideToMove);
+                    p.remove(to);
+                    p.put(owner, kind, promoted, from);
+                    if (capturedKind >= 0) {
+                        p.setHandCount(owner, capturedKind, p.getHandCount(owner, capturedKind) - 1);
+                        p.put(opponent, capturedKind, capturedPromoted, to);
+                    }
+                    if (legal && !record) return true;
+                }
+            }
+            for (int kind = Position.KIRIN; kind <= Position.HIYOKO; kind++) {
+                int inHand = p.getHandCount(owner, kind);
+                if (inHand == 0) continue;
+                for (int targets = p.getEmpty(); targets != 0; targets &= targets - 1) {
+                    int to = Integer.numberOfTrailingZeros(targets);
+                    p.put(owner, kind, false, to);
+                    p.setHandCount(owner, kind, inHand - 1);
+                    p.setSideToMove(opponent);
+
+                    boolean legal = !p.isInCheck(owner);
+                    if (legal && record) {
+                        add(outcome(owner));
+                    }
+
+                    p.setSideToMove(sideToMove);
+                    p.setHandCount(owner, kind, inHand);
+                    p.remove(to);
+                    if (legal && !record) return true;
+                }
+            }
+            return false;
+        }
+
+        private void add(int outcome) {
+            // ライオンを取った局面はキーにできない (手駒にライオンは入らない) ので、決着だけを記録する
+            keys[count] = outcome == NONE ? Tablebase.key(position) : 0L;
+            outcomes[count] = outcome;
+            count++;
+        }
+
+        // mover が指した直後の局面の決着 (Game.isGameOver と同じ順に判定する)
+        int outcome(int mover) {
+            int winner = winner();
+            if (winner < 0) return NONE;
+            return winner == mover ? MOVER_WINS : MOVER_LOSES;
+        }
+
+        // 勝者の持ち主の番号 (決着していなければ -1)
+        private int winner() {
+            Position p = position;
+            if (p.isInCheck(0) && !generate(0, false)) return 1; // 詰み
+            if (p.isInCheck(1) && !generate(1, false)) return 0;
+            int lion0 = p.lionSquare(0);
+            int lion1 = p.lionSquare(1);
+            if (lion0 >= 0 && Position.rowOf(lion0) == Board.ROWS - 1 && !p.isInCheck(0)) return 0; // トライ
+            if (lion1 >= 0 && Position.rowOf(lion1) == 0 && !p.isInCheck(1)) return 1;
+            if (lion0 < 0) return 1; // ライオンを取られた
+            if (lion1 < 0) return 0;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+/**
+ * 探索済みの局面を覚えておく置換表。
+ * 局面の Zobrist キーごとに、探索した深さ・評価値の種類 (bound)・評価値・最善手を 1 エントリ 16 バイトで持つ。
+ * 大きさは MB 単位で指定し、探索中に大きくなることはない。
+ *
+ * 2 エントリで 1 つのバケットとし、置き換えは次の方針で行う。
+ * <ul>
+ * <li>同じ局面がすでにあれば、そのエントリを上書きする (深さ優先側は浅い結果では上書きしない)</li>
+ * <li>1 つ目 (深さ優先): 空き、前の探索の残り、または今回の方が深いときだけ置き換える</li>
+ * <li>2 つ目 (常に置き換え): 1 つ目に入らなかった結果を入れる</li>
+ * </ul>
+ *
+ * キーは data と XOR して保存するので、複数のスレッドが同時に書き込んで
+ * key と data の組が崩れたエントリは probe で読み捨てられる (ロックは使わない)。
+ * 評価値はそれぞれのプレイヤーの探索での (自分から見た) 値のまま入れるので、評価関数や手番の違うプレイヤー同士では共有しないこと。
+ * 探索側は左右反転した局面を同じキー (Symmetry の正規形) で引き、最善手は正規形の向きで入れる。
+ */
+public class TranspositionTable {
+    public static final int DEFAULT_MEGABYTES = 16;
+
+    // 評価値の種類
+    public static final int EXACT = 1; // 正確な値
+    public static final int LOWER = 2; // 下限 (beta カットした値)
+    public static final int UPPER = 3; // 上限 (alpha を超えなかった値)
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int MAX_DEPTH = 0x7F;
+
+    // data のビット配置: 評価値 32bit / 最善手 17bit / 深さ 7bit / 種類 2bit / 世代 6bit
+    private static final int MOVE_SHIFT = 32;
+    private static final long MOVE_MASK = 0x1FFFF;
+    private static final int DEPTH_SHIFT = 49;
+    private static final int BOUND_SHIFT = 56;
+    private static final int AGE_SHIFT = 58;
+    private static final int AGE_MASK = 0x3F;
+
+    // バケットごとに [key ^ data, data, key ^ data, data]
+    private final long[] table;
+    private final int bucketMask;
+    private int age;
+
+    // 統計 (複数スレッドから使う場合はおおよその値)
+    private long probes;
+    private long hits;
+
+    public TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    public TranspositionTable(int megabytes) {
+        if (megabytes <= 0) {
+            throw new IllegalArgumentException("置換表の大きさは 1MB 以上にしてください: " + megabytes);
+        }
+        long entries = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+        long buckets = Long.highestOneBit(Math.max(1, Math.min(entries / 2, 1 << 28)));
+        table = new long[(int) buckets * 4];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * key の局面のエントリを探します。
+     * @return 見つかったエントリ (score, move, depth, bound で取り出す)。なければ 0
+     */
+    public long probe(long key) {
+        probes++;
+        int i = index(key);
+        long data = table[i + 1];
+        if ((table[i] ^ data) == key && data != 0) {
+            hits++;
+            return data;
+        }
+        data = table[i + 3];
+        if ((table[i + 2] ^ data) == key && data != 0) {
+            hits++;
+            return data;
+        }
+        return 0L;
+    }
+
+    /**
+     * 探索結果を保存します。
+     * @param key 局面のキー
+     * @param depth 残り深さ
+     * @param bound EXACT, LOWER, UPPER のいずれか
+     * @param score 評価値
+     * @param move 最善手 (Move の形式、なければ Move.NONE)
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        int i = index(key);
+        long old0 = table[i + 1];
+        long old1 = table[i + 3];
+        boolean same0 = (table[i] ^ old0) == key && old0 != 0;
+        boolean same1 = (table[i + 2] ^ old1) == key && old1 != 0;
+
+        // 最善手がわからないときは前回の最善手を残す
+        if (move == Move.NONE) {
+            if (same0) move = move(old0);
+            else if (same1) move = move(old1);
+        }
+        long data = pack(depth, bound, score, move);
+
+        int slot;
+        if (same0) {
+            if (depth < depth(old0) && age(old0) == age) return; // 深い結果を浅い結果で消さない
+            slot = i;
+        } else if (same1) {
+            slot = i + 2;
+        } else if (old0 == 0 || age(old0) != age || depth >= depth(old0)) {
+            slot = i;
+        } else {
+            slot = i + 2;
+        }
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    // 新しい探索 (chooseMove) を始めるときに呼ぶ。前の探索のエントリが置き換えられやすくなる
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        probes = 0;
+        hits = 0;
+    }
+
+    // エントリの数
+    public int capacity() {
+        return (bucketMask + 1) * 2;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    // ---------------- エントリの取り出し ----------------
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int move(long entry) {
+        return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK);
+    }
+
+    public static int depth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & MAX_DEPTH);
+    }
+
+    public static int bound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & 0x3);
+    }
+
+    // alpha-beta の探索窓 [alpha, beta] で、このエントリの値をそのまま返してよいか
+    public static boolean isUsable(long entry, int alpha, int beta) {
+        int score = score(entry);
+        switch (bound(entry)) {
+            case EXACT:
+                return true;
+            case LOWER:
+                return score >= beta;
+            case UPPER:
+                return score <= alpha;
+            default:
+                return false;
+        }
+    }
+
+    // alpha-beta で得た値の種類 (alpha, beta は探索を始めたときの窓)
+    public static int boundOf(int score, int alpha, int beta) {
+        if (score <= alpha) return UPPER;
+        if (score >= beta) return LOWER;
+        return EXACT;
+    }
+
+    private int age(long entry) {
+        return (int) ((entry >>> AGE_SHIFT) & AGE_MASK);
+    }
+
+    private long pack(int depth, int bound, int score, int move) {
+        depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+        return (score & 0xFFFFFFFFL)
+                | ((long) move & MOVE_MASK) << MOVE_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) age << AGE_SHIFT;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 2;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 局面の Zobrist ハッシュ用の乱数表。
+ * 盤上の駒 (持ち主・種類・成り・マス)、両者の手駒の枚数、手番をそれぞれ 64bit の乱数で表し、
+ * XOR の差分だけで局面のキーを更新できるようにする。
+ * 手駒は「k 枚目」ごとに乱数を持ち、枚数 n のときは 0..n-1 枚目の乱数をすべて XOR した値になる。
+ */
+public final class Zobrist {
+    private static final int TYPES = 5;      // LION, KIRIN, ZOU, HIYOKO, NIWATORI
+    private static final int MAX_HAND = 16;  // 手駒の枚数ごとの乱数の数
+
+    private static final long[] PIECE = new long[2 * TYPES * Position.SQUARES];
+    private static final long[] HAND = new long[2 * Position.KIND_COUNT * MAX_HAND];
+
+    // 後手 (PLAYER2) の手番のときに XOR する値
+    public static final long SIDE;
+
+    static {
+        // 実行ごとに同じキーになるよう固定のシードを使う
+        SplittableRandom random = new SplittableRandom(0x5EED_D0B5_7517_0001L);
+        for (int i = 0; i < PIECE.length; i++) {
+            PIECE[i] = random.nextLong();
+        }
+        for (int i = 0; i < HAND.length; i++) {
+            HAND[i] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    // 盤上の駒の乱数
+    public static long piece(int owner, int kind, boolean isPromoted, int sq) {
+        int type = (kind == Position.HIYOKO && isPromoted) ? Position.NIWATORI : kind;
+        return PIECE[(owner * TYPES + type) * Position.SQUARES + sq];
+    }
+
+    // 手駒の index 枚目 (0 始まり) の乱数
+    public static long hand(int owner, int kind, int index) {
+        return HAND[(owner * Position.KIND_COUNT + kind) * MAX_HAND + (index & (MAX_HAND - 1))];
+    }
+
+    // 手駒が n 枚のときの乱数 (0..n-1 枚目の XOR)
+    public static long handCount(int owner, int kind, int n) {
+        long key = 0L;
+        for (int i = 0; i < n; i++) {
+            key ^= hand(owner, kind, i);
+        }
+        return key;
+    }
+
+    // 局面のキーを最初から計算する
+    public static long compute(Position position) {
+        long key = 0L;
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            int owner = position.ownerAt(sq);
+            if (owner >= 0) {
+                key ^= piece(owner, position.kindAt(sq), position.isPromoted(sq), sq);
+            }
+        }
+        for (int owner = 0; owner < 2; owner++) {
+            for (int kind = 0; kind < Position.KIND_COUNT; kind++) {
+                key ^= handCount(owner, kind, position.getHandCount(owner, kind));
+            }
+        }
+        if (position.getSideToMove() == 1) {
+            key ^= SIDE;
+        }
+        return key;
+    }
+
+    // Board と手駒のリストから局面のキーを最初から計算する (Position を作らない版)
+    public static long compute(Board board, List<Piece> player1Hand, List<Piece> player2Hand, PlayerType sideToMove) {
+        long key = 0L;
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece != null) {
+                    key ^= piece(Position.ownerIndex(piece.getOwner()), piece.getKind(), piece.isPromoted(), Position.square(r, c));
+                }
+            }
+        }
+        key ^= handKey(0, player1Hand);
+        key ^= handKey(1, player2Hand);
+        if (sideToMove == PlayerType.PLAYER2) {
+            key ^= SIDE;
+        }
+        return key;
+    }
+
+    // board の局面のキー key から、盤上の駒だけを左右反転した局面のキーを求める (手駒と手番の乱数は反転しても同じ)
+    public static long mirror(long key, Board board) {
+        for (int r = 0; r < Board.ROWS; r++) {
+            for (int c = 0; c < Board.COLS; c++) {
+                Piece piece = board.getPiece(r, c);
+                if (piece == null || c == Board.COLS - 1 - c) continue;
+                int owner = Position.ownerIndex(piece.getOwner());
+                key ^= piece(owner, piece.getKind(), piece.isPromoted(), Position.square(r, c))
+                        ^ piece(owner, piece.getKind(), piece.isPromoted(), Position.square(r, Board.COLS - 1 - c));
+            }
+        }
+        return key;
+    }
+
+    // 手駒のリストのキー (種類ごとに 0..n-1 枚目の乱数の XOR)
+    private static long handKey(int owner, List<Piece> hand) {
+        long key = 0L;
+        if (hand == null) return key;
+        int[] counts = new int[Position.KIND_COUNT];
+        for (Piece p : hand) {
+            int kind = p.getKind();
+            key ^= hand(owner, kind, counts[kind]++);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,168 @@
+import bench.Hooks;
+
+/**
+ * bench.Hooks の実装。本体と同じデフォルトパッケージに置き、パッケージプライベートの評価関数も呼べるようにしている。
+ * 1 つのインスタンスが 1 つの局面 (Position.parse の形式) を受け持つ。
+ */
+public class BenchmarkSupport implements Hooks {
+    private final String position;
+    private final Game game;
+    private final PlayerType side;
+    private final PlayerType opponent;
+    private final MinMax minMax = new MinMax("MinMax");
+    private final AI_gj aiGj = new AI_gj("AI_gj");
+
+    // possibleMoves 用: 全てのマスに調べる駒を置いた盤面
+    private final Board[] pieceBoards = new Board[Board.ROWS * Board.COLS];
+    private int pieceKind = -1;
+
+    // chooseMove 用 (MCTS は 1 回の chooseMove でこの回数だけプレイアウトする)
+    private static final int MCTS_PLAYOUTS = 2000;
+    private Game searchGame;
+    private Player searchPlayer;
+    private TranspositionTable searchTable;
+    private EvalCache searchEvalCache;
+
+    public BenchmarkSupport(String position) {
+        this.position = position;
+        this.game = Perft.createGame(position);
+        this.side = game.getCurrentPlayer().getPlayerType();
+        this.opponent = side == PlayerType.PLAYER1 ? PlayerType.PLAYER2 : PlayerType.PLAYER1;
+        minMax.setPlayerType(side);
+        aiGj.setPlayerType(side);
+    }
+
+    @Override
+    public Object cloneBoard() {
+        return game.getBoard().clone();
+    }
+
+    @Override
+    public Object cloneGame() {
+        return game.clone();
+    }
+
+    @Override
+    public int possibleMoves(int kind) {
+        if (kind != pieceKind) {
+            preparePieceBoards(kind);
+        }
+        int count = 0;
+        for (int sq = 0; sq < pieceBoards.length; sq++) {
+            int r = sq / Board.COLS;
+            int c = sq % Board.COLS;
+            count += pieceBoards[sq].getPiece(r, c).getPossibleMoves(r, c, pieceBoards[sq]).size();
+        }
+        return count;
+    }
+
+    // 局面の盤面を複製し、マスごとに手番側の kind の駒で置き換える (にわとりはひよこを成らせて作る)
+    private void preparePieceBoards(int kind) {
+        for (int sq = 0; sq < pieceBoards.length; sq++) {
+            Board board = game.getBoard().clone();
+            Piece piece = Board.createPiece(kind == Position.NIWATORI ? Position.HIYOKO : kind, side);
+            if (kind == Position.NIWATORI) {
+                piece.promote();
+            }
+            board.placePiece(piece, sq / Board.COLS, sq % Board.COLS);
+            pieceBoards[sq] = board;
+        }
+        pieceKind = kind;
+    }
+
+    @Override
+    public int kingInCheck() {
+        return (game.isKingInCheck(side) ? 1 : 0) + (game.isKingInCheck(opponent) ? 1 : 0);
+    }
+
+    @Override
+    public int checkmate() {
+        return (game.isCheckmate(side) ? 1 : 0) + (game.isCheckmate(opponent) ? 1 : 0);
+    }
+
+    @Override
+    public int evaluateMinMax() {
+        return minMax.evaluate(game.getBoard(), side, game.getPlayerA(), game.getPlayerB());
+    }
+
+    @Override
+    public int evaluateAiGj() {
+        Player me = game.getCurrentPlayer();
+        Player other = me == game.getPlayerA() ? game.getPlayerB() : game.getPlayerA();
+        return aiGj.evaluate(game.getBoard(), me.getCapturedPieces(), other.getCapturedPieces(), side);
+    }
+
+    @Override
+    public void setUpSearch(String player, int depth) {
+        searchPlayer = createPlayer(player, depth);
+        Player other = new RandomPlayer("Random");
+        searchGame = side == PlayerType.PLAYER1 ? new Game(searchPlayer, other) : new Game(other, searchPlayer);
+        searchGame.setSilentMode(true);
+        searchGame.setPosition(Position.parse(position));
+    }
+
+    private Player createPlayer(String player, int depth) {
+        // 置換表 (と AI_gj の評価値キャッシュ) は小さくして、resetSearch で毎回空にする
+        searchTable = new TranspositionTable(1);
+        searchEvalCache = null;
+        switch (player) {
+            case "MinMax": {
+                MinMax p = new MinMax(player);
+                p.setTimeLimitMillis(0);
+                p.setMaxDepth(depth);
+                p.setTranspositionTable(searchTable);
+                return p;
+            }
+            case "AI_gj": {
+                AI_gj p = new AI_gj(player);
+                p.setTimeLimitMillis(0);
+                p.setMaxDepth(depth);
+                p.setTranspositionTable(searchTable);
+                searchEvalCache = new EvalCache(1);
+                p.setEvalCache(searchEvalCache);
+                return p;
+            }
+            case "AlphaBeta": {
+                AlphaBeta p = new AlphaBeta(player);
+                p.setTranspositionTable(searchTable);
+                return p;
+            }
+            case "ABPlayer": {
+                ABPlayer p = new ABPlayer(player);
+                p.setTranspositionTable(searchTable);
+                return p;
+            }
+            case "QLearn":
+                searchTable = null;
+                return new QLearn(player);
+            case "RandomPlayer":
+                searchTable = null;
+                return new RandomPlayer(player);
+            case "MCTS": {
+                searchTable = null;
+                MCTS p = new MCTS(player);
+                p.setTimeLimitMillis(0);
+                p.setPlayoutLimit(MCTS_PLAYOUTS);
+                p.setVerbose(false);
+                return p;
+            }
+            default:
+                throw new IllegalArgumentException("unknown player: " + player);
+        }
+    }
+
+    @Override
+    public void resetSearch() {
+        if (searchTable != null) {
+            searchTable.clear();
+        }
+        if (searchEvalCache != null) {
+            searchEvalCache.clear();
+        }
+    }
+
+    @Override
+    public int[] chooseMove() {
+        return searchPlayer.chooseMove(searchGame);
+    }
+}
@@ -0,0 +1,36 @@
+package bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar の main。JMH の Main と同じ引数を受け付け、常に GC プロファイラを付けて
+ * 1 回あたりの確保量 (gc.alloc.rate.norm) も出す。
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                    全て
+ * java -jar benchmarks/target/benchmarks.jar PositionBenchmark  名前で絞る
+ * java -jar benchmarks/target/benchmarks.jar -h                 JMH のオプション一覧
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AI ごとの chooseMove 1 回の速さ。
+ * MinMax と AI_gj は時間では打ち切らず depth の深さまで読む (AlphaBeta と ABPlayer は固定の深さ)。
+ * MCTS は時間では打ち切らず、1 スレッドで決まった回数のプレイアウトをする。
+ * 置換表は毎回空にしてから呼ぶ。
+ * AI_gj は両者の手駒が空だとランダムに指すので、局面は手駒のあるものだけを使う。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChooseMoveBenchmark {
+    @Param({"MinMax", "AI_gj", "AlphaBeta", "ABPlayer", "QLearn", "RandomPlayer", "MCTS"})
+    public String player;
+
+    @Param({Corpus.HANDS, Corpus.NIWATORI, Corpus.CHECK_HANDS})
+    public String position;
+
+    @Param({"4"})
+    public int depth;
+
+    private Hooks hooks;
+
+    @Setup
+    public void setUp() {
+        hooks = Hooks.load(position);
+        hooks.setUpSearch(player, depth);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetSearch() {
+        hooks.resetSearch();
+    }
+
+    @Benchmark
+    public int[] chooseMove() {
+        return hooks.chooseMove();
+    }
+}
@@ -0,0 +1,19 @@
+package bench;
+
+/**
+ * ベンチマークで使う固定の局面 (Position.parse の形式)。
+ * Perft の参照局面に、手番側が王手されている局面を 2 つ加えたもの。
+ */
+public final class Corpus {
+    public static final String INITIAL = "KLZ/1H1/1h1/zlk 1 -";
+    public static final String HANDS = "LHZ/z2/3/l1k 1 Hk";      // 両者が手駒を持つ局面
+    public static final String SECOND = "2Z/L1Z/Khl/1h1 2 K";    // 後手番
+    public static final String LION_UP = "1Lh/KZ1/1lH/z1k 1 -";  // ライオンが前に出た局面
+    public static final String NIWATORI = "KL1/1N1/1h1/z1l 1 Zk"; // にわとりのいる局面
+    public static final String CHECK = "1L1/z1h/K1l/zk1 1 H";    // 先手が王手されている局面
+    public static final String CHECK_HANDS = "Ln1/K2/2l/zk1 1 zh"; // 王手されていて、相手が手駒を 2 枚持つ局面
+
+    public static final String[] ALL = {INITIAL, HANDS, SECOND, LION_UP, NIWATORI, CHECK, CHECK_HANDS};
+
+    private Corpus() {}
+}
@@ -0,0 +1,46 @@
+package bench;
+
+/**
+ * ベンチマークから本体のクラスを呼ぶための入口。
+ * 本体はデフォルトパッケージにあり名前付きパッケージ (JMH のベンチマーク) から直接参照できないので、
+ * デフォルトパッケージの BenchmarkSupport がこのインターフェースを実装し、load でリフレクションを使って読み込む。
+ */
+public interface Hooks {
+    // 盤面 (Board.clone) と対局 (Game.clone) の複製
+    Object cloneBoard();
+
+    Object cloneGame();
+
+    // 全てのマスに kind (Position.LION..NIWATORI) の駒を 1 つずつ置いた盤面での getPossibleMoves の手の数の合計
+    int possibleMoves(int kind);
+
+    // 両者について Game.isKingInCheck / Game.isCheckmate を呼び、true になった数を返す
+    int kingInCheck();
+
+    int checkmate();
+
+    // 手番側から見た MinMax.evaluate / AI_gj.evaluate
+    int evaluateMinMax();
+
+    int evaluateAiGj();
+
+    /**
+     * player (MinMax, AI_gj, AlphaBeta, ABPlayer, QLearn, RandomPlayer, MCTS) を手番側に置いて chooseMove を用意します。
+     * 読む深さを変えられるもの (MinMax, AI_gj) は時間では打ち切らず depth の深さまで読みます。
+     * MCTS は depth によらず決まった回数のプレイアウトをします。
+     */
+    void setUpSearch(String player, int depth);
+
+    // 置換表を空にして、毎回同じ条件で chooseMove を呼べるようにする
+    void resetSearch();
+
+    int[] chooseMove();
+
+    static Hooks load(String position) {
+        try {
+            return (Hooks) Class.forName("BenchmarkSupport").getConstructor(String.class).newInstance(position);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkSupport を読み込めませんでした", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 駒の種類ごとの Piece.getPossibleMoves の速さ。
+ * Corpus の局面ごとに、全てのマスに調べる駒を 1 つずつ置いた盤面で呼んだ合計を 1 回とする。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+    // Position.LION..NIWATORI の順
+    private static final String[] KINDS = {"LION", "KIRIN", "ZOU", "HIYOKO", "NIWATORI"};
+
+    @Param({"LION", "KIRIN", "ZOU", "HIYOKO", "NIWATORI"})
+    public String kind;
+
+    private Hooks[] hooks;
+    private int kindIndex;
+
+    @Setup
+    public void setUp() {
+        hooks = new Hooks[Corpus.ALL.length];
+        for (int i = 0; i < hooks.length; i++) {
+            hooks[i] = Hooks.load(Corpus.ALL[i]);
+        }
+        kindIndex = Arrays.asList(KINDS).indexOf(kind);
+    }
+
+    @Benchmark
+    public int getPossibleMoves() {
+        int count = 0;
+        for (Hooks h : hooks) {
+            count += h.possibleMoves(kindIndex);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 局面 1 つに対する基本操作 (複製・王手判定・評価関数) の速さ。
+ * Corpus の全ての局面で測る。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark {
+    @Param({Corpus.INITIAL, Corpus.HANDS, Corpus.SECOND, Corpus.LION_UP, Corpus.NIWATORI, Corpus.CHECK, Corpus.CHECK_HANDS})
+    public String position;
+
+    private Hooks hooks;
+
+    @Setup
+    public void setUp() {
+        hooks = Hooks.load(position);
+    }
+
+    @Benchmark
+    public Object boardClone() {
+        return hooks.cloneBoard();
+    }
+
+    @Benchmark
+    public Object gameClone() {
+        return hooks.cloneGame();
+    }
+
+    @Benchmark
+    public int isKingInCheck() {
+        return hooks.kingInCheck();
+    }
+
+    @Benchmark
+    public int isCheckmate() {
+        return hooks.checkmate();
+    }
+
+    @Benchmark
+    public int minMaxEvaluate() {
+        return hooks.evaluateMinMax();
+    }
+
+    @Benchmark
+    public int aiGjEvaluate() {
+        return hooks.evaluateAiGj();
+    }
+}